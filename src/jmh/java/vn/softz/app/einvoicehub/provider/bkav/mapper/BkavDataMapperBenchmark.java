@@ -0,0 +1,170 @@
+package vn.softz.app.einvoicehub.provider.bkav.mapper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import vn.softz.app.einvoicehub.cache.EinvoiceMappingCacheData;
+import vn.softz.app.einvoicehub.provider.bkav.model.BkavInvoice;
+import vn.softz.app.einvoicehub.provider.model.InvoiceData;
+import vn.softz.app.einvoicehub.provider.model.InvoiceDetailData;
+import vn.softz.app.einvoicehub.service.EinvoiceMappingService;
+import vn.softz.app.einvoicehub.service.EinvoiceMappingService.MappingType;
+import vn.softz.app.einvoicehub.service.mapping.CompiledMapping;
+import vn.softz.app.einvoicehub.service.mapping.MappingSnapshot;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapping hóa đơn BKAV 10 / 100 / 1.000 dòng:
+ *  - perFieldLookups: cách cũ, mỗi field header và mỗi dòng một lần getProviderCode().join()
+ *    rồi Integer.parseInt / tách "mã,thuế suất"
+ *  - snapshotLookups: một MappingSnapshot cho cả hóa đơn, từng dòng chỉ tra bảng đã biên dịch
+ *  - toBkavRequestData: toàn bộ BkavDataMapper (header + dòng hàng) trên snapshot
+ * Cache được thay bằng map trong bộ nhớ (tương đương L1 hit) nên số đo của cách cũ là cận dưới:
+ * trên môi trường thật mỗi lần tra còn tốn thêm I/O Redis khi L1 miss.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BkavDataMapperBenchmark {
+
+    private static final String LID = "bench";
+    private static final String PROVIDER_ID = "BKAV";
+    private static final String[] TAX_TYPES = {"VAT0", "VAT5", "VAT8", "VAT10", "KCT"};
+
+    @Param({"10", "100", "1000"})
+    private int lines;
+
+    private InMemoryMappingService mappingService;
+    private BkavDataMapper mapper;
+    private InvoiceData invoice;
+
+    @Setup
+    public void setUp() {
+        Map<MappingType, EinvoiceMappingCacheData> data = new EnumMap<>(MappingType.class);
+        data.put(MappingType.INVOICE_TYPE, mapping(MappingType.INVOICE_TYPE, Map.of("1", "1", "2", "2")));
+        data.put(MappingType.PAYMENT_METHOD, mapping(MappingType.PAYMENT_METHOD, Map.of("1", "1", "2", "2", "3", "3")));
+        data.put(MappingType.ITEM_TYPE, mapping(MappingType.ITEM_TYPE, Map.of("0", "1", "1", "2", "2", "4")));
+        data.put(MappingType.TAX_TYPE, mapping(MappingType.TAX_TYPE, Map.of(
+                "VAT0", "1,0", "VAT5", "2,5", "VAT8", "9,8", "VAT10", "3,10", "KCT", "4,0")));
+        data.put(MappingType.INVOICE_STATUS, mapping(MappingType.INVOICE_STATUS, Map.of("1", "1", "2", "2")));
+        data.put(MappingType.REFERENCE_TYPE, mapping(MappingType.REFERENCE_TYPE, Map.of("1", "1")));
+        mappingService = new InMemoryMappingService(data);
+        mapper = new BkavDataMapper(mappingService);
+
+        List<InvoiceDetailData> details = new ArrayList<>(lines);
+        for (int i = 0; i < lines; i++) {
+            details.add(InvoiceDetailData.builder()
+                    .lineNo(i + 1)
+                    .itemTypeId(i % 3)
+                    .itemCode("SP" + i)
+                    .itemName("San pham " + i)
+                    .unitName("Cai")
+                    .quantity(BigDecimal.valueOf(i % 7 + 1))
+                    .price(BigDecimal.valueOf(10_000L + i * 17L))
+                    .amount(BigDecimal.valueOf((i % 7 + 1) * (10_000L + i * 17L)))
+                    .taxRateId(TAX_TYPES[i % TAX_TYPES.length])
+                    .taxAmount(BigDecimal.valueOf(1_000))
+                    .build());
+        }
+        invoice = InvoiceData.builder()
+                .partnerInvoiceId("1001")
+                .invoiceTypeId(1)
+                .paymentMethodId(3)
+                .invoiceDate(Instant.now())
+                .buyerName("Cong ty TNHH A")
+                .details(details)
+                .build();
+    }
+
+    @Benchmark
+    public void perFieldLookups(Blackhole blackhole) {
+        blackhole.consume(providerInt(MappingType.INVOICE_TYPE, invoice.getInvoiceTypeId()));
+        blackhole.consume(providerInt(MappingType.PAYMENT_METHOD, invoice.getPaymentMethodId()));
+        for (InvoiceDetailData detail : invoice.getDetails()) {
+            blackhole.consume(providerInt(MappingType.ITEM_TYPE, detail.getItemTypeId()));
+            String[] tax = mappingService.getProviderCode(LID, PROVIDER_ID, MappingType.TAX_TYPE, detail.getTaxRateId())
+                    .split(",");
+            blackhole.consume(Integer.parseInt(tax[0].trim()));
+            blackhole.consume(new BigDecimal(tax[1].trim()));
+        }
+    }
+
+    @Benchmark
+    public void snapshotLookups(Blackhole blackhole) {
+        MappingSnapshot snapshot = mappingService.getSnapshot(LID, PROVIDER_ID);
+        blackhole.consume(snapshot.getProviderInt(MappingType.INVOICE_TYPE, invoice.getInvoiceTypeId()));
+        blackhole.consume(snapshot.getProviderInt(MappingType.PAYMENT_METHOD, invoice.getPaymentMethodId()));
+        for (InvoiceDetailData detail : invoice.getDetails()) {
+            blackhole.consume(snapshot.getProviderInt(MappingType.ITEM_TYPE, detail.getItemTypeId()));
+            CompiledMapping.TaxRate taxRate = snapshot.getTaxRate(detail.getTaxRateId());
+            blackhole.consume(taxRate.taxTypeId());
+            blackhole.consume(taxRate.rate());
+        }
+    }
+
+    @Benchmark
+    public BkavInvoice.RequestData toBkavRequestData() {
+        return mapper.toBkavRequestData(LID, invoice);
+    }
+
+    private int providerInt(MappingType type, Integer hubId) {
+        return Integer.parseInt(mappingService.getProviderCode(LID, PROVIDER_ID, type, String.valueOf(hubId)));
+    }
+
+    private static EinvoiceMappingCacheData mapping(MappingType type, Map<String, String> mapping) {
+        Map<String, String> reverse = new HashMap<>();
+        mapping.forEach((internalCode, providerCode) -> reverse.put(providerCode, internalCode));
+        return EinvoiceMappingCacheData.builder()
+                .cacheKey(PROVIDER_ID + ":" + type.name())
+                .mapping(mapping)
+                .reverseMapping(reverse)
+                .build();
+    }
+
+    /**Cache mapping trong bộ nhớ: trả future đã hoàn tất như một lần hit L1.*/
+    private static final class InMemoryMappingService extends EinvoiceMappingService {
+
+        private final Map<MappingType, EinvoiceMappingCacheData> data;
+
+        InMemoryMappingService(Map<MappingType, EinvoiceMappingCacheData> data) {
+            super(null);
+            this.data = data;
+        }
+
+        @Override
+        public CompletableFuture<String> getProviderCodeAsync(String lid, String providerId, MappingType type,
+                                                              String internalCode) {
+            if (internalCode == null || internalCode.isEmpty()) {
+                return CompletableFuture.completedFuture(null);
+            }
+            EinvoiceMappingCacheData mapping = data.get(type);
+            return CompletableFuture.completedFuture(mapping.getMapping().getOrDefault(internalCode, internalCode));
+        }
+
+        @Override
+        public CompletableFuture<MappingSnapshot> getSnapshotAsync(String lid, String providerId) {
+            return CompletableFuture.completedFuture(new MappingSnapshot(data));
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package vn.softz.app.einvoicehub.provider.bkav.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chi phí mỗi lần mã hóa / giải mã payload hóa đơn BKAV (2–50 KB):
+ *  - perCallToken: tách partnerToken, decode key/IV, Cipher.getInstance + init mỗi lần (cách cũ)
+ *  - cachedContext: BkavCryptoContext dựng một lần theo store, Cipher lấy từ pool
+ * cipher* đo riêng bước AES (không GZip / Base64) để phần tiết kiệm không bị GZip che mất.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BkavCryptoBenchmark {
+
+    @Param({"2", "10", "50"})
+    private int payloadKb;
+
+    private String partnerToken;
+    private BkavCryptoContext context;
+    private String payload;
+    private byte[] payloadBytes;
+    private String encrypted;
+
+    @Setup
+    public void setUp() throws Exception {
+        SecureRandom random = new SecureRandom();
+        byte[] key = new byte[32];
+        byte[] iv = new byte[16];
+        random.nextBytes(key);
+        random.nextBytes(iv);
+        partnerToken = Base64.getEncoder().encodeToString(key) + ":" + Base64.getEncoder().encodeToString(iv);
+        context = BkavCryptoContext.fromPartnerToken(partnerToken);
+
+        // JSON hóa đơn giả: các dòng hàng lặp lại như payload thật
+        StringBuilder json = new StringBuilder("{\"Invoice\":{\"InvoiceTypeID\":1,\"BuyerName\":\"Cong ty TNHH A\"},"
+                                               + "\"ListInvoiceDetailsWS\":[");
+        for (int line = 0; json.length() < payloadKb * 1024; line++) {
+            json.append("{\"ItemCode\":\"SP").append(line).append("\",\"ItemName\":\"San pham ").append(line)
+                .append("\",\"Qty\":").append(line % 7 + 1).append(",\"Price\":").append(10_000 + line * 17)
+                .append(",\"TaxRateID\":3,\"TaxRate\":10},");
+        }
+        json.setCharAt(json.length() - 1, ']');
+        payload = json.append('}').toString();
+        payloadBytes = payload.getBytes(StandardCharsets.UTF_8);
+        encrypted = BkavCryptoUtil.encryptData(payload, context);
+    }
+
+    @Benchmark
+    public String encryptPerCallToken() {
+        return BkavCryptoUtil.encryptData(payload, partnerToken);
+    }
+
+    @Benchmark
+    public String encryptCachedContext() {
+        return BkavCryptoUtil.encryptData(payload, context);
+    }
+
+    @Benchmark
+    public String decryptPerCallToken() {
+        return BkavCryptoUtil.decryptData(encrypted, partnerToken);
+    }
+
+    @Benchmark
+    public String decryptCachedContext() {
+        return BkavCryptoUtil.decryptData(encrypted, context);
+    }
+
+    @Benchmark
+    public byte[] cipherPerCallToken() throws GeneralSecurityException {
+        return BkavCryptoContext.fromPartnerToken(partnerToken).encrypt(payloadBytes);
+    }
+
+    @Benchmark
+    public byte[] cipherCachedContext() throws GeneralSecurityException {
+        return context.encrypt(payloadBytes);
+    }
+}
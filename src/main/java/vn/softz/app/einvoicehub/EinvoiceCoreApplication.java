@@ -3,7 +3,8 @@ package vn.softz.app.einvoicehub;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
-@SpringBootApplication
+// Cache framework (vn.softz.cache) nằm ngoài package ứng dụng nên phải scan thêm
+@SpringBootApplication(scanBasePackages = {"vn.softz.app.einvoicehub", "vn.softz.cache"})
 public class EinvoiceCoreApplication {
 
 	public static void main(String[] args) {
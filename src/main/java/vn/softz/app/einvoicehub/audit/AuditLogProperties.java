@@ -0,0 +1,47 @@
+package vn.softz.app.einvoicehub.audit;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.audit-log")
+public class AuditLogProperties {
+
+    // false: ghi đồng bộ từng dòng như cũ (không có thread nền)
+    private boolean async = true;
+
+    // Sức chứa ring buffer trong bộ nhớ
+    private int queueCapacity = 10_000;
+
+    // Số dòng tối đa trong một lần ghi batch
+    private int batchSize = 200;
+
+    // Thời gian chờ tối đa của thread ghi khi buffer rỗng
+    private long flushIntervalMs = 200;
+
+    private OverflowPolicy overflowPolicy = OverflowPolicy.SPOOL;
+
+    // BLOCK: thời gian tối đa luồng nghiệp vụ chờ chỗ trống trước khi bỏ event
+    private Duration offerTimeout = Duration.ofMillis(50);
+
+    // Thư mục spool cục bộ khi DB không ghi được; để trống = không spool (event lỗi bị bỏ)
+    private String spoolDir = "./data/audit-spool";
+
+    // Chu kỳ thử đẩy lại spool vào DB sau lần thất bại
+    private Duration spoolRetryInterval = Duration.ofSeconds(30);
+
+    private Duration shutdownTimeout = Duration.ofSeconds(10);
+
+    public enum OverflowPolicy {
+        // Bỏ event mới, không bao giờ chặn luồng nghiệp vụ
+        DROP,
+        // Chờ tối đa offerTimeout, hết thời gian thì bỏ event
+        BLOCK,
+        // Ghi thẳng event ra spool cục bộ, không mất dữ liệu
+        SPOOL
+    }
+}
@@ -0,0 +1,356 @@
+package vn.softz.app.einvoicehub.audit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.NonTransientDataAccessException;
+import org.springframework.data.domain.AuditorAware;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import vn.softz.app.einvoicehub.domain.repository.EinvAuditLogJdbcRepository;
+import vn.softz.app.einvoicehub.domain.repository.EinvAuditLogJdbcRepository.AuditLogRow;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ghi einv_audit_logs bất đồng bộ, thay cho INSERT từng dòng trong transaction nghiệp vụ.
+ *  - Event vào ring buffer giới hạn (ArrayBlockingQueue); một thread nền gom và ghi theo JDBC batch.
+ *  - Buffer đầy: xử lý theo app.audit-log.overflow-policy (DROP / BLOCK / SPOOL).
+ *  - Mỗi batch ghi trong một transaction; DB từ chối batch vì dữ liệu thì thử lại từng dòng,
+ *    dòng bị từ chối vĩnh viễn ra file dead-letter thay vì kéo cả batch vào spool.
+ *  - DB không ghi được: phần chưa ghi ra spool cục bộ (fsync), đẩy lại khi DB ghi được; spool còn lại được đẩy khi khởi động.
+ *  - Metrics: einvoice.audit.queue.depth, einvoice.audit.flush (timer theo outcome),
+ *    einvoice.audit.events (counter theo outcome: written / spooled / replayed / dead_letter / dropped).
+ * createdBy / createdDate được chốt lúc publish vì SecurityContext chỉ có trên thread nghiệp vụ.
+ */
+@Slf4j
+@Component
+public class AuditLogSink {
+
+    private static final String METRIC_PREFIX = "einvoice.audit.";
+
+    private final EinvAuditLogJdbcRepository auditLogJdbcRepository;
+    private final AuditorAware<String> auditorProvider;
+    private final AuditLogProperties properties;
+    private final AuditLogSpool spool;
+
+    private final BlockingQueue<AuditLogRow> queue;
+    private final Timer flushSuccessTimer;
+    private final Timer flushErrorTimer;
+    private final Counter writtenCounter;
+    private final Counter spooledCounter;
+    private final Counter replayedCounter;
+    private final Counter deadLetterCounter;
+    private final Counter droppedCounter;
+
+    private Thread writer;
+    private volatile boolean running;
+    private long nextReplayAt;
+
+    public AuditLogSink(EinvAuditLogJdbcRepository auditLogJdbcRepository,
+                        AuditorAware<String> auditorProvider,
+                        AuditLogProperties properties,
+                        ObjectMapper objectMapper,
+                        MeterRegistry meterRegistry) {
+        this.auditLogJdbcRepository = auditLogJdbcRepository;
+        this.auditorProvider = auditorProvider;
+        this.properties = properties;
+        this.spool = createSpool(properties, objectMapper);
+        this.queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+
+        Gauge.builder(METRIC_PREFIX + "queue.depth", queue, BlockingQueue::size)
+                .description("Audit log events waiting to be written")
+                .register(meterRegistry);
+        this.flushSuccessTimer = flushTimer(meterRegistry, "success");
+        this.flushErrorTimer = flushTimer(meterRegistry, "error");
+        this.writtenCounter = eventCounter(meterRegistry, "written");
+        this.spooledCounter = eventCounter(meterRegistry, "spooled");
+        this.replayedCounter = eventCounter(meterRegistry, "replayed");
+        this.deadLetterCounter = eventCounter(meterRegistry, "dead_letter");
+        this.droppedCounter = eventCounter(meterRegistry, "dropped");
+    }
+
+    // async = false vẫn chạy thread nền để đẩy lại spool; buffer khi đó không được dùng
+    @PostConstruct
+    void start() {
+        running = true;
+        writer = Thread.ofPlatform().name("audit-log-writer").daemon(true).start(this::runWriter);
+        log.info("[AuditSink] started async={}, capacity={}, batchSize={}, overflowPolicy={}, spool={}",
+                 properties.isAsync(), properties.getQueueCapacity(), properties.getBatchSize(),
+                 properties.getOverflowPolicy(), spool != null ? properties.getSpoolDir() : "disabled");
+    }
+
+    public void publish(String action,
+                        String entityName,
+                        String entityId,
+                        String payload,
+                        String result,
+                        String errorMsg) {
+        AuditLogRow row = new AuditLogRow(action, entityName, entityId, payload, result, errorMsg,
+                auditorProvider.getCurrentAuditor().orElse("system"), LocalDateTime.now());
+        if (!properties.isAsync() || !running) {
+            writeNow(List.of(row));
+            return;
+        }
+        enqueue(row);
+    }
+
+    /**Nhiều dòng một lần (vd. submit theo lô); chế độ đồng bộ ghi cả lô bằng một JDBC batch.*/
+    public void publishAll(List<AuditLogRow> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        if (!properties.isAsync() || !running) {
+            writeNow(rows);
+            return;
+        }
+        rows.forEach(this::enqueue);
+    }
+
+    /**Trong transaction: chỉ publish khi commit, giống dòng audit từng ghi cùng transaction nghiệp vụ.*/
+    public void publishAfterCommit(String action,
+                                   String entityName,
+                                   String entityId,
+                                   String payload,
+                                   String result,
+                                   String errorMsg) {
+        // afterCommit chạy trên cùng thread nên createdBy vẫn lấy được từ SecurityContext
+        runAfterCommit(() -> publish(action, entityName, entityId, payload, result, errorMsg));
+    }
+
+    public void publishAllAfterCommit(List<AuditLogRow> rows) {
+        runAfterCommit(() -> publishAll(rows));
+    }
+
+    private static void runAfterCommit(Runnable publication) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            publication.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                publication.run();
+            }
+        });
+    }
+
+    private void enqueue(AuditLogRow row) {
+        if (queue.offer(row)) {
+            return;
+        }
+        switch (properties.getOverflowPolicy()) {
+            case DROP -> drop(row);
+            case BLOCK -> offerOrDrop(row);
+            case SPOOL -> spoolOrDrop(List.of(row));
+        }
+    }
+
+    private void runWriter() {
+        replaySpool();
+        List<AuditLogRow> batch = new ArrayList<>(properties.getBatchSize());
+        while (running || !queue.isEmpty()) {
+            try {
+                AuditLogRow first = queue.poll(properties.getFlushIntervalMs(), TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, properties.getBatchSize() - 1);
+                    flush(batch);
+                    batch.clear();
+                }
+                if (spool != null && spool.hasPending() && System.currentTimeMillis() >= nextReplayAt) {
+                    replaySpool();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                // Thread ghi không được chết vì một batch lỗi
+                log.error("[AuditSink] writer loop error: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    private void flush(List<AuditLogRow> batch) {
+        long start = System.nanoTime();
+        List<AuditLogRow> unwritten = write(batch, writtenCounter);
+        if (unwritten.isEmpty()) {
+            flushSuccessTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return;
+        }
+        flushErrorTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        spoolOrDrop(unwritten);
+        nextReplayAt = System.currentTimeMillis() + properties.getSpoolRetryInterval().toMillis();
+    }
+
+    private void replaySpool() {
+        if (spool == null || !spool.hasPending()) {
+            return;
+        }
+        try {
+            if (spool.replay(properties.getBatchSize(), rows -> write(rows, replayedCounter))) {
+                log.info("[AuditSink] spooled audit rows replayed");
+                return;
+            }
+            log.warn("[AuditSink] spool replay stopped, retry in {}", properties.getSpoolRetryInterval());
+        } catch (Exception ex) {
+            log.warn("[AuditSink] spool replay failed, retry in {}: {}",
+                     properties.getSpoolRetryInterval(), ex.getMessage());
+        }
+        nextReplayAt = System.currentTimeMillis() + properties.getSpoolRetryInterval().toMillis();
+    }
+
+    private void writeNow(List<AuditLogRow> rows) {
+        // KHÔNG propagate – audit failure không được crash luồng nghiệp vụ
+        List<AuditLogRow> unwritten = write(rows, writtenCounter);
+        if (!unwritten.isEmpty()) {
+            spoolOrDrop(unwritten);
+        }
+    }
+
+    /**
+     * Ghi các dòng vào DB. Batch bị từ chối vì dữ liệu thì thử lại từng dòng, dòng lỗi vĩnh viễn ra dead-letter.
+     * @return các dòng chưa ghi được vì DB tạm thời không ghi được (giữ thứ tự), rỗng nếu đã xử lý hết
+     */
+    private List<AuditLogRow> write(List<AuditLogRow> rows, Counter successCounter) {
+        try {
+            auditLogJdbcRepository.insertBatch(rows);
+            successCounter.increment(rows.size());
+            return List.of();
+        } catch (Exception ex) {
+            if (!isRejectedRow(ex)) {
+                log.warn("[AuditSink] batch of {} failed: {}", rows.size(), ex.getMessage());
+                return rows;
+            }
+            log.warn("[AuditSink] batch of {} rejected, retrying row by row: {}", rows.size(), ex.getMessage());
+        }
+        for (int i = 0; i < rows.size(); i++) {
+            AuditLogRow row = rows.get(i);
+            try {
+                auditLogJdbcRepository.insertBatch(List.of(row));
+                successCounter.increment();
+            } catch (Exception ex) {
+                if (!isRejectedRow(ex)) {
+                    log.warn("[AuditSink] row write failed, {} rows left: {}", rows.size() - i, ex.getMessage());
+                    return rows.subList(i, rows.size());
+                }
+                deadLetter(row, ex);
+            }
+        }
+        return List.of();
+    }
+
+    // Lỗi do chính dòng dữ liệu (vi phạm ràng buộc, quá độ dài cột...): ghi lại bao nhiêu lần cũng lỗi
+    private static boolean isRejectedRow(Exception ex) {
+        return ex instanceof NonTransientDataAccessException
+                && !(ex instanceof DataAccessResourceFailureException);
+    }
+
+    private void deadLetter(AuditLogRow row, Exception cause) {
+        log.error("[AuditSink] DEAD LETTER action={} entity={}/{} cause={}",
+                  row.action(), row.entityName(), row.entityId(), cause.getMessage());
+        if (spool == null) {
+            drop(row);
+            return;
+        }
+        try {
+            spool.deadLetter(row);
+            deadLetterCounter.increment();
+        } catch (IOException ex) {
+            log.error("[AuditSink] dead-letter write failed: {}", ex.getMessage());
+            drop(row);
+        }
+    }
+
+    private void offerOrDrop(AuditLogRow row) {
+        try {
+            if (queue.offer(row, properties.getOfferTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        drop(row);
+    }
+
+    private void spoolOrDrop(List<AuditLogRow> rows) {
+        if (spool == null) {
+            rows.forEach(this::drop);
+            return;
+        }
+        try {
+            spool.append(rows);
+            spooledCounter.increment(rows.size());
+        } catch (IOException ex) {
+            log.error("[AuditSink] spool write failed for {} rows: {}", rows.size(), ex.getMessage());
+            rows.forEach(this::drop);
+        }
+    }
+
+    private void drop(AuditLogRow row) {
+        droppedCounter.increment();
+        log.warn("[AuditSink] DROPPED action={} entity={}/{} result={}",
+                 row.action(), row.entityName(), row.entityId(), row.result());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            writer.join(properties.getShutdownTimeout().toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Thread ghi chưa xong (DB treo): phần còn trong buffer ra spool để lần khởi động sau đẩy lại
+        List<AuditLogRow> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            log.warn("[AuditSink] {} audit rows still queued at shutdown", remaining.size());
+            spoolOrDrop(remaining);
+        }
+    }
+
+    private static AuditLogSpool createSpool(AuditLogProperties properties, ObjectMapper objectMapper) {
+        if (properties.getSpoolDir() == null || properties.getSpoolDir().isBlank()) {
+            return null;
+        }
+        try {
+            return new AuditLogSpool(Path.of(properties.getSpoolDir()), objectMapper);
+        } catch (IOException ex) {
+            log.error("[AuditSink] cannot use spool dir {}, spooling disabled: {}",
+                      properties.getSpoolDir(), ex.getMessage());
+            return null;
+        }
+    }
+
+    private static Timer flushTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder(METRIC_PREFIX + "flush")
+                .description("Audit log batch write latency")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private static Counter eventCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder(METRIC_PREFIX + "events")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,187 @@
+package vn.softz.app.einvoicehub.audit;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import vn.softz.app.einvoicehub.domain.repository.EinvAuditLogJdbcRepository.AuditLogRow;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Spool cục bộ cho audit log khi DB không ghi được: NDJSON, mỗi dòng một AuditLogRow, fsync sau mỗi lần ghi.
+ *  - Ghi vào file active; lúc replay file active được đổi tên thành *.replay rồi đẩy lại vào DB theo batch.
+ *  - Replay lỗi giữa chừng: phần chưa ghi được chép sang file replay mới, phần đã ghi không bị ghi lại.
+ *  - Dòng DB từ chối vĩnh viễn (dữ liệu hỏng) ra file dead-letter, không chặn phần còn lại của spool.
+ * Chỉ thread ghi audit gọi replay; append có thể đến từ nhiều thread (overflow-policy SPOOL).
+ */
+@Slf4j
+class AuditLogSpool {
+
+    private static final String ACTIVE_FILE = "audit-spool.ndjson";
+    private static final String REPLAY_PREFIX = "audit-spool-";
+    private static final String REPLAY_SUFFIX = ".replay";
+    private static final String DEAD_LETTER_FILE = "audit-deadletter.ndjson";
+
+    private final Path dir;
+    private final ObjectMapper objectMapper;
+    private final AtomicLong sequence = new AtomicLong();
+    private volatile boolean pending;
+
+    AuditLogSpool(Path dir, ObjectMapper objectMapper) throws IOException {
+        this.dir = dir;
+        this.objectMapper = objectMapper;
+        Files.createDirectories(dir);
+        // Spool còn lại từ lần chạy trước
+        try (Stream<Path> files = Files.list(dir)) {
+            this.pending = files.anyMatch(this::isSpoolFile);
+        }
+    }
+
+    boolean hasPending() {
+        return pending;
+    }
+
+    void append(List<AuditLogRow> rows) throws IOException {
+        write(dir.resolve(ACTIVE_FILE), rows);
+        pending = true;
+    }
+
+    // Dòng lỗi vĩnh viễn: giữ lại để xử lý tay, không bao giờ replay
+    void deadLetter(AuditLogRow row) throws IOException {
+        write(dir.resolve(DEAD_LETTER_FILE), List.of(row));
+    }
+
+    private synchronized void write(Path target, List<AuditLogRow> rows) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(rows.size() * 512);
+        for (AuditLogRow row : rows) {
+            objectMapper.writeValue(bytes, row);
+            bytes.write('\n');
+        }
+        try (FileChannel channel = FileChannel.open(target,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Đẩy lại toàn bộ spool qua writer. Writer trả về các dòng chưa ghi được (rỗng = đã ghi hết);
+     * còn dòng chưa ghi thì dừng, các dòng đó cùng phần chưa đọc được giữ cho lần sau.
+     * @return true nếu spool đã được đẩy hết
+     */
+    boolean replay(int batchSize, Function<List<AuditLogRow>, List<AuditLogRow>> writer) throws IOException {
+        rotateActive();
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(dir)) {
+            files = stream.filter(file -> file.getFileName().toString().endsWith(REPLAY_SUFFIX)).sorted().toList();
+        }
+
+        boolean drained = true;
+        for (Path file : files) {
+            if (!replayFile(file, batchSize, writer)) {
+                drained = false;
+                break;
+            }
+        }
+        synchronized (this) {
+            pending = !drained || Files.exists(dir.resolve(ACTIVE_FILE));
+        }
+        return drained;
+    }
+
+    private boolean replayFile(Path file, int batchSize, Function<List<AuditLogRow>, List<AuditLogRow>> writer)
+            throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            List<AuditLogRow> batch = new ArrayList<>(batchSize);
+            String line;
+            while (true) {
+                line = reader.readLine();
+                if (line != null) {
+                    AuditLogRow row = parse(file, line);
+                    if (row != null) {
+                        batch.add(row);
+                    }
+                    if (batch.size() < batchSize) {
+                        continue;
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    List<AuditLogRow> unwritten = writer.apply(batch);
+                    if (!unwritten.isEmpty()) {
+                        keepRemaining(unwritten, reader);
+                        Files.delete(file);
+                        return false;
+                    }
+                    batch = new ArrayList<>(batchSize);
+                }
+                if (line == null) {
+                    break;
+                }
+            }
+        }
+        Files.delete(file);
+        return true;
+    }
+
+    private AuditLogRow parse(Path file, String line) {
+        if (line.isBlank()) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(line, AuditLogRow.class);
+        } catch (JsonProcessingException ex) {
+            log.error("[AuditSpool] skip corrupt line in {}: {}", file.getFileName(), ex.getOriginalMessage());
+            return null;
+        }
+    }
+
+    // Chép các dòng chưa ghi được + các dòng chưa đọc sang file replay mới
+    private void keepRemaining(List<AuditLogRow> failed, BufferedReader reader) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(nextReplayFile(), StandardCharsets.UTF_8)) {
+            for (AuditLogRow row : failed) {
+                out.write(objectMapper.writeValueAsString(row));
+                out.newLine();
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                out.write(line);
+                out.newLine();
+            }
+        }
+    }
+
+    private synchronized void rotateActive() throws IOException {
+        Path active = dir.resolve(ACTIVE_FILE);
+        if (Files.exists(active)) {
+            Files.move(active, nextReplayFile(), StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    private Path nextReplayFile() {
+        return dir.resolve(String.format("%s%d-%06d%s",
+                REPLAY_PREFIX, System.currentTimeMillis(), sequence.incrementAndGet(), REPLAY_SUFFIX));
+    }
+
+    private boolean isSpoolFile(Path file) {
+        String name = file.getFileName().toString();
+        return name.equals(ACTIVE_FILE) || name.endsWith(REPLAY_SUFFIX);
+    }
+}
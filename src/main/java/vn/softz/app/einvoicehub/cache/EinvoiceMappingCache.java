@@ -1,37 +1,65 @@
 package vn.softz.app.einvoicehub.cache;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 import vn.softz.app.einvoicehub.service.EinvoiceMappingService.MappingType;
 import vn.softz.app.einvoicehub.service.mapping.MappingStrategy;
 import vn.softz.app.einvoicehub.service.mapping.MappingStrategyRegistry;
+import vn.softz.cache.base.CacheProperties;
+import vn.softz.cache.base.MicrometerCacheStatsRecorder;
 import vn.softz.cache.redis.RedisCache;
+import vn.softz.cache.redis.RedisCacheInvalidationBus;
 import vn.softz.cache.redis.RedisConfig;
 import vn.softz.cache.redis.RedisDbIndex;
 
 import java.time.Duration;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.TreeSet;
 import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 @Component
 public class EinvoiceMappingCache extends RedisCache<EinvoiceMappingCacheData> {
 
+    private static final String CACHE_NAME = "EinvMapping";
+    // Mã nội bộ dạng số so theo giá trị ("9" trước "10"), còn lại theo chuỗi
+    private static final Comparator<String> INTERNAL_CODE_ORDER = Comparator
+            .comparing((String code) -> code.chars().allMatch(Character::isDigit) ? code.length() : Integer.MAX_VALUE)
+            .thenComparing(Comparator.naturalOrder());
+
     private final MappingStrategyRegistry strategyRegistry;
 
     public EinvoiceMappingCache(
             MappingStrategyRegistry strategyRegistry,
-            RedisConfig redisConfig) {
+            RedisConfig redisConfig,
+            RedisCacheInvalidationBus invalidationBus,
+            CacheProperties cacheProperties,
+            MeterRegistry meterRegistry) {
+        // Mapping được tra nhiều lần mỗi hóa đơn → giữ near-cache L1, Redis là L2
         super(
             RedisDbIndex.APP_SETTING.getValue(),
             EinvoiceMappingCacheData.class,
-            "EinvMapping",
+            CACHE_NAME,
             redisConfig,
-            Duration.ofHours(1)
+            Duration.ofHours(1),
+            invalidationBus,
+            Duration.ofMinutes(10),
+            cacheProperties.maximumSizeOf(CACHE_NAME)
         );
         this.strategyRegistry = strategyRegistry;
+        // Mapping nóng được nạp lại nền trước khi hết hạn, không để cả loạt request cùng miss
+        setRefreshAheadRatio(0.8);
+        // Codec nhị phân, nén khi payload từ 4KB (bảng mapping lớn)
+        useValueCodec(new EinvoiceMappingCacheCodec(), 4096);
+        // reloadAsync(lid) / clear chỉ xóa key mapping, không SCAN cả DB APP_SETTING
+        useKeyIndex();
+        setStatsRecorder(new MicrometerCacheStatsRecorder(meterRegistry, getPrefix()));
     }
 
     @Override
@@ -68,6 +96,7 @@ public class EinvoiceMappingCache extends RedisCache<EinvoiceMappingCacheData> {
                 return Optional.of(EinvoiceMappingCacheData.builder()
                     .cacheKey(cacheKey)
                     .mapping(mapping)
+                    .reverseMapping(buildReverseMapping(cacheKey, mapping))
                     .build());
 
             } catch (Exception ex) {
@@ -76,4 +105,29 @@ public class EinvoiceMappingCache extends RedisCache<EinvoiceMappingCacheData> {
             }
         });
     }
+
+    // Mã provider trùng (nhiều mã nội bộ cùng map vào) là dữ liệu mapping sai: cảnh báo lúc load,
+    // map ngược giữ mã nội bộ nhỏ nhất để mọi pod / mọi lần load tra ra cùng một giá trị
+    static Map<String, String> buildReverseMapping(String cacheKey, Map<String, String> mapping) {
+        Map<String, String> reverse = new HashMap<>(mapping.size() * 2);
+        Map<String, TreeSet<String>> duplicates = new HashMap<>();
+
+        mapping.forEach((internalCode, providerCode) -> {
+            if (providerCode == null) {
+                return;
+            }
+            String existing = reverse.putIfAbsent(providerCode, internalCode);
+            if (existing != null) {
+                duplicates.computeIfAbsent(providerCode, code -> new TreeSet<>(INTERNAL_CODE_ORDER))
+                        .addAll(List.of(existing, internalCode));
+            }
+        });
+
+        if (!duplicates.isEmpty()) {
+            duplicates.forEach((providerCode, internalCodes) -> reverse.put(providerCode, internalCodes.first()));
+            log.warn("Duplicate provider codes in mapping {}: {} — reverse lookup uses the lowest internal code",
+                cacheKey, duplicates);
+        }
+        return reverse;
+    }
 }
@@ -0,0 +1,123 @@
+package vn.softz.app.einvoicehub.cache;
+
+import vn.softz.cache.redis.CacheValueCodec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Codec nhị phân cho EinvoiceMappingCacheData:
+ *   version | cacheKey | cacheUpdateAt (epoch ms) | số cặp | (mã nội bộ, mã provider)... | (mã provider, mã nội bộ chọn)...
+ * Map ngược không được ghi mà dựng lại từ map xuôi lúc decode; chỉ mã provider trùng (hoặc lệch với map xuôi)
+ * được ghi kèm mã nội bộ đã chọn, nên payload chỉ còn khoảng một nửa so với JSON chứa cả 2 map.
+ */
+public class EinvoiceMappingCacheCodec implements CacheValueCodec<EinvoiceMappingCacheData> {
+
+    private static final byte VERSION = 2;
+    // Không có map ngược (dữ liệu cũ), decode trả reverseMapping = null như lúc ghi
+    private static final int NO_REVERSE = -1;
+
+    @Override
+    public byte[] encode(EinvoiceMappingCacheData value) throws IOException {
+        Map<String, String> mapping = value.getMapping() != null ? value.getMapping() : Map.of();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + mapping.size() * 24);
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        out.writeByte(VERSION);
+        writeString(out, value.getCacheKey());
+        out.writeLong(value.cacheUpdateAt != null ? value.cacheUpdateAt.toEpochMilli() : 0L);
+        out.writeInt(mapping.size());
+        for (Map.Entry<String, String> entry : mapping.entrySet()) {
+            writeString(out, entry.getKey());
+            writeString(out, entry.getValue());
+        }
+
+        Map<String, String> reverse = value.getReverseMapping();
+        if (reverse == null) {
+            out.writeInt(NO_REVERSE);
+        } else {
+            // Mã provider trùng: thứ tự duyệt HashMap lúc decode không xác định nên ghi rõ mã nội bộ đã chọn
+            Map<String, String> overrides = new HashMap<>();
+            Set<String> seen = new HashSet<>();
+            mapping.forEach((internalCode, providerCode) -> {
+                if (providerCode != null
+                        && (!seen.add(providerCode) || !internalCode.equals(reverse.get(providerCode)))) {
+                    overrides.put(providerCode, reverse.get(providerCode));
+                }
+            });
+            out.writeInt(overrides.size());
+            for (Map.Entry<String, String> override : overrides.entrySet()) {
+                writeString(out, override.getKey());
+                writeString(out, override.getValue());
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public EinvoiceMappingCacheData decode(byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        byte version = in.readByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported mapping cache format version " + version);
+        }
+
+        String cacheKey = readString(in);
+        long updatedAt = in.readLong();
+        int size = in.readInt();
+        Map<String, String> mapping = new HashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            mapping.put(readString(in), readString(in));
+        }
+
+        Map<String, String> reverse = null;
+        int overrideCount = in.readInt();
+        if (overrideCount != NO_REVERSE) {
+            reverse = new HashMap<>(size * 2);
+            for (Map.Entry<String, String> entry : mapping.entrySet()) {
+                if (entry.getValue() != null) {
+                    reverse.put(entry.getValue(), entry.getKey());
+                }
+            }
+            for (int i = 0; i < overrideCount; i++) {
+                String providerCode = readString(in);
+                String internalCode = readString(in);
+                if (internalCode != null) {
+                    reverse.put(providerCode, internalCode);
+                } else {
+                    reverse.remove(providerCode);
+                }
+            }
+        }
+
+        EinvoiceMappingCacheData data = EinvoiceMappingCacheData.builder()
+                .cacheKey(cacheKey)
+                .mapping(mapping)
+                .reverseMapping(reverse)
+                .build();
+        if (updatedAt > 0) {
+            data.cacheUpdateAt = Instant.ofEpochMilli(updatedAt);
+        }
+        return data;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -1,13 +1,16 @@
 package vn.softz.app.einvoicehub.cache;
 
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import vn.softz.app.einvoicehub.service.mapping.CompiledMapping;
 import vn.softz.cache.base.BaseCacheData;
 
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Getter
 @Setter
@@ -17,8 +20,29 @@ import java.util.Map;
 public class EinvoiceMappingCacheData extends BaseCacheData {
     
     private String cacheKey;
+
+    // Mã nội bộ (Hub) → mã provider
     private Map<String, String> mapping;
 
+    // Mã provider → mã nội bộ, dựng sẵn lúc load để tra ngược O(1).
+    // Mã provider bị nhiều mã nội bộ dùng chung thì không có trong map này.
+    private Map<String, String> reverseMapping;
+
+    // Bảng tra typed dựng lười từ mapping, không serialize; bản cache (L1) dùng chung nên chỉ dựng một lần
+    @Getter(AccessLevel.NONE)
+    private final transient AtomicReference<CompiledMapping> compiled = new AtomicReference<>();
+
+    public CompiledMapping compiled() {
+        CompiledMapping value = compiled.get();
+        if (value == null) {
+            value = CompiledMapping.compile(cacheKey, mapping);
+            if (!compiled.compareAndSet(null, value)) {
+                value = compiled.get();
+            }
+        }
+        return value;
+    }
+
     @Override
     public String getKey() {
         return cacheKey;
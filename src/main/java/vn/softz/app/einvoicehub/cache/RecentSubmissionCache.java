@@ -0,0 +1,46 @@
+package vn.softz.app.einvoicehub.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import vn.softz.cache.base.CacheProperties;
+import vn.softz.cache.base.MicrometerCacheStatsRecorder;
+import vn.softz.cache.memory.LocalCache;
+
+import java.time.Duration;
+
+/**
+ * Bộ lọc (tenantId, partnerInvoiceId) → invoiceId của các hóa đơn vừa được nhận (đã commit) trên pod này.
+ * POS gửi lại hóa đơn vừa submit được trả ngay invoiceId gốc mà không chạm DB.
+ * Chỉ là lớp tăng tốc: miss (pod khác, quá TTL, bị đẩy ra) vẫn được unique uq_inv_tenant_partner chặn.
+ */
+@Component
+public class RecentSubmissionCache {
+
+    private static final String CACHE_NAME = "RecentSubmission";
+    private static final Duration RECENT_TTL = Duration.ofMinutes(30);
+    private static final String KEY_SEPARATOR = "|";
+
+    // Mapping không bao giờ đổi sau khi ghi nên không cần invalidate giữa các pod
+    private final LocalCache<String> invoiceIds;
+
+    public RecentSubmissionCache(CacheProperties cacheProperties, MeterRegistry meterRegistry) {
+        this.invoiceIds = new LocalCache<>(CACHE_NAME, RECENT_TTL, cacheProperties.maximumSizeOf(CACHE_NAME),
+                new MicrometerCacheStatsRecorder(meterRegistry, CACHE_NAME));
+    }
+
+    /**invoiceId của hóa đơn đã nhận; null nếu không có trong bộ lọc.*/
+    public String getInvoiceId(String tenantId, String partnerInvoiceId) {
+        return invoiceIds.getIfPresent(key(tenantId, partnerInvoiceId));
+    }
+
+    /**Chỉ gọi sau khi transaction lưu hóa đơn đã commit.*/
+    public void put(String tenantId, String partnerInvoiceId, String invoiceId) {
+        if (partnerInvoiceId != null && invoiceId != null) {
+            invoiceIds.put(key(tenantId, partnerInvoiceId), invoiceId);
+        }
+    }
+
+    private static String key(String tenantId, String partnerInvoiceId) {
+        return tenantId + KEY_SEPARATOR + partnerInvoiceId;
+    }
+}
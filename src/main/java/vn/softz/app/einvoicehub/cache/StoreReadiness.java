@@ -0,0 +1,68 @@
+package vn.softz.app.einvoicehub.cache;
+
+import vn.softz.app.einvoicehub.domain.repository.EinvStoreProviderRepository.StoreReadinessRow;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Ảnh chụp "cửa hàng đã sẵn sàng xuất hóa đơn chưa": trạng thái tích hợp theo từng NCC (một cửa hàng có thể
+ * có nhiều dòng einv_store_provider) và dải ký hiệu đang hoạt động theo (providerId, invoiceTypeId).
+ * Dựng từ một truy vấn, bất biến sau khi dựng.
+ */
+public final class StoreReadiness {
+
+    public record ActiveSerial(String invoiceForm, String invoiceSeries) {
+    }
+
+    private static final byte STATUS_ACTIVE = 1;
+
+    private final String storeId;
+    private final Set<String> integratedProviders;
+    private final Map<String, Map<Byte, ActiveSerial>> activeSerials;
+
+    private StoreReadiness(String storeId, Set<String> integratedProviders,
+                           Map<String, Map<Byte, ActiveSerial>> activeSerials) {
+        this.storeId = storeId;
+        this.integratedProviders = integratedProviders;
+        this.activeSerials = activeSerials;
+    }
+
+    /**rows theo thứ tự serial mới nhất trước: mỗi loại hóa đơn giữ serial đầu tiên gặp.*/
+    static StoreReadiness from(String storeId, List<StoreReadinessRow> rows) {
+        Set<String> integrated = new HashSet<>();
+        Map<String, Map<Byte, ActiveSerial>> serials = new HashMap<>();
+        for (StoreReadinessRow row : rows) {
+            if (row.getProviderId() == null) {
+                continue;
+            }
+            if (row.getIntegrationStatus() != null && row.getIntegrationStatus() == STATUS_ACTIVE) {
+                integrated.add(row.getProviderId());
+            }
+            if (row.getInvoiceTypeId() == null) {
+                continue;
+            }
+            serials.computeIfAbsent(row.getProviderId(), key -> new HashMap<>())
+                   .putIfAbsent(row.getInvoiceTypeId(), new ActiveSerial(row.getInvoiceForm(), row.getInvoiceSerial()));
+        }
+        return new StoreReadiness(storeId, integrated, serials);
+    }
+
+    public String getStoreId() {
+        return storeId;
+    }
+
+    /**Cửa hàng đã tích hợp thành công với NCC này.*/
+    public boolean isIntegrated(String providerId) {
+        return providerId != null && integratedProviders.contains(providerId);
+    }
+
+    /**Dải ký hiệu đang hoạt động cho loại hóa đơn; null nếu không có.*/
+    public ActiveSerial getActiveSerial(String providerId, Byte invoiceTypeId) {
+        Map<Byte, ActiveSerial> byType = activeSerials.get(providerId);
+        return byType != null && invoiceTypeId != null ? byType.get(invoiceTypeId) : null;
+    }
+}
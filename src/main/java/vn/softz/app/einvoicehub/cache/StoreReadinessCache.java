@@ -0,0 +1,52 @@
+package vn.softz.app.einvoicehub.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import vn.softz.app.einvoicehub.domain.repository.EinvStoreProviderRepository;
+import vn.softz.cache.base.CacheProperties;
+import vn.softz.cache.base.MicrometerCacheStatsRecorder;
+import vn.softz.cache.memory.LocalCache;
+import vn.softz.cache.redis.RedisCacheInvalidationBus;
+
+import java.time.Duration;
+
+/**
+ * Cache StoreReadiness theo storeId cho luồng submitInvoice: validate tích hợp / dải ký hiệu và gán
+ * invoiceForm + invoiceSeries đều tra trong bộ nhớ thay vì 3-4 truy vấn cho mỗi hóa đơn.
+ * Bỏ entry khi cấu hình cửa hàng hoặc dải ký hiệu đổi (invalidate / invalidateAll), trên mọi pod.
+ */
+@Slf4j
+@Component
+public class StoreReadinessCache {
+
+    private static final String CACHE_NAME = "StoreReadiness";
+    private static final Duration READINESS_TTL = Duration.ofMinutes(2);
+
+    private final EinvStoreProviderRepository storeProviderRepository;
+    private final LocalCache<StoreReadiness> snapshots;
+
+    public StoreReadinessCache(EinvStoreProviderRepository storeProviderRepository,
+                               RedisCacheInvalidationBus invalidationBus,
+                               CacheProperties cacheProperties,
+                               MeterRegistry meterRegistry) {
+        this.storeProviderRepository = storeProviderRepository;
+        this.snapshots = new LocalCache<>(CACHE_NAME, READINESS_TTL, cacheProperties.maximumSizeOf(CACHE_NAME),
+                new MicrometerCacheStatsRecorder(meterRegistry, CACHE_NAME), invalidationBus);
+    }
+
+    public StoreReadiness resolve(String storeId) {
+        return snapshots.get(storeId,
+                key -> StoreReadiness.from(key, storeProviderRepository.findReadinessRows(key)));
+    }
+
+    public void invalidate(String storeId) {
+        snapshots.invalidate(storeId);
+        log.debug("[StoreReadiness] invalidated storeId={}", storeId);
+    }
+
+    public void invalidateAll() {
+        snapshots.invalidateAll();
+        log.debug("[StoreReadiness] invalidated all snapshots");
+    }
+}
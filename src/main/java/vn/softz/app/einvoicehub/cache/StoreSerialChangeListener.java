@@ -0,0 +1,30 @@
+package vn.softz.app.einvoicehub.cache;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import vn.softz.app.einvoicehub.domain.entity.EinvStoreSerialEntity;
+
+/**
+ * Dải ký hiệu thêm / sửa / xóa qua JPA → bỏ StoreReadiness của cửa hàng.
+ * Hibernate lấy listener từ Spring (SpringBeanContainer) ngay lúc dựng EntityManagerFactory, trong khi cache
+ * lại cần repository (tức EntityManagerFactory) → chỉ giữ ObjectProvider, lấy cache lúc có sự kiện.
+ */
+@Component
+@RequiredArgsConstructor
+public class StoreSerialChangeListener {
+
+    private final ObjectProvider<StoreReadinessCache> storeReadinessCache;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    void onSerialChanged(EinvStoreSerialEntity serial) {
+        if (serial.getStoreId() != null) {
+            storeReadinessCache.getObject().invalidate(serial.getStoreId());
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package vn.softz.app.einvoicehub.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+    // Kích hoạt @Scheduled cho các job nền (dispatcher einv_sync_queue...)
+}
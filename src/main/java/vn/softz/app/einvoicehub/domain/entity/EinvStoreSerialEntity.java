@@ -2,11 +2,13 @@ package vn.softz.app.einvoicehub.domain.entity;
 
 import jakarta.persistence.*;
 import org.hibernate.annotations.GenericGenerator;
+import vn.softz.app.einvoicehub.cache.StoreSerialChangeListener;
 
 import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "einv_store_serial")
+@EntityListeners(StoreSerialChangeListener.class)
 public class EinvStoreSerialEntity extends BaseEntity {
 
     @Id
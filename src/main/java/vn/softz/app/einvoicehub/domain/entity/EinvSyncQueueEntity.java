@@ -9,7 +9,8 @@ import java.time.LocalDateTime;
 @Table(name = "einv_sync_queue",
        indexes = {
            @Index(name = "idx_queue_status_retry", columnList = "status, next_retry_at"),
-           @Index(name = "idx_queue_invoice", columnList = "invoice_id")
+           @Index(name = "idx_queue_invoice", columnList = "invoice_id"),
+           @Index(name = "idx_queue_status_lease", columnList = "status, locked_until")
        })
 public class EinvSyncQueueEntity extends BaseEntity {
 
@@ -57,6 +58,14 @@ public class EinvSyncQueueEntity extends BaseEntity {
     @Column(name = "next_retry_at")
     private LocalDateTime nextRetryAt;
 
+    //Node (pod) đang giữ lease xử lý entry
+    @Column(name = "locked_by", length = 100)
+    private String lockedBy;
+
+    //Hết hạn lease, quá hạn thì node khác được claim lại
+    @Column(name = "locked_until")
+    private LocalDateTime lockedUntil;
+
     public String getId() {
         return id;
     }
@@ -152,4 +161,20 @@ public class EinvSyncQueueEntity extends BaseEntity {
     public void setNextRetryAt(LocalDateTime nextRetryAt) {
         this.nextRetryAt = nextRetryAt;
     }
+
+    public String getLockedBy() {
+        return lockedBy;
+    }
+
+    public void setLockedBy(String lockedBy) {
+        this.lockedBy = lockedBy;
+    }
+
+    public LocalDateTime getLockedUntil() {
+        return lockedUntil;
+    }
+
+    public void setLockedUntil(LocalDateTime lockedUntil) {
+        this.lockedUntil = lockedUntil;
+    }
 }
@@ -0,0 +1,57 @@
+package vn.softz.app.einvoicehub.domain.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Ghi einv_audit_logs bằng JDBC batch.
+ * Entity dùng IDENTITY nên Hibernate không gộp được INSERT; luồng ghi nhiều audit một lúc đi qua đây.
+ * Cả batch nằm trong một transaction: lỗi giữa chừng thì không dòng nào được ghi, spool đẩy lại không bị trùng.
+ */
+@Repository
+@RequiredArgsConstructor
+public class EinvAuditLogJdbcRepository {
+
+    private static final String INSERT = """
+            INSERT INTO einv_audit_logs
+                (action, entity_name, entity_id, payload, result, error_msg, created_by, created_date)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // Sink gọi cả từ afterCommit của transaction nghiệp vụ: phải mở transaction riêng mới được commit
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void insertBatch(List<AuditLogRow> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT, rows, rows.size(), (ps, row) -> {
+            ps.setString(1, row.action());
+            ps.setString(2, row.entityName());
+            ps.setString(3, row.entityId());
+            ps.setString(4, row.payload());
+            ps.setString(5, row.result());
+            ps.setString(6, row.errorMsg());
+            ps.setString(7, row.createdBy());
+            ps.setTimestamp(8, Timestamp.valueOf(row.createdDate()));
+        });
+    }
+
+    public record AuditLogRow(String action,
+                              String entityName,
+                              String entityId,
+                              String payload,
+                              String result,
+                              String errorMsg,
+                              String createdBy,
+                              LocalDateTime createdDate) {
+    }
+}
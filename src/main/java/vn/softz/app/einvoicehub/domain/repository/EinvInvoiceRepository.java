@@ -6,10 +6,14 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,6 +24,36 @@ public interface EinvInvoiceRepository extends JpaRepository<EinvInvoiceEntity,
 
     boolean existsByPartnerInvoiceIdAndTenantId(String partnerInvoiceId, String tenantId);
 
+    // Hóa đơn đã nhận trong cả lô submit bằng một truy vấn → trả lại invoiceId gốc cho request gửi lại
+    @Query("SELECT i.partnerInvoiceId AS partnerInvoiceId, i.id AS invoiceId, i.statusId AS statusId " +
+           "FROM EinvInvoiceEntity i " +
+           "WHERE i.tenantId = :tenantId AND i.partnerInvoiceId IN :partnerInvoiceIds")
+    List<SubmittedInvoiceRow> findSubmittedByPartnerInvoiceIds(@Param("tenantId") String tenantId,
+                                                               @Param("partnerInvoiceIds") Collection<String> partnerInvoiceIds);
+
+    interface SubmittedInvoiceRow {
+        String getPartnerInvoiceId();
+
+        String getInvoiceId();
+
+        Byte getStatusId();
+    }
+
+    // Kết quả ký HSM (số hóa đơn, mã CQT, mã tra cứu, ngày ký); giá trị null giữ nguyên dữ liệu hiện tại
+    @Modifying
+    @Transactional
+    @Query("UPDATE EinvInvoiceEntity i SET " +
+           "i.invoiceNo = COALESCE(:invoiceNo, i.invoiceNo), " +
+           "i.taxAuthorityCode = COALESCE(:taxAuthorityCode, i.taxAuthorityCode), " +
+           "i.invoiceLookupCode = COALESCE(:invoiceLookupCode, i.invoiceLookupCode), " +
+           "i.signedDate = COALESCE(:signedDate, i.signedDate) " +
+           "WHERE i.id = :id")
+    int updateSignResult(@Param("id") String id,
+                         @Param("invoiceNo") String invoiceNo,
+                         @Param("taxAuthorityCode") String taxAuthorityCode,
+                         @Param("invoiceLookupCode") String invoiceLookupCode,
+                         @Param("signedDate") LocalDateTime signedDate);
+
     @EntityGraph(attributePaths = {"details"})
     Optional<EinvInvoiceEntity> findWithDetailsById(String id);
 
@@ -0,0 +1,109 @@
+package vn.softz.app.einvoicehub.domain.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Truy cập JDBC cho lịch poll trạng thái hóa đơn (einv_invoices.status_poll_at / status_poll_count).
+ * Chỉ quét các hóa đơn chưa xong (status_poll_at NOT NULL) qua idx_inv_status_poll,
+ * kết quả poll được ghi lại bằng JDBC batch.
+ */
+@Repository
+@RequiredArgsConstructor
+public class EinvInvoiceStatusPollRepository {
+
+    private static final String SELECT_DUE = """
+            SELECT i.id, i.store_id, i.provider_id, i.provider_invoice_id, i.status_poll_count
+            FROM einv_invoices i
+            WHERE i.status_poll_at <= ?
+            ORDER BY i.status_poll_at
+            LIMIT ?
+            FOR UPDATE SKIP LOCKED
+            """;
+
+    private static final String UPDATE_RESULT = """
+            UPDATE einv_invoices
+            SET status_id           = COALESCE(?, status_id),
+                tax_authority_code  = COALESCE(?, tax_authority_code),
+                invoice_lookup_code = COALESCE(?, invoice_lookup_code),
+                status_poll_at      = ?,
+                status_poll_count   = ?
+            WHERE id = ?
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    /**
+     * Claim các hóa đơn đến hạn poll bằng SKIP LOCKED rồi đẩy status_poll_at sang leaseUntil
+     * trong cùng transaction, để node khác không poll trùng trong lúc đang gọi provider.
+     * Node chết giữa chừng thì hết lease hóa đơn tự đến hạn lại.
+     */
+    @Transactional
+    public List<StatusPollTarget> claimDue(LocalDateTime now, int limit, LocalDateTime leaseUntil) {
+        List<StatusPollTarget> targets = jdbcTemplate.query(SELECT_DUE,
+                (rs, rowNum) -> new StatusPollTarget(
+                        rs.getString("id"),
+                        rs.getString("store_id"),
+                        rs.getString("provider_id"),
+                        rs.getString("provider_invoice_id"),
+                        rs.getInt("status_poll_count")),
+                Timestamp.valueOf(now), limit);
+        if (targets.isEmpty()) {
+            return targets;
+        }
+
+        namedJdbcTemplate.update("UPDATE einv_invoices SET status_poll_at = :leaseUntil WHERE id IN (:ids)",
+                new MapSqlParameterSource()
+                        .addValue("leaseUntil", Timestamp.valueOf(leaseUntil))
+                        .addValue("ids", targets.stream().map(StatusPollTarget::invoiceId).toList()));
+        return targets;
+    }
+
+    /**Bắt đầu lịch poll cho hóa đơn (sau khi ký thành công).*/
+    public void schedule(String invoiceId, LocalDateTime firstPollAt) {
+        jdbcTemplate.update("UPDATE einv_invoices SET status_poll_at = ?, status_poll_count = 0 WHERE id = ?",
+                Timestamp.valueOf(firstPollAt), invoiceId);
+    }
+
+    @Transactional
+    public void saveResults(List<StatusPollUpdate> updates) {
+        if (updates.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(UPDATE_RESULT, updates, updates.size(), (ps, update) -> {
+            if (update.statusId() != null) {
+                ps.setInt(1, update.statusId());
+            } else {
+                ps.setNull(1, Types.TINYINT);
+            }
+            ps.setString(2, update.taxAuthorityCode());
+            ps.setString(3, update.invoiceLookupCode());
+            if (update.nextPollAt() != null) {
+                ps.setTimestamp(4, Timestamp.valueOf(update.nextPollAt()));
+            } else {
+                ps.setNull(4, Types.TIMESTAMP);
+            }
+            ps.setInt(5, update.pollCount());
+            ps.setString(6, update.invoiceId());
+        });
+    }
+
+    public record StatusPollTarget(String invoiceId, String storeId, String providerId,
+                                   String providerInvoiceId, int pollCount) {
+    }
+
+    /**nextPollAt = null: dừng poll. Các giá trị null khác giữ nguyên dữ liệu hiện tại.*/
+    public record StatusPollUpdate(String invoiceId, Integer statusId, String taxAuthorityCode,
+                                   String invoiceLookupCode, LocalDateTime nextPollAt, int pollCount) {
+    }
+}
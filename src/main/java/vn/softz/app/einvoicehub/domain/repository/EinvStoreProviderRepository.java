@@ -5,6 +5,8 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -34,6 +36,35 @@ public interface EinvStoreProviderRepository extends JpaRepository<EinvStoreProv
 
     long countByProviderId(String providerId);
 
+    /**
+     * Trạng thái tích hợp theo từng NCC + các dải ký hiệu đang hoạt động của cửa hàng trong một truy vấn
+     * (mỗi dòng một serial, serial mới nhất trước; NCC chưa có serial active → một dòng với serial null).
+     */
+    @Query("""
+            SELECT p.providerId AS providerId,
+                   p.status AS integrationStatus,
+                   s.invoiceTypeId AS invoiceTypeId,
+                   s.invoiceForm AS invoiceForm,
+                   s.invoiceSerial AS invoiceSerial
+            FROM EinvStoreProviderEntity p
+            LEFT JOIN EinvStoreSerialEntity s
+                   ON s.storeId = p.storeId AND s.providerId = p.providerId AND s.status = 1
+            WHERE p.storeId = :storeId
+            ORDER BY s.startDate DESC
+            """)
+    List<StoreReadinessRow> findReadinessRows(@Param("storeId") String storeId);
+
+    interface StoreReadinessRow {
+        String getProviderId();
+
+        Byte getIntegrationStatus();
+
+        Byte getInvoiceTypeId();
+
+        String getInvoiceForm();
+
+        String getInvoiceSerial();
+    }
 
 
 
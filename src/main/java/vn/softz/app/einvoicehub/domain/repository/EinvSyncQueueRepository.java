@@ -5,11 +5,13 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -23,8 +25,6 @@ public interface EinvSyncQueueRepository extends JpaRepository<EinvSyncQueueEnti
 
     List<EinvSyncQueueEntity> findByStatus(String status);
 
-    List<EinvSyncQueueEntity> findPendingReadyForRetry(LocalDateTime dateTime, Pageable pageable);
-
     Page<EinvSyncQueueEntity> findByStatus(String status, Pageable pageable);
 
     List<EinvSyncQueueEntity> findByTenantIdAndStatus(String tenantId, String status);
@@ -37,6 +37,91 @@ public interface EinvSyncQueueRepository extends JpaRepository<EinvSyncQueueEnti
     @Query("SELECT q FROM EinvSyncQueueEntity q WHERE q.status = 'PENDING' AND q.nextRetryAt <= :now")
     Page<EinvSyncQueueEntity> findPendingForRetry(@Param("now") LocalDateTime now, Pageable pageable);
 
+    /**
+     * Khóa các entry có thể claim (PENDING đến hạn, hoặc PROCESSING đã hết lease).
+     * SKIP LOCKED để các node chạy song song không tranh cùng một dòng — phải gọi trong transaction.
+     */
+    @Query(value = """
+            SELECT q.id FROM einv_sync_queue q
+            WHERE q.sync_type IN (:syncTypes)
+              AND ((q.status = 'PENDING' AND (q.next_retry_at IS NULL OR q.next_retry_at <= :now))
+                OR (q.status = 'PROCESSING' AND q.locked_until < :now))
+            ORDER BY q.next_retry_at
+            LIMIT :limit
+            FOR UPDATE SKIP LOCKED
+            """, nativeQuery = true)
+    List<String> lockClaimableIds(@Param("syncTypes") Collection<String> syncTypes,
+                                  @Param("now") LocalDateTime now,
+                                  @Param("limit") int limit);
+
+    /**
+     * Chuyển các entry đã khóa sang PROCESSING cho owner.
+     * Entry PROCESSING bị claim lại (lease hết hạn = worker trước chết giữa chừng) được tính thêm một lượt thử.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = """
+            UPDATE einv_sync_queue
+            SET attempt_count = CASE WHEN status = 'PROCESSING' THEN attempt_count + 1 ELSE attempt_count END,
+                status = 'PROCESSING', locked_by = :owner, locked_until = :leaseUntil
+            WHERE id IN (:ids)
+            """, nativeQuery = true)
+    int claim(@Param("ids") Collection<String> ids,
+              @Param("owner") String owner,
+              @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    /**Entry PROCESSING hết lease mà lượt thử tiếp theo đã chạm max_attempts → FAILED thay vì claim lại mãi.*/
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = """
+            UPDATE einv_sync_queue
+            SET status = 'FAILED', attempt_count = attempt_count + 1,
+                last_error = 'Lease expired: worker did not complete the job', error_code = 'LEASE_EXPIRED',
+                next_retry_at = NULL, locked_by = NULL, locked_until = NULL
+            WHERE sync_type IN (:syncTypes)
+              AND status = 'PROCESSING' AND locked_until < :now
+              AND attempt_count + 1 >= max_attempts
+            """, nativeQuery = true)
+    int failExhaustedLeases(@Param("syncTypes") Collection<String> syncTypes,
+                            @Param("now") LocalDateTime now);
+
+    // Hoàn tất chỉ khi node còn giữ lease: node đã mất lease (entry bị claim lại) không được ghi đè
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE EinvSyncQueueEntity q SET q.status = 'SUCCESS', q.cqtMessageId = :cqtMessageId, " +
+           "q.lastError = null, q.nextRetryAt = null, q.lockedBy = null, q.lockedUntil = null " +
+           "WHERE q.id = :id AND q.lockedBy = :owner AND q.status = 'PROCESSING'")
+    int completeSuccess(@Param("id") String id,
+                        @Param("owner") String owner,
+                        @Param("cqtMessageId") String cqtMessageId);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE EinvSyncQueueEntity q SET q.status = :status, q.attemptCount = :attempts, " +
+           "q.lastError = :lastError, q.errorCode = :errorCode, q.nextRetryAt = :nextRetryAt, " +
+           "q.lockedBy = null, q.lockedUntil = null " +
+           "WHERE q.id = :id AND q.lockedBy = :owner AND q.status = 'PROCESSING'")
+    int completeFailure(@Param("id") String id,
+                        @Param("owner") String owner,
+                        @Param("status") String status,
+                        @Param("attempts") Byte attempts,
+                        @Param("lastError") String lastError,
+                        @Param("errorCode") String errorCode,
+                        @Param("nextRetryAt") LocalDateTime nextRetryAt);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE EinvSyncQueueEntity q SET q.status = 'PENDING', q.attemptCount = 0, q.nextRetryAt = :nextRetryAt, " +
+           "q.lastError = null, q.lockedBy = null, q.lockedUntil = null " +
+           "WHERE q.id = :id AND q.status = 'FAILED'")
+    int resetFailed(@Param("id") String id, @Param("nextRetryAt") LocalDateTime nextRetryAt);
+
+    @Modifying
+    @Query("UPDATE EinvSyncQueueEntity q SET q.lockedUntil = :leaseUntil " +
+           "WHERE q.id IN :ids AND q.lockedBy = :owner AND q.status = 'PROCESSING'")
+    int renewLeases(@Param("ids") Collection<String> ids,
+                    @Param("owner") String owner,
+                    @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    @Modifying
+    @Query("UPDATE EinvSyncQueueEntity q SET q.status = 'PROCESSING' WHERE q.id = :id AND q.status = 'PENDING'")
+    int markProcessingIfPending(@Param("id") String id);
+
     long countByStatus(String status);
 
     long countByProviderIdAndStatus(String providerId, String status);
@@ -0,0 +1,18 @@
+package vn.softz.app.einvoicehub.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import lombok.*;
+
+/**Kết quả của một dòng NDJSON: số dòng trong file + SubmitInvoiceResponse của dòng đó.*/
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IngestInvoiceLineResult {
+
+    @JsonProperty("line")
+    private long line;
+
+    @JsonUnwrapped
+    private SubmitInvoiceResponse result;
+}
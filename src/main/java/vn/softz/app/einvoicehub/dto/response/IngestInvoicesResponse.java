@@ -0,0 +1,39 @@
+package vn.softz.app.einvoicehub.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.*;
+
+/**Dòng tổng kết cuối luồng ingest NDJSON.
+ *  • lastCommittedLine: dòng cuối đã được commit — client gửi lại với resumeAfterLine = giá trị này;
+ *    không vượt qua dòng lỗi tạm thời (einv.error.submit_failed) đầu tiên
+ *  • retryable: số dòng lỗi tạm thời (nằm trong failed), sẽ được gửi lại khi chạy tiếp
+ *  • completed = false: luồng dừng giữa chừng (JSON hỏng / lỗi I/O), errorMessage cho biết lý do */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class IngestInvoicesResponse {
+
+    @JsonProperty("last_committed_line")
+    private long lastCommittedLine;
+
+    @JsonProperty("accepted")
+    private long accepted;
+
+    @JsonProperty("failed")
+    private long failed;
+
+    @JsonProperty("retryable")
+    private long retryable;
+
+    @JsonProperty("skipped")
+    private long skipped;
+
+    @JsonProperty("completed")
+    private boolean completed;
+
+    @JsonProperty("error_message")
+    private String errorMessage;
+}
@@ -5,6 +5,9 @@ import vn.softz.app.einvoicehub.provider.model.InvoiceResult;
 import vn.softz.app.einvoicehub.provider.model.InvoiceStatusResult;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
 
 public interface EInvoiceProvider {
 
@@ -48,4 +51,33 @@ public interface EInvoiceProvider {
      InvoiceResult cancelInvoiceByPartnerId(String lid, String partnerInvoiceId, String reason) ;
     */
 
+    /**
+     * Async API: provider có client non-blocking thì override để không giữ thread trong suốt round trip.
+     * Mặc định chạy bản sync trên virtual thread.
+     */
+    default CompletableFuture<InvoiceResult> createInvoiceAsync(String lid, int commandType, InvoiceData invoiceData) {
+        return runAsync(() -> createInvoice(lid, commandType, invoiceData));
+    }
+
+    default CompletableFuture<InvoiceResult> signInvoiceBatchByHsmAsync(String lid, List<String> invoiceGuids) {
+        return runAsync(() -> signInvoiceBatchByHsm(lid, invoiceGuids));
+    }
+
+    default CompletableFuture<InvoiceStatusResult> getInvoiceStatusFullAsync(String lid, String invoiceGuid) {
+        return runAsync(() -> getInvoiceStatusFull(lid, invoiceGuid));
+    }
+
+    default CompletableFuture<String> getInvoicePdfAsync(String lid, String docId) {
+        return runAsync(() -> getInvoicePdf(lid, docId));
+    }
+
+    default CompletableFuture<String> getInvoiceXmlAsync(String lid, String docId) {
+        return runAsync(() -> getInvoiceXml(lid, docId));
+    }
+
+    private static <T> CompletableFuture<T> runAsync(Supplier<T> call) {
+        Executor virtualThread = task -> Thread.ofVirtual().name("einv-provider-async").start(task);
+        return CompletableFuture.supplyAsync(call, virtualThread);
+    }
+
 }
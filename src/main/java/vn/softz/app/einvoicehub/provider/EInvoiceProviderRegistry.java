@@ -0,0 +1,39 @@
+package vn.softz.app.einvoicehub.provider;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import vn.softz.app.einvoicehub.domain.entity.EinvProviderEntity;
+import vn.softz.app.einvoicehub.domain.repository.EinvProviderRepository;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tìm EInvoiceProvider theo provider_id (UUID trong einv_providers).
+ * Bean provider được đăng ký theo provider_code (vd: @Component("BKAV")),
+ * provider_id → provider_code được cache vì không đổi trong suốt vòng đời provider.
+ */
+@Component
+@RequiredArgsConstructor
+public class EInvoiceProviderRegistry {
+
+    private final Map<String, EInvoiceProvider> providersByCode;
+    private final EinvProviderRepository providerRepository;
+
+    private final Map<String, String> codeById = new ConcurrentHashMap<>();
+
+    public EInvoiceProvider getByProviderId(String providerId) {
+        String providerCode = codeById.computeIfAbsent(providerId, id -> providerRepository.findById(id)
+                .map(EinvProviderEntity::getProviderCode)
+                .orElseThrow(() -> new IllegalStateException("Provider not found: " + id)));
+        return getByProviderCode(providerCode);
+    }
+
+    public EInvoiceProvider getByProviderCode(String providerCode) {
+        EInvoiceProvider provider = providersByCode.get(providerCode);
+        if (provider == null) {
+            throw new IllegalStateException("No EInvoiceProvider implementation for " + providerCode);
+        }
+        return provider;
+    }
+}
@@ -0,0 +1,21 @@
+package vn.softz.app.einvoicehub.provider.bkav;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import vn.softz.app.einvoicehub.provider.bkav.util.BkavCryptoContext;
+
+// Thông tin kết nối BKAV đã resolve cho một cửa hàng: PartnerGUID, endpoint và crypto context (key/IV)
+@Getter
+@AllArgsConstructor
+public class BkavConnectionProfile {
+
+    private final String storeId;
+    private final String partnerGuid;
+    private final String endpoint;
+    // null khi cửa hàng chưa khai báo đủ PartnerGUID / PartnerToken
+    private final BkavCryptoContext cryptoContext;
+
+    public boolean hasCredentials() {
+        return partnerGuid != null && cryptoContext != null;
+    }
+}
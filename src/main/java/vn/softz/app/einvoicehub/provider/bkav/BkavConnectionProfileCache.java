@@ -0,0 +1,77 @@
+package vn.softz.app.einvoicehub.provider.bkav;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import vn.softz.app.einvoicehub.domain.entity.EinvStoreProviderEntity;
+import vn.softz.app.einvoicehub.domain.repository.EinvProviderRepository;
+import vn.softz.app.einvoicehub.domain.repository.EinvStoreProviderRepository;
+import vn.softz.app.einvoicehub.provider.bkav.util.BkavCryptoContext;
+import vn.softz.cache.base.CacheProperties;
+import vn.softz.cache.base.MicrometerCacheStatsRecorder;
+import vn.softz.cache.memory.LocalCache;
+import vn.softz.cache.redis.RedisCacheInvalidationBus;
+
+import java.time.Duration;
+
+/**
+ * Cache BkavConnectionProfile theo storeId, tránh 2 lượt DB (store provider + provider) cho mỗi lệnh SOAP.
+ * Bỏ entry trên mọi pod khi cấu hình cửa hàng đổi (saveConfig / validateConfig / deactivate: PartnerGUID,
+ * key/IV) hoặc khi integrationUrl của provider đổi (bỏ toàn bộ).
+ */
+@Slf4j
+@Component
+public class BkavConnectionProfileCache {
+
+    static final String BKAV_PROVIDER_ID = "BKAV";
+    static final String DEFAULT_ENDPOINT = "https://wsdemo.ehoadon.vn/WSPublicEHoaDon.asmx";
+    private static final String CACHE_NAME = "BkavProfile";
+    private static final Duration PROFILE_TTL = Duration.ofMinutes(5);
+
+    private final EinvProviderRepository providerRepository;
+    private final EinvStoreProviderRepository storeProviderRepository;
+    private final LocalCache<BkavConnectionProfile> profiles;
+
+    public BkavConnectionProfileCache(EinvProviderRepository providerRepository,
+                                      EinvStoreProviderRepository storeProviderRepository,
+                                      RedisCacheInvalidationBus invalidationBus,
+                                      CacheProperties cacheProperties,
+                                      MeterRegistry meterRegistry) {
+        this.providerRepository = providerRepository;
+        this.storeProviderRepository = storeProviderRepository;
+        this.profiles = new LocalCache<>(CACHE_NAME, PROFILE_TTL, cacheProperties.maximumSizeOf(CACHE_NAME),
+                new MicrometerCacheStatsRecorder(meterRegistry, CACHE_NAME), invalidationBus);
+    }
+
+    /**@throws IllegalStateException nếu cửa hàng chưa cấu hình HĐĐT*/
+    public BkavConnectionProfile resolve(String storeId) {
+        return profiles.get(storeId, this::load);
+    }
+
+    private BkavConnectionProfile load(String storeId) {
+        EinvStoreProviderEntity config = storeProviderRepository.findByStoreId(storeId)
+                .orElseThrow(() -> new IllegalStateException("Chưa cấu hình HĐĐT cho cửa hàng này"));
+
+        String partnerGuid = config.getPartnerId();
+        String partnerToken = config.getPartnerToken();
+        BkavCryptoContext cryptoContext = partnerGuid != null && partnerToken != null
+                ? BkavCryptoContext.fromPartnerToken(partnerToken)
+                : null;
+
+        String endpoint = providerRepository.findById(BKAV_PROVIDER_ID)
+                .map(p -> p.getIntegrationUrl())
+                .orElse(DEFAULT_ENDPOINT);
+
+        return new BkavConnectionProfile(storeId, partnerGuid, endpoint, cryptoContext);
+    }
+
+    public void invalidate(String storeId) {
+        profiles.invalidate(storeId);
+        log.debug("[BkavProfile] invalidated storeId={}", storeId);
+    }
+
+    public void invalidateAll() {
+        profiles.invalidateAll();
+        log.debug("[BkavProfile] invalidated all profiles");
+    }
+}
@@ -1,5 +1,6 @@
 package vn.softz.app.einvoicehub.provider.bkav;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
@@ -7,6 +8,7 @@ import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
 import vn.softz.app.einvoicehub.provider.EInvoiceProvider;
 import vn.softz.app.einvoicehub.provider.bkav.constant.BkavCommandType;
 import vn.softz.app.einvoicehub.provider.bkav.mapper.BkavDataMapper;
@@ -21,6 +23,7 @@ import vn.softz.app.einvoicehub.service.EinvoiceMappingService.MappingType;
 import java.time.Instant;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 @Component("BKAV")
@@ -107,45 +110,61 @@ public class BkavEInvoiceProvider implements EInvoiceProvider {
         try {
             BkavResponse bkavResponse = soapClient.executeCommand(
                     lid, BkavCommandType.GET_INVOICE_STATUS_WITH_TAX_CODE, invoiceGuid);
+            return toInvoiceStatusFullResult(lid, invoiceGuid, bkavResponse);
 
-            if (!bkavResponse.isSuccess()) {
-                log.warn("[BKAV] getInvoiceStatusFull failed - invoiceGuid: {}, error: {}",
-                        invoiceGuid, bkavResponse.getErrorMessage());
-                return InvoiceStatusResult.error(bkavResponse.getErrorMessage());
-            }
+        } catch (Exception e) {
+            log.error("[BKAV] Lỗi getInvoiceStatusFull - lid: {}, invoiceGuid: {}", lid, invoiceGuid, e);
+            return InvoiceStatusResult.error("Lỗi lấy trạng thái đầy đủ: " + e.getMessage());
+        }
+    }
 
-            List<BkavResponse.InvoiceStatus> statusList = bkavResponse.asInvoiceStatusList();
+    @Override
+    public CompletableFuture<InvoiceStatusResult> getInvoiceStatusFullAsync(String lid, String invoiceGuid) {
+        log.info("[BKAV] getInvoiceStatusFullAsync - CmdType 850 - lid: {}, invoiceGuid: {}", lid, invoiceGuid);
+
+        return soapClient.executeCommandAsync(lid, BkavCommandType.GET_INVOICE_STATUS_WITH_TAX_CODE, invoiceGuid)
+                .map(bkavResponse -> toInvoiceStatusFullResult(lid, invoiceGuid, bkavResponse))
+                .onErrorResume(e -> {
+                    log.error("[BKAV] Lỗi getInvoiceStatusFullAsync - lid: {}, invoiceGuid: {}", lid, invoiceGuid, e);
+                    return Mono.just(InvoiceStatusResult.error("Lỗi lấy trạng thái đầy đủ: " + e.getMessage()));
+                })
+                .toFuture();
+    }
 
-            if (statusList == null || statusList.isEmpty()) {
-                log.warn("[BKAV] getInvoiceStatusFull - Danh sách trạng thái rỗng cho invoiceGuid: {}", invoiceGuid);
-                return InvoiceStatusResult.error("Không có dữ liệu trạng thái từ BKAV");
-            }
+    private InvoiceStatusResult toInvoiceStatusFullResult(String lid, String invoiceGuid, BkavResponse bkavResponse) {
+        if (!bkavResponse.isSuccess()) {
+            log.warn("[BKAV] getInvoiceStatusFull failed - invoiceGuid: {}, error: {}",
+                    invoiceGuid, bkavResponse.getErrorMessage());
+            return InvoiceStatusResult.error(bkavResponse.getErrorMessage());
+        }
 
-            BkavResponse.InvoiceStatus statusData = statusList.get(0);
+        List<BkavResponse.InvoiceStatus> statusList = bkavResponse.asInvoiceStatusList();
 
-            Integer bkavStatusId = statusData.getInvoiceStatusID();
-            String taxAuthorityCode = statusData.getMaCuaCQT();
+        if (statusList == null || statusList.isEmpty()) {
+            log.warn("[BKAV] getInvoiceStatusFull - Danh sách trạng thái rỗng cho invoiceGuid: {}", invoiceGuid);
+            return InvoiceStatusResult.error("Không có dữ liệu trạng thái từ BKAV");
+        }
 
-            log.info("[BKAV] getInvoiceStatusFull - Raw: statusId={}, MaCuaCQT={} cho invoiceGuid: {}",
-                    bkavStatusId, taxAuthorityCode, invoiceGuid);
+        BkavResponse.InvoiceStatus statusData = statusList.get(0);
 
-            Integer hubStatusId = reverseMapInvoiceStatus(lid, bkavStatusId);
+        Integer bkavStatusId = statusData.getInvoiceStatusID();
+        String taxAuthorityCode = statusData.getMaCuaCQT();
 
-            log.info("[BKAV] getInvoiceStatusFull - Map status: BKAV {} → Hub {}", bkavStatusId, hubStatusId);
+        log.info("[BKAV] getInvoiceStatusFull - Raw: statusId={}, MaCuaCQT={} cho invoiceGuid: {}",
+                bkavStatusId, taxAuthorityCode, invoiceGuid);
 
-            return InvoiceStatusResult.builder()
-                    .success(true)
-                    .bkavStatusId(bkavStatusId)
-                    .hubStatusId(hubStatusId)
-                    .taxAuthorityCode(taxAuthorityCode)
-                    .invoiceLookupCode(statusData.getInvoiceCode())
-                    .message("Lấy trạng thái đầy đủ thành công")
-                    .build();
+        Integer hubStatusId = reverseMapInvoiceStatus(lid, bkavStatusId);
 
-        } catch (Exception e) {
-            log.error("[BKAV] Lỗi getInvoiceStatusFull - lid: {}, invoiceGuid: {}", lid, invoiceGuid, e);
-            return InvoiceStatusResult.error("Lỗi lấy trạng thái đầy đủ: " + e.getMessage());
-        }
+        log.info("[BKAV] getInvoiceStatusFull - Map status: BKAV {} → Hub {}", bkavStatusId, hubStatusId);
+
+        return InvoiceStatusResult.builder()
+                .success(true)
+                .bkavStatusId(bkavStatusId)
+                .hubStatusId(hubStatusId)
+                .taxAuthorityCode(taxAuthorityCode)
+                .invoiceLookupCode(statusData.getInvoiceCode())
+                .message("Lấy trạng thái đầy đủ thành công")
+                .build();
     }
 
     /*@Override
@@ -264,31 +283,29 @@ public class BkavEInvoiceProvider implements EInvoiceProvider {
 
     @Override
     public String getInvoicePdf(String storeid, String docId) {
-        return getInvoiceFile(null, docId, BkavCommandType.GET_INVOICE_DATA_FILE_PDF);
+        return getInvoiceFile(storeid, docId, BkavCommandType.GET_INVOICE_DATA_FILE_PDF);
     }
 
     @Override
     public String getInvoiceXml(String storeid, String docId) {
-        return getInvoiceFile(null, docId, BkavCommandType.GET_INVOICE_DATA_FILE_XML);
+        return getInvoiceFile(storeid, docId, BkavCommandType.GET_INVOICE_DATA_FILE_XML);
+    }
+
+    @Override
+    public CompletableFuture<String> getInvoicePdfAsync(String storeid, String docId) {
+        return getInvoiceFileAsync(storeid, docId, BkavCommandType.GET_INVOICE_DATA_FILE_PDF);
+    }
+
+    @Override
+    public CompletableFuture<String> getInvoiceXmlAsync(String storeid, String docId) {
+        return getInvoiceFileAsync(storeid, docId, BkavCommandType.GET_INVOICE_DATA_FILE_XML);
     }
 
     private String getInvoiceFile(String lid, String partnerInvoiceStringId, int commandType) {
         try {
             BkavResponse bkavResponse = soapClient.executeCommand(
                     lid, commandType, partnerInvoiceStringId);
-
-            if (bkavResponse.getCode() != null && bkavResponse.getCode() != 0) {
-                throw new RuntimeException("BKAV error: " + bkavResponse.getErrorMessage());
-            }
-
-            BkavResponse.InvoiceFile fileResult = bkavResponse.asInvoiceFile();
-            if (fileResult == null) {
-                throw new RuntimeException("Không nhận được file từ BKAV");
-            }
-
-            return commandType == BkavCommandType.GET_INVOICE_DATA_FILE_PDF
-                    ? fileResult.getPdf()
-                    : fileResult.getXml();
+            return extractInvoiceFile(bkavResponse, commandType);
 
         } catch (Exception e) {
             log.error("Error getting invoice file", e);
@@ -296,44 +313,99 @@ public class BkavEInvoiceProvider implements EInvoiceProvider {
         }
     }
 
+    private CompletableFuture<String> getInvoiceFileAsync(String lid, String partnerInvoiceStringId, int commandType) {
+        return soapClient.executeCommandAsync(lid, commandType, partnerInvoiceStringId)
+                .map(bkavResponse -> extractInvoiceFile(bkavResponse, commandType))
+                .onErrorMap(e -> {
+                    log.error("Error getting invoice file", e);
+                    return new RuntimeException("Lỗi lấy file hóa đơn", e);
+                })
+                .toFuture();
+    }
+
+    private String extractInvoiceFile(BkavResponse bkavResponse, int commandType) {
+        if (bkavResponse.getCode() != null && bkavResponse.getCode() != 0) {
+            throw new RuntimeException("BKAV error: " + bkavResponse.getErrorMessage());
+        }
+
+        BkavResponse.InvoiceFile fileResult = bkavResponse.asInvoiceFile();
+        if (fileResult == null) {
+            throw new RuntimeException("Không nhận được file từ BKAV");
+        }
+
+        return commandType == BkavCommandType.GET_INVOICE_DATA_FILE_PDF
+                ? fileResult.getPdf()
+                : fileResult.getXml();
+    }
+
     @Override
     public InvoiceResult createInvoice(String lid, int commandType, InvoiceData invoiceData) {
         try {
-            BkavInvoice.RequestData bkavData = dataMapper.toBkavRequestData(invoiceData.getLid(), invoiceData);
-            String jsonData = OBJECT_MAPPER.writeValueAsString(List.of(bkavData));
-            log.debug("BKAV Request JSON: {}", jsonData);
+            List<BkavInvoice.RequestData> commandData = buildCreateCommandData(invoiceData);
 
             // BkavResponse bkavResponse = soapClient.executeCommand(commandType, jsonData);
-            BkavResponse bkavResponse = soapClient.executeCommand(lid, commandType, jsonData);
+            BkavResponse bkavResponse = soapClient.executeCommand(lid, commandType, commandData);
+            return toCreateInvoiceResult(bkavResponse);
 
-            if (!bkavResponse.isSuccess()) {
-                String errorMsg = bkavResponse.getErrorMessage();
-                return buildErrorResult(
-                        errorMsg != null ? "Lỗi từ BKAV: " + errorMsg : "Lỗi từ BKAV",
-                        bkavResponse.getStatus()
-                );
-            }
+        } catch (Exception e) {
+            log.error("Lỗi tạo hóa đơn BKAV: ", e);
+            return buildErrorResult("Lỗi kết nối BKAV: " + e.getMessage(), 1);
+        }
+    }
 
-            BkavResponse.InvoiceResult invoiceResult = bkavResponse.asInvoiceResult();
+    @Override
+    public CompletableFuture<InvoiceResult> createInvoiceAsync(String lid, int commandType, InvoiceData invoiceData) {
+        // Mapping đọc cache mapping (có thể chạm Redis) nên chạy trước, trên thread gọi
+        List<BkavInvoice.RequestData> commandData;
+        try {
+            commandData = buildCreateCommandData(invoiceData);
+        } catch (Exception e) {
+            log.error("Lỗi tạo hóa đơn BKAV: ", e);
+            return CompletableFuture.completedFuture(buildErrorResult("Lỗi kết nối BKAV: " + e.getMessage(), 1));
+        }
 
-            if (invoiceResult == null) {
-                return InvoiceResult.error("BKAV không trả về kết quả");
-            }
+        return soapClient.executeCommandAsync(lid, commandType, commandData)
+                .map(this::toCreateInvoiceResult)
+                .onErrorResume(e -> {
+                    log.error("Lỗi tạo hóa đơn BKAV: ", e);
+                    return Mono.just(buildErrorResult("Lỗi kết nối BKAV: " + e.getMessage(), 1));
+                })
+                .toFuture();
+    }
 
-            if (!invoiceResult.isSuccess()) {
-                String errorMsg = invoiceResult.getMessLog();
-                return buildErrorResult(
-                        errorMsg != null ? "Lỗi từ BKAV: " + errorMsg : "Lỗi từ BKAV: Lỗi tạo hóa đơn",
-                        invoiceResult.getStatus()
-                );
-            }
+    private List<BkavInvoice.RequestData> buildCreateCommandData(InvoiceData invoiceData) throws JsonProcessingException {
+        BkavInvoice.RequestData bkavData = dataMapper.toBkavRequestData(invoiceData.getLid(), invoiceData);
+        List<BkavInvoice.RequestData> commandData = List.of(bkavData);
+        if (log.isDebugEnabled()) {
+            log.debug("BKAV Request JSON: {}", OBJECT_MAPPER.writeValueAsString(commandData));
+        }
+        return commandData;
+    }
 
-            return buildSuccessResultFromBkav(invoiceResult);
+    private InvoiceResult toCreateInvoiceResult(BkavResponse bkavResponse) {
+        if (!bkavResponse.isSuccess()) {
+            String errorMsg = bkavResponse.getErrorMessage();
+            return buildErrorResult(
+                    errorMsg != null ? "Lỗi từ BKAV: " + errorMsg : "Lỗi từ BKAV",
+                    bkavResponse.getStatus()
+            );
+        }
 
-        } catch (Exception e) {
-            log.error("Lỗi tạo hóa đơn BKAV: ", e);
-            return buildErrorResult("Lỗi kết nối BKAV: " + e.getMessage(), 1);
+        BkavResponse.InvoiceResult invoiceResult = bkavResponse.asInvoiceResult();
+
+        if (invoiceResult == null) {
+            return InvoiceResult.error("BKAV không trả về kết quả");
+        }
+
+        if (!invoiceResult.isSuccess()) {
+            String errorMsg = invoiceResult.getMessLog();
+            return buildErrorResult(
+                    errorMsg != null ? "Lỗi từ BKAV: " + errorMsg : "Lỗi từ BKAV: Lỗi tạo hóa đơn",
+                    invoiceResult.getStatus()
+            );
         }
+
+        return buildSuccessResultFromBkav(invoiceResult);
     }
 
     @Override
@@ -353,11 +425,13 @@ public class BkavEInvoiceProvider implements EInvoiceProvider {
                 requestData.getInvoice().setInvoiceGUID(UUID.fromString(invoiceGuid));
             }
 
-            String jsonData = OBJECT_MAPPER.writeValueAsString(List.of(requestData));
-            log.debug("[BKAV][updateInvoiceByGuid] Request JSON: {}", jsonData);
+            List<BkavInvoice.RequestData> commandData = List.of(requestData);
+            if (log.isDebugEnabled()) {
+                log.debug("[BKAV][updateInvoiceByGuid] Request JSON: {}", OBJECT_MAPPER.writeValueAsString(commandData));
+            }
 
             // Gọi BKAV CmdType=210
-            BkavResponse bkavResponse = soapClient.executeCommand(lid, BkavCommandType.UPDATE_INVOICE_BY_GUID, jsonData);
+            BkavResponse bkavResponse = soapClient.executeCommand(lid, BkavCommandType.UPDATE_INVOICE_BY_GUID, commandData);
 
             if (!bkavResponse.isSuccess()) {
                 String errorMsg = bkavResponse.getErrorMessage();
@@ -406,20 +480,7 @@ public class BkavEInvoiceProvider implements EInvoiceProvider {
             //BkavResponse bkavResponse = soapClient.executeCommand(BkavCommandType.SIGN_INVOICE_BY_HSM, invoiceGuid);
             BkavResponse bkavResponse = soapClient.executeCommand(
                     lid, BkavCommandType.SIGN_INVOICE_BY_HSM, invoiceGuid);
-
-            if (!bkavResponse.isSuccess()) {
-                String errorMsg = bkavResponse.getErrorMessage();
-                return buildErrorResult(
-                        errorMsg != null ? "Lỗi từ BKAV: " + errorMsg : "Lỗi từ BKAV: Lỗi ký hóa đơn",
-                        bkavResponse.getStatus()
-                );
-            }
-            return InvoiceResult.builder()
-                    .success(true)
-                    .message("Ký hóa đơn bằng HSM thành công")
-                    .signedDate(Instant.now())
-                    .object(bkavResponse.getObject())
-                    .build();
+            return toSignResult(bkavResponse);
 
         } catch (Exception e) {
             log.error("Lỗi ký hóa đơn BKAV: ", e);
@@ -427,28 +488,106 @@ public class BkavEInvoiceProvider implements EInvoiceProvider {
         }
     }
 
+    private InvoiceResult toSignResult(BkavResponse bkavResponse) {
+        if (!bkavResponse.isSuccess()) {
+            String errorMsg = bkavResponse.getErrorMessage();
+            return buildErrorResult(
+                    errorMsg != null ? "Lỗi từ BKAV: " + errorMsg : "Lỗi từ BKAV: Lỗi ký hóa đơn",
+                    bkavResponse.getStatus()
+            );
+        }
+        return InvoiceResult.builder()
+                .success(true)
+                .message("Ký hóa đơn bằng HSM thành công")
+                .signedDate(Instant.now())
+                .object(bkavResponse.getObject())
+                .build();
+    }
+
+    // CmdType 206: ký nhiều hóa đơn trong một lệnh, BKAV trả kết quả từng hóa đơn theo InvoiceGUID
     @Override
     public InvoiceResult signInvoiceBatchByHsm(String lid, List<String> invoiceGuids) {
-        log.info("[BKAV] Bắt đầu ký lô {} hóa đơn qua CmdType 205 ", invoiceGuids.size());
+        log.info("[BKAV] Bắt đầu ký lô {} hóa đơn qua CmdType 206", invoiceGuids.size());
         try {
-            for (String guid : invoiceGuids) {
-                InvoiceResult singleResult = this.signInvoiceByHsm(lid, guid);
+            BkavResponse bkavResponse = soapClient.executeCommand(
+                    lid, BkavCommandType.SIGN_INVOICES_BY_HSM, invoiceGuids);
+            return toBatchSignResult(invoiceGuids, bkavResponse);
 
-                if (!singleResult.isSuccess()) {
-                    log.error("[BKAV] Lỗi khi ký hóa đơn {} trong lô: {}", guid, singleResult.getMessage());
-                    return buildErrorResult("Hóa đơn " + guid + " ký lỗi: " + singleResult.getMessage(), 1);
-                }
-            }
+        } catch (Exception e) {
+            log.error("[BKAV] Lỗi xử lý ký lô hóa đơn: ", e);
+            return buildErrorResult("Lỗi xử lý ký lô hóa: " + e.getMessage(), 1);
+        }
+    }
+
+    @Override
+    public CompletableFuture<InvoiceResult> signInvoiceBatchByHsmAsync(String lid, List<String> invoiceGuids) {
+        log.info("[BKAV] Bắt đầu ký lô {} hóa đơn qua CmdType 206 (async)", invoiceGuids.size());
+
+        return soapClient.executeCommandAsync(lid, BkavCommandType.SIGN_INVOICES_BY_HSM, invoiceGuids)
+                .map(bkavResponse -> toBatchSignResult(invoiceGuids, bkavResponse))
+                .onErrorResume(e -> {
+                    log.error("[BKAV] Lỗi xử lý ký lô hóa đơn: ", e);
+                    return Mono.just(buildErrorResult("Lỗi xử lý ký lô hóa: " + e.getMessage(), 1));
+                })
+                .toFuture();
+    }
+
+    // Lỗi cấp lệnh → cả lô lỗi; ngược lại itemResults chứa kết quả từng hóa đơn (nếu BKAV trả về)
+    private InvoiceResult toBatchSignResult(List<String> invoiceGuids, BkavResponse bkavResponse) {
+        if (!bkavResponse.isSuccess()) {
+            String errorMsg = bkavResponse.getErrorMessage();
+            log.error("[BKAV] Lỗi ký lô {} hóa đơn: {}", invoiceGuids.size(), errorMsg);
+            return buildErrorResult(
+                    errorMsg != null ? "Lỗi từ BKAV: " + errorMsg : "Lỗi từ BKAV: Lỗi ký lô hóa đơn",
+                    bkavResponse.getStatus()
+            );
+        }
+
+        List<BkavResponse.InvoiceResult> bkavResults = bkavResponse.asInvoiceResults();
+        if (bkavResults == null || bkavResults.isEmpty()) {
             return InvoiceResult.builder()
                     .success(true)
                     .message("Ký lô hóa đơn bằng HSM thành công")
                     .signedDate(Instant.now())
                     .build();
+        }
 
-        } catch (Exception e) {
-            log.error("[BKAV] Lỗi xử lý ký lô hóa đơn: ", e);
-            return buildErrorResult("Lỗi xử lý ký lô hóa: " + e.getMessage(), 1);
+        Instant signedDate = Instant.now();
+        List<InvoiceResult> itemResults = bkavResults.stream()
+                .map(item -> item.isSuccess()
+                        ? InvoiceResult.builder()
+                                .success(true)
+                                .message("Ký hóa đơn bằng HSM thành công")
+                                .invoiceGuid(item.getInvoiceGUID())
+                                .invoiceNo(item.getInvoiceNo())
+                                .invoiceReferenceCode(item.getInvoiceLookupCode())
+                                .taxAuthorityCode(item.getTaxAuthorityCode())
+                                .status(item.getStatus())
+                                .signedDate(signedDate)
+                                .build()
+                        : InvoiceResult.builder()
+                                .success(false)
+                                .message(item.getMessLog() != null
+                                        ? "Lỗi từ BKAV: " + item.getMessLog() : "Lỗi từ BKAV: Lỗi ký hóa đơn")
+                                .invoiceGuid(item.getInvoiceGUID())
+                                .status(item.getStatus())
+                                .messLog(item.getMessLog())
+                                .build())
+                .toList();
+
+        long failed = itemResults.stream().filter(item -> !item.isSuccess()).count();
+        if (failed > 0) {
+            log.warn("[BKAV] Ký lô: {}/{} hóa đơn lỗi", failed, itemResults.size());
         }
+        return InvoiceResult.builder()
+                .success(failed == 0)
+                .message(failed == 0
+                        ? "Ký lô hóa đơn bằng HSM thành công"
+                        : failed + "/" + itemResults.size() + " hóa đơn ký lỗi")
+                .status(failed == 0 ? 0 : 1)
+                .signedDate(signedDate)
+                .itemResults(itemResults)
+                .build();
     }
 
     @Override
@@ -462,11 +601,13 @@ public class BkavEInvoiceProvider implements EInvoiceProvider {
             BkavInvoice.RequestData bkavData =
                     dataMapper.toBkavAdjustRequestData(invoiceData.getLid(), invoiceData);
 
-            String jsonData = OBJECT_MAPPER.writeValueAsString(List.of(bkavData));
-            log.debug("[BKAV][createAdjustmentInvoice] Request JSON: {}", jsonData);
+            List<BkavInvoice.RequestData> commandData = List.of(bkavData);
+            if (log.isDebugEnabled()) {
+                log.debug("[BKAV][createAdjustmentInvoice] Request JSON: {}", OBJECT_MAPPER.writeValueAsString(commandData));
+            }
 
             BkavResponse bkavResponse = soapClient.executeCommand(
-                    lid, BkavCommandType.CREATE_INVOICE_ADJUST_SET_NO, jsonData);
+                    lid, BkavCommandType.CREATE_INVOICE_ADJUST_SET_NO, commandData);
             //BkavResponse bkavResponse = soapClient.executeCommand(BkavCommandType.CREATE_INVOICE_ADJUST, jsonData);
 
             if (!bkavResponse.isSuccess()) {
@@ -4,19 +4,40 @@ import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.http.*;
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.StreamingHttpOutputMessage;
 import org.springframework.stereotype.Component;
+import org.springframework.web.client.RequestCallback;
 import org.springframework.web.client.RestTemplate;
-import vn.softz.app.einvoicehub.domain.repository.EinvProviderRepository;
-import vn.softz.app.einvoicehub.domain.repository.EinvStoreProviderRepository;
+import org.springframework.web.reactive.function.BodyInserters;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 import vn.softz.app.einvoicehub.provider.bkav.model.BkavResponse;
-import vn.softz.app.einvoicehub.provider.bkav.util.BkavCryptoUtil;
+import vn.softz.app.einvoicehub.provider.bkav.util.BkavCryptoContext;
+import vn.softz.app.einvoicehub.provider.bkav.util.BkavEnvelopeException;
+import vn.softz.app.einvoicehub.provider.bkav.util.BkavEnvelopeReader;
+import vn.softz.app.einvoicehub.provider.bkav.util.BkavEnvelopeWriter;
+import vn.softz.app.einvoicehub.provider.http.ProviderHttpClientFactory;
 import vn.softz.core.common.Common;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 @Component
 @Slf4j
@@ -24,12 +45,17 @@ import java.util.regex.Pattern;
 public class BkavSoapClient {
 
     private static final String BKAV_PROVIDER_ID = "BKAV";
-    private static final String DEFAULT_ENDPOINT = "https://wsdemo.ehoadon.vn/WSPublicEHoaDon.asmx";
     private static final ObjectMapper OBJECT_MAPPER = createObjectMapper();
+    // Số DataBuffer response được đọc trước khi parser tiêu thụ; file PDF/XML (cmd 808/809) không bị gom cả vào bộ nhớ
+    private static final int ASYNC_RESPONSE_DEMAND = 16;
+    private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(10);
 
-    private final EinvProviderRepository providerRepository;
-    private final EinvStoreProviderRepository storeProviderRepository;
-    private final RestTemplate restTemplate = new RestTemplate();
+    private final BkavConnectionProfileCache profileCache;
+    private final ProviderHttpClientFactory httpClientFactory;
+
+    // Gắn với vòng đời bean, đóng ở shutdown()
+    private final ExecutorService virtualExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Scheduler virtualScheduler = Schedulers.fromExecutorService(virtualExecutor, "bkav-soap");
 
     private static ObjectMapper createObjectMapper() {
         ObjectMapper mapper = new ObjectMapper();
@@ -41,128 +67,139 @@ public class BkavSoapClient {
 
     // Gửi lệnh lên BKAV SOAP API.
     // commandObject có thể là String (guid, taxCode...) hoặc Object (List<BkavInvoice.RequestData>...)
-    // SoapClient tự serialize Object → JSON string trước khi encrypt.
+    // SoapClient serialize Object thẳng vào stream GZip → AES → Base64, không dựng JSON string trung gian.
     public BkavResponse executeCommand(String storeId, int commandType, Object commandObject) {
         try {
-            var config = storeProviderRepository.findByStoreId(storeId)
-                    .orElseThrow(() -> new RuntimeException("Chưa cấu hình HĐĐT cho cửa hàng này"));
-
-            String partnerGuid = config.getPartnerId();
-            String partnerToken = config.getPartnerToken();
-
-            if (partnerGuid == null || partnerToken == null) {
+            BkavConnectionProfile profile = profileCache.resolve(storeId);
+            if (!profile.hasCredentials()) {
                 return createErrorResponse(-1, "Thiếu thông tin PartnerGUID hoặc PartnerToken");
             }
 
-            String endpoint = providerRepository.findById(BKAV_PROVIDER_ID)
-                    .map(p -> p.getIntegrationUrl())
-                    .orElse(DEFAULT_ENDPOINT);
-
-            // Serialize commandObject → JSON string nếu chưa phải String
-            String commandJson = toJsonString(commandObject);
-            String soapRequest = buildSoapEnvelope(commandType, commandJson, partnerGuid, partnerToken);
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.TEXT_XML);
-            headers.set("SOAPAction", "http://tempuri.org/ExecuteCommand");
-
-            HttpEntity<String> request = new HttpEntity<>(soapRequest, headers);
+            String partnerGuid = profile.getPartnerGuid();
+            String endpoint = profile.getEndpoint();
+            BkavCryptoContext cryptoContext = profile.getCryptoContext();
+
+            // Envelope được ghi streaming thẳng vào body request (JSON → GZip → AES → Base64)
+            RequestCallback requestCallback = request -> {
+                request.getHeaders().setContentType(MediaType.TEXT_XML);
+                request.getHeaders().set("SOAPAction", BkavEnvelopeWriter.SOAP_ACTION);
+                if (request instanceof StreamingHttpOutputMessage streaming) {
+                    streaming.setBody(body -> writeEnvelope(body, partnerGuid, commandType, commandObject, cryptoContext));
+                } else {
+                    writeEnvelope(request.getBody(), partnerGuid, commandType, commandObject, cryptoContext);
+                }
+            };
 
-            ResponseEntity<String> response = restTemplate.exchange(
+            RestTemplate restTemplate = httpClientFactory.getRestTemplate(BKAV_PROVIDER_ID);
+            return restTemplate.execute(
                     endpoint,
                     HttpMethod.POST,
-                    request,
-                    String.class
+                    requestCallback,
+                    response -> parseSoapResponse(response.getBody(), cryptoContext)
             );
 
-            return parseSoapResponse(response.getBody(), partnerToken);
-
         } catch (Exception e) {
             log.error("Error calling BKAV SOAP service", e);
             return createErrorResponse(-1, "Lỗi kết nối BKAV: " + e.getMessage());
         }
     }
 
-    // Serialize object → JSON string
-    // Nếu đã là String thì giữ nguyên (uuid, taxCode, guid...)
-    private String toJsonString(Object commandObject) throws Exception {
-        if (commandObject instanceof String) {
-            return (String) commandObject;
-        }
-        return OBJECT_MAPPER.writeValueAsString(commandObject);
+    /**
+     * Bản async của executeCommand trên WebClient (reactor-netty): không giữ thread trong lúc chờ BKAV.
+     * Envelope được ghi streaming vào body; ghi envelope, resolve profile và giải mã response
+     * chạy trên virtual thread để không chặn event loop. Response được parse streaming
+     * ngay khi các DataBuffer về tới, không gom toàn bộ body trước.
+     */
+    public Mono<BkavResponse> executeCommandAsync(String storeId, int commandType, Object commandObject) {
+        return Mono.fromCallable(() -> profileCache.resolve(storeId))
+                .subscribeOn(virtualScheduler)
+                .flatMap(profile -> {
+                    if (!profile.hasCredentials()) {
+                        return Mono.just(createErrorResponse(-1, "Thiếu thông tin PartnerGUID hoặc PartnerToken"));
+                    }
+                    return exchangeAsync(profile, commandType, commandObject);
+                })
+                .onErrorResume(e -> {
+                    log.error("Error calling BKAV SOAP service (async)", e);
+                    return Mono.just(createErrorResponse(-1, "Lỗi kết nối BKAV: " + e.getMessage()));
+                });
     }
 
-    private String buildSoapEnvelope(int commandType, String commandJson,
-                                     String partnerGuid, String partnerToken) {
-        try {
-            // Nếu commandJson là plain string (uuid, taxCode...) thì wrap trong quotes
-            String commandValue = commandJson.startsWith("{") || commandJson.startsWith("[")
-                    ? commandJson
-                    : "\"" + commandJson + "\"";
-
-            String fullCommand = String.format(
-                    "{\"CmdType\":%d,\"CommandObject\":%s}",
-                    commandType,
-                    commandValue
-            );
+    private Mono<BkavResponse> exchangeAsync(BkavConnectionProfile profile, int commandType, Object commandObject) {
+        BkavCryptoContext cryptoContext = profile.getCryptoContext();
+        Publisher<DataBuffer> body = DataBufferUtils.outputStreamPublisher(
+                outputStream -> {
+                    try {
+                        writeEnvelope(outputStream, profile.getPartnerGuid(), commandType, commandObject, cryptoContext);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                },
+                DefaultDataBufferFactory.sharedInstance,
+                virtualExecutor);
+
+        return httpClientFactory.getWebClient(BKAV_PROVIDER_ID)
+                .post()
+                .uri(profile.getEndpoint())
+                .contentType(MediaType.TEXT_XML)
+                .header("SOAPAction", BkavEnvelopeWriter.SOAP_ACTION)
+                .body(BodyInserters.fromDataBuffers(body))
+                .exchangeToMono(response -> {
+                    if (response.statusCode().isError()) {
+                        return response.createError();
+                    }
+                    // Parser đọc blocking trên virtual thread; đóng stream sẽ hủy phần body chưa đọc
+                    InputStream in = DataBufferUtils.subscriberInputStream(
+                            response.bodyToFlux(DataBuffer.class), ASYNC_RESPONSE_DEMAND);
+                    return Mono.fromCallable(() -> {
+                                try (in) {
+                                    return parseSoapResponse(in, cryptoContext);
+                                }
+                            })
+                            .subscribeOn(virtualScheduler);
+                });
+    }
 
-            String encryptedData = BkavCryptoUtil.encryptData(fullCommand, partnerToken);
-
-            return String.format(
-                    "<?xml version=\"1.0\" encoding=\"utf-8\"?>" +
-                            "<soap:Envelope xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" " +
-                            "xmlns:xsd=\"http://www.w3.org/2001/XMLSchema\" " +
-                            "xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\">" +
-                            "<soap:Body>" +
-                            "<ExecuteCommand xmlns=\"http://tempuri.org/\">" +
-                            "<PartnerGUID>%s</PartnerGUID>" +
-                            "<EncryptedCommandData>%s</EncryptedCommandData>" +
-                            "</ExecuteCommand>" +
-                            "</soap:Body>" +
-                            "</soap:Envelope>",
-                    partnerGuid,
-                    encryptedData
-            );
+    @PreDestroy
+    void shutdown() {
+        virtualExecutor.shutdown();
+        try {
+            if (!virtualExecutor.awaitTermination(SHUTDOWN_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+                log.warn("BKAV SOAP executor did not terminate within {}", SHUTDOWN_TIMEOUT);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // dispose() gọi shutdownNow() cho executor còn task treo
+        virtualScheduler.dispose();
+    }
 
-        } catch (Exception e) {
+    // commandObject có thể là String (uuid, taxCode...) hoặc Object, được serialize thẳng vào stream mã hóa
+    private void writeEnvelope(OutputStream body, String partnerGuid, int commandType,
+                               Object commandObject, BkavCryptoContext cryptoContext) throws IOException {
+        try {
+            BkavEnvelopeWriter.write(body, partnerGuid, commandType, commandObject, cryptoContext, OBJECT_MAPPER);
+        } catch (GeneralSecurityException e) {
             log.error("Error encrypting command data", e);
-            throw new RuntimeException("Failed to encrypt command data: " + e.getMessage(), e);
+            throw new IOException("Failed to encrypt command data: " + e.getMessage(), e);
         }
     }
 
-    private BkavResponse parseSoapResponse(String soapXml, String partnerToken) {
+    // Đọc streaming ExecuteCommandResult (StAX), giải mã / giải nén trực tiếp trên stream
+    private BkavResponse parseSoapResponse(InputStream soapBody, BkavCryptoContext cryptoContext) {
         try {
-            Pattern pattern = Pattern.compile("<ExecuteCommandResult>(.*?)</ExecuteCommandResult>", Pattern.DOTALL);
-            Matcher matcher = pattern.matcher(soapXml);
-
-            if (!matcher.find()) {
+            BkavResponse result = BkavEnvelopeReader.read(soapBody, cryptoContext, OBJECT_MAPPER, BkavResponse.class);
+            if (result == null) {
                 log.error("Cannot find ExecuteCommandResult in SOAP response");
                 return createErrorResponse(-1, "Invalid SOAP response");
             }
-
-            String resultText = unescapeXml(matcher.group(1)).trim();
-            log.debug("Extracted result: {}", resultText);
-
-            // Nếu không phải JSON → response đang bị encrypt
-            if (!resultText.startsWith("{") && !resultText.startsWith("[")) {
-                log.debug("Detected encrypted response from BKAV, decrypting...");
-                try {
-                    String decryptedJson = BkavCryptoUtil.decryptData(resultText, partnerToken);
-                    log.debug("Decrypted response: {}", decryptedJson);
-                    BkavResponse result = OBJECT_MAPPER.readValue(decryptedJson, BkavResponse.class);
-                    log.info("BKAV Response - Status: {}, isOk: {}, Message: {}",
-                            result.getStatus(), result.getIsOk(), result.getMessage());
-                    return result;
-                } catch (Exception decryptEx) {
-                    log.warn("Failed to decrypt response: {}", decryptEx.getMessage());
-                    return createErrorResponse(-1, resultText);
-                }
-            }
-
-            BkavResponse result = OBJECT_MAPPER.readValue(resultText, BkavResponse.class);
-            log.info("BKAV Response - Code: {}, Message: {}", result.getCode(), result.getMessage());
+            log.info("BKAV Response - Status: {}, isOk: {}, Message: {}",
+                    result.getStatus(), result.getIsOk(), result.getMessage());
             return result;
 
+        } catch (BkavEnvelopeException e) {
+            log.warn("Failed to decode response: {}", e.getMessage());
+            return createErrorResponse(-1, e.getResultPreview());
         } catch (Exception e) {
             log.error("Error parsing SOAP response", e);
             return createErrorResponse(-1, "Lỗi parse response: " + e.getMessage());
@@ -178,13 +215,4 @@ public class BkavSoapClient {
         response.setIsError(true);
         return response;
     }
-
-    private String unescapeXml(String text) {
-        if (text == null) return "";
-        return text.replace("&lt;", "<")
-                .replace("&gt;", ">")
-                .replace("&quot;", "\"")
-                .replace("&apos;", "'")
-                .replace("&amp;", "&");
-    }
-}
\ No newline at end of file
+}
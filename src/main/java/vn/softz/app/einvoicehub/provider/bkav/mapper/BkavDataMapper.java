@@ -7,9 +7,12 @@ import vn.softz.app.einvoicehub.provider.model.InvoiceData;
 import vn.softz.app.einvoicehub.provider.model.InvoiceDetailData;
 import vn.softz.app.einvoicehub.service.EinvoiceMappingService;
 import vn.softz.app.einvoicehub.service.EinvoiceMappingService.MappingType;
+import vn.softz.app.einvoicehub.service.mapping.CompiledMapping;
+import vn.softz.app.einvoicehub.service.mapping.MappingSnapshot;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+import java.math.BigDecimal;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
@@ -26,59 +29,47 @@ public class BkavDataMapper {
             .ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSXXX")
             .withZone(ZoneId.systemDefault());
 
-    private final EinvoiceMappingService mappingService;
-
-    private Integer mapToProviderInt(String lid, MappingType type, Integer internalId, Integer defaultValue) {
-        Integer originalValue = internalId;
-        if (internalId == null) {
-            internalId = defaultValue;
-        }
-
-        log.debug("[MAPPING] {} - Input: {} (original: {}), Default: {}",
-                type, internalId, originalValue, defaultValue);
+    private static final String PROVIDER_ID = "BKAV";
+    private static final CompiledMapping.TaxRate DEFAULT_TAX_RATE = new CompiledMapping.TaxRate(3, new BigDecimal("10"));
 
-        String mappedStr = mappingService.getProviderCode(
-                lid,
-                "BKAV",
-                type,
-                String.valueOf(internalId)
-        );
+    private final EinvoiceMappingService mappingService;
 
-        try {
-            Integer result = Integer.parseInt(mappedStr);
-            log.info("[MAPPING] {} - MAPPED: {} → {} (provider code)", type, internalId, result);
-            return result;
-        } catch (NumberFormatException e) {
-            log.warn("[MAPPING] {} - Parse failed for '{}', fallback to: {}", type, mappedStr, internalId);
-            return internalId;
+    private int mapToProviderInt(MappingSnapshot mappings, MappingType type, Integer internalId, int defaultValue) {
+        int hubId = internalId != null ? internalId : defaultValue;
+        int result = mappings.getProviderInt(type, hubId);
+        if (log.isDebugEnabled()) {
+            log.debug("[MAPPING] {} - MAPPED: {} (original: {}) → {} (provider code)", type, hubId, internalId, result);
         }
+        return result;
     }
 
-    private String[] mapTaxType(String lid, String taxTypeId) {
-        String defaultTaxTypeId = "3";
-        String defaultTaxRate = "10";
-
-        if (taxTypeId == null || taxTypeId.isEmpty()) {
-            log.debug("[TAX_MAPPING] taxTypeId is null, using default");
-            return new String[]{defaultTaxTypeId, defaultTaxRate};
+    private CompiledMapping.TaxRate mapTaxType(MappingSnapshot mappings, String taxTypeId) {
+        CompiledMapping.TaxRate taxRate = mappings.getTaxRate(taxTypeId);
+        if (taxRate == null) {
+            if (taxTypeId != null && !taxTypeId.isEmpty()) {
+                log.warn("[TAX_MAPPING] No valid mapping for '{}', using default", taxTypeId);
+            }
+            return DEFAULT_TAX_RATE;
         }
-
-        String mappedStr = mappingService.getProviderCode(lid, "BKAV", MappingType.TAX_TYPE, taxTypeId);
-
-        if (mappedStr == null || !mappedStr.contains(",")) {
-            log.warn("[TAX_MAPPING] Invalid mapping result: '{}', using default", mappedStr);
-            return new String[]{defaultTaxTypeId, defaultTaxRate};
+        if (log.isDebugEnabled()) {
+            log.debug("[TAX_MAPPING] {} → TaxTypeId={}, TaxRate={}", taxTypeId, taxRate.taxTypeId(), taxRate.rate());
         }
-
-        String[] parts = mappedStr.split(",");
-        log.info("[TAX_MAPPING] {} → TaxTypeId={}, TaxRate={}", taxTypeId, parts[0], parts[1]);
-        return parts;
+        return taxRate;
     }
 
     public BkavInvoice.RequestData toBkavRequestData(String lid, InvoiceData invoiceData) {
         if (invoiceData == null) {
             return null;
         }
+        // Mapping của cả hóa đơn lấy một lần, header và từng dòng chỉ tra map trong bộ nhớ
+        return toBkavRequestData(mappingService.getSnapshot(lid, PROVIDER_ID), invoiceData);
+    }
+
+    /**Dùng khi map nhiều hóa đơn cùng store: lấy snapshot một lần cho cả batch.*/
+    public BkavInvoice.RequestData toBkavRequestData(MappingSnapshot mappings, InvoiceData invoiceData) {
+        if (invoiceData == null) {
+            return null;
+        }
 
         Long partnerId = parsePartnerInvoiceId(invoiceData.getPartnerInvoiceId());
         if (partnerId == null || partnerId <= 0) {
@@ -91,17 +82,17 @@ public class BkavDataMapper {
         }
 
         return BkavInvoice.RequestData.builder()
-                .invoice(toBkavHeader(lid, invoiceData))
-                .listInvoiceDetailsWS(toBkavDetailList(lid, invoiceData.getDetails()))
+                .invoice(toBkavHeader(mappings, invoiceData))
+                .listInvoiceDetailsWS(toBkavDetailList(mappings, invoiceData.getDetails()))
                 .listInvoiceAttachFileWS(toBkavAttachmentList(invoiceData.getAttachments()))
                 .partnerInvoiceID(partnerId)
                 .partnerInvoiceStringID(partnerStringId)
                 .build();
     }
 
-    private BkavInvoice.Header toBkavHeader(String lid,InvoiceData data) {
+    private BkavInvoice.Header toBkavHeader(MappingSnapshot mappings, InvoiceData data) {
         return BkavInvoice.Header.builder()
-                .invoiceTypeID(mapToProviderInt(lid, MappingType.INVOICE_TYPE, data.getInvoiceTypeId(), 1))
+                .invoiceTypeID(mapToProviderInt(mappings, MappingType.INVOICE_TYPE, data.getInvoiceTypeId(), 1))
                 .invoiceDate(formatBkavDate(data.getInvoiceDate()))
                 .buyerName(data.getBuyerName() != null ? data.getBuyerName() :
                         (data.getBuyerUnitName() != null ? data.getBuyerUnitName() : ""))
@@ -109,7 +100,7 @@ public class BkavDataMapper {
                 .buyerUnitName(data.getBuyerUnitName() != null ? data.getBuyerUnitName() : "")
                 .buyerAddress(data.getBuyerAddress() != null ? data.getBuyerAddress() : "")
                 .buyerBankAccount(data.getBuyerBankAccount() != null ? data.getBuyerBankAccount() : "")
-                .payMethodID(mapToProviderInt(lid, MappingType.PAYMENT_METHOD, data.getPaymentMethodId(), 3))
+                .payMethodID(mapToProviderInt(mappings, MappingType.PAYMENT_METHOD, data.getPaymentMethodId(), 3))
                 .receiveTypeID(data.getReceiveTypeId() != null ? data.getReceiveTypeId() : 3)
                 .receiverEmail(data.getReceiverEmail() != null ? data.getReceiverEmail() : "")
                 .receiverMobile(data.getReceiverMobile() != null ? data.getReceiverMobile() : "")
@@ -126,26 +117,26 @@ public class BkavDataMapper {
                 .build();
     }
 
-    private List<BkavInvoice.Detail> toBkavDetailList(String lid, List<InvoiceDetailData> details) {
+    private List<BkavInvoice.Detail> toBkavDetailList(MappingSnapshot mappings, List<InvoiceDetailData> details) {
         if (details == null || details.isEmpty()) {
             return new ArrayList<>();
         }
         return details.stream()
-                .map(detail -> toBkavDetail(lid, detail))
+                .map(detail -> toBkavDetail(mappings, detail))
                 .collect(Collectors.toList());
     }
 
-    private BkavInvoice.Detail toBkavDetail(String lid,InvoiceDetailData detail) {
+    private BkavInvoice.Detail toBkavDetail(MappingSnapshot mappings, InvoiceDetailData detail) {
         log.debug("[BKAV_DETAIL] Item='{}', ItemTypeId={}",
                 detail.getItemName(), detail.getItemTypeId());
 
-        // Map tax type: input taxTypeId (String) → output [providerTaxTypeId, providerTaxRate]
-        String[] taxMapping = mapTaxType(lid, detail.getTaxRateId());
-        Integer providerTaxTypeId = Integer.parseInt(taxMapping[0]);
-        java.math.BigDecimal providerTaxRate = new java.math.BigDecimal(taxMapping[1]);
+        // Map tax type: input taxTypeId (String) → loại thuế + thuế suất provider đã tách sẵn
+        CompiledMapping.TaxRate taxMapping = mapTaxType(mappings, detail.getTaxRateId());
+        int providerTaxTypeId = taxMapping.taxTypeId();
+        java.math.BigDecimal providerTaxRate = taxMapping.rate();
 
         return BkavInvoice.Detail.builder()
-                .itemTypeID(mapToProviderInt(lid, MappingType.ITEM_TYPE, detail.getItemTypeId(), 0))
+                .itemTypeID(mapToProviderInt(mappings, MappingType.ITEM_TYPE, detail.getItemTypeId(), 0))
                 .itemCode(detail.getItemCode() != null ? detail.getItemCode() : "")
                 .itemName(detail.getItemName())
                 .unitName(detail.getUnitName())
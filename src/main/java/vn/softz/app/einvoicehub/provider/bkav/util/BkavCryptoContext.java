@@ -0,0 +1,74 @@
+package vn.softz.app.einvoicehub.provider.bkav.util;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Key/IV đã decode từ partnerToken (base64Key:base64IV) kèm pool Cipher tái sử dụng.
+ * Dùng pool thay cho ThreadLocal vì request chạy trên virtual thread (mỗi task một thread mới).
+ * Sau doFinal, Cipher tự reset về trạng thái init nên có thể trả lại pool dùng tiếp.
+ */
+public final class BkavCryptoContext {
+
+    static final String AES_ALGORITHM = "AES/CBC/PKCS5Padding";
+    private static final int MAX_POOLED_CIPHERS = 16;
+
+    private final SecretKeySpec secretKey;
+    private final IvParameterSpec ivSpec;
+    private final BlockingQueue<Cipher> encryptCiphers = new ArrayBlockingQueue<>(MAX_POOLED_CIPHERS);
+    private final BlockingQueue<Cipher> decryptCiphers = new ArrayBlockingQueue<>(MAX_POOLED_CIPHERS);
+
+    private BkavCryptoContext(byte[] key, byte[] iv) {
+        this.secretKey = new SecretKeySpec(key, "AES");
+        this.ivSpec = new IvParameterSpec(iv);
+    }
+
+    public static BkavCryptoContext fromPartnerToken(String partnerToken) {
+        String[] tokenParts = partnerToken.split(":");
+        if (tokenParts.length != 2) {
+            throw new IllegalArgumentException("Invalid partner token format. Expected: base64Key:base64IV");
+        }
+        return new BkavCryptoContext(
+                Base64.getDecoder().decode(tokenParts[0]),
+                Base64.getDecoder().decode(tokenParts[1]));
+    }
+
+    public byte[] encrypt(byte[] data) throws GeneralSecurityException {
+        Cipher cipher = acquire(Cipher.ENCRYPT_MODE);
+        byte[] result = cipher.doFinal(data);
+        release(cipher, Cipher.ENCRYPT_MODE);
+        return result;
+    }
+
+    public byte[] decrypt(byte[] data) throws GeneralSecurityException {
+        Cipher cipher = acquire(Cipher.DECRYPT_MODE);
+        byte[] result = cipher.doFinal(data);
+        release(cipher, Cipher.DECRYPT_MODE);
+        return result;
+    }
+
+    /**Lấy Cipher đã init theo mode; gọi release sau khi doFinal thành công.
+     * Cipher lỗi giữa chừng thì bỏ đi, không trả lại pool.*/
+    public Cipher acquire(int mode) throws GeneralSecurityException {
+        Cipher cipher = pool(mode).poll();
+        if (cipher != null) {
+            return cipher;
+        }
+        cipher = Cipher.getInstance(AES_ALGORITHM);
+        cipher.init(mode, secretKey, ivSpec);
+        return cipher;
+    }
+
+    public void release(Cipher cipher, int mode) {
+        pool(mode).offer(cipher);
+    }
+
+    private BlockingQueue<Cipher> pool(int mode) {
+        return mode == Cipher.ENCRYPT_MODE ? encryptCiphers : decryptCiphers;
+    }
+}
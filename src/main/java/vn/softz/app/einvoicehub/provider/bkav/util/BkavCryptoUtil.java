@@ -3,10 +3,13 @@ package vn.softz.app.einvoicehub.provider.bkav.util;
 import lombok.extern.slf4j.Slf4j;
 
 import javax.crypto.Cipher;
-import javax.crypto.spec.IvParameterSpec;
-import javax.crypto.spec.SecretKeySpec;
+import javax.crypto.CipherOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
 import java.nio.charset.StandardCharsets;
 import java.util.Base64;
 import java.util.zip.GZIPInputStream;
@@ -14,79 +17,74 @@ import java.util.zip.GZIPOutputStream;
 
 @Slf4j
 public class BkavCryptoUtil {
-    
-    private static final String AES_ALGORITHM = "AES/CBC/PKCS5Padding";
+
+    private static final int STREAM_BUFFER_SIZE = 8192;
 
     public static String encryptData(String data, String partnerToken) {
+        return encryptData(data, BkavCryptoContext.fromPartnerToken(partnerToken));
+    }
+
+    public static String decryptData(String encryptedData, String partnerToken) {
+        return decryptData(encryptedData, BkavCryptoContext.fromPartnerToken(partnerToken));
+    }
+
+    // Dùng context đã cache theo cửa hàng: không parse token / Cipher.getInstance mỗi lần gọi
+    public static String encryptData(String data, BkavCryptoContext context) {
         try {
             // Step 1: Compress data bằng GZip
             byte[] compressedData = compress(data);
-            
-            // Step 2: Parse partner token để lấy Key và IV
-            String[] tokenParts = partnerToken.split(":");
-            if (tokenParts.length != 2) {
-                throw new IllegalArgumentException("Invalid partner token format. Expected: base64Key:base64IV");
-            }
-            
-            byte[] key = Base64.getDecoder().decode(tokenParts[0]);
-            byte[] iv = Base64.getDecoder().decode(tokenParts[1]);
-                        
-            // Step 3: Encrypt bằng AES-256
-            SecretKeySpec secretKey = new SecretKeySpec(key, "AES");
-            IvParameterSpec ivSpec = new IvParameterSpec(iv);
-            
-            Cipher cipher = Cipher.getInstance(AES_ALGORITHM);
-            cipher.init(Cipher.ENCRYPT_MODE, secretKey, ivSpec);
-            
-            byte[] encryptedData = cipher.doFinal(compressedData);            
-            
-            // Step 4: Encode Base64
-            String result = Base64.getEncoder().encodeToString(encryptedData);
-            
-            return result;
-            
+
+            // Step 2: Encrypt bằng AES-256
+            byte[] encryptedData = context.encrypt(compressedData);
+
+            // Step 3: Encode Base64
+            return Base64.getEncoder().encodeToString(encryptedData);
+
         } catch (Exception e) {
             log.error("Error encrypting data", e);
             throw new RuntimeException("Encryption failed: " + e.getMessage(), e);
         }
     }
-    
-    public static String decryptData(String encryptedData, String partnerToken) {
-        try {            
+
+    public static String decryptData(String encryptedData, BkavCryptoContext context) {
+        try {
             // Step 1: Decode Base64
             byte[] decodedData = Base64.getDecoder().decode(encryptedData);
-            
-            // Step 2: Parse partner token
-            String[] tokenParts = partnerToken.split(":");
-            if (tokenParts.length != 2) {
-                throw new IllegalArgumentException("Invalid partner token format");
-            }
-            
-            byte[] key = Base64.getDecoder().decode(tokenParts[0]);
-            byte[] iv = Base64.getDecoder().decode(tokenParts[1]);
-            
-            // Step 3: Decrypt bằng AES-256
-            SecretKeySpec secretKey = new SecretKeySpec(key, "AES");
-            IvParameterSpec ivSpec = new IvParameterSpec(iv);
-            
-            Cipher cipher = Cipher.getInstance(AES_ALGORITHM);
-            cipher.init(Cipher.DECRYPT_MODE, secretKey, ivSpec);
-            
-            byte[] decryptedData = cipher.doFinal(decodedData);
+
+            // Step 2: Decrypt bằng AES-256
+            byte[] decryptedData = context.decrypt(decodedData);
             log.debug("Decrypted data size: {} bytes", decryptedData.length);
-            
-            // Step 4: Decompress GZip
+
+            // Step 3: Decompress GZip
             String result = decompress(decryptedData);
             log.debug("Decompressed data length: {}", result.length());
-            
+
             return result;
-            
+
         } catch (Exception e) {
             log.error("Error decrypting data", e);
             throw new RuntimeException("Decryption failed: " + e.getMessage(), e);
         }
     }
     
+    /**
+     * Pipeline streaming GZip → AES → Base64 ghi thẳng vào out (thường là body HTTP).
+     * Close stream trả về để ghi nốt block cuối và padding Base64; out không bị close.
+     */
+    public static OutputStream encryptingStream(OutputStream out, BkavCryptoContext context)
+            throws IOException, GeneralSecurityException {
+        OutputStream base64 = Base64.getEncoder().wrap(new NonClosingOutputStream(out));
+        Cipher cipher = context.acquire(Cipher.ENCRYPT_MODE);
+        OutputStream encrypted = new CipherOutputStream(base64, cipher) {
+            @Override
+            public void close() throws IOException {
+                super.close();
+                context.release(cipher, Cipher.ENCRYPT_MODE);
+            }
+        };
+        return new GZIPOutputStream(encrypted, STREAM_BUFFER_SIZE);
+    }
+
     // Compress data bằng GZip
     private static byte[] compress(String data) throws Exception {
         ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
@@ -108,4 +106,22 @@ public class BkavCryptoUtil {
         }
         return byteStream.toString(StandardCharsets.UTF_8.name());
     }
+
+    // Chặn close() lan xuống stream gốc, chỉ flush
+    private static class NonClosingOutputStream extends FilterOutputStream {
+
+        NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
 }
@@ -0,0 +1,15 @@
+package vn.softz.app.einvoicehub.provider.bkav.util;
+
+import lombok.Getter;
+
+// Lỗi giải mã / parse ExecuteCommandResult, kèm phần đầu text gốc BKAV trả về
+@Getter
+public class BkavEnvelopeException extends RuntimeException {
+
+    private final String resultPreview;
+
+    public BkavEnvelopeException(String message, String resultPreview, Throwable cause) {
+        super(message, cause);
+        this.resultPreview = resultPreview;
+    }
+}
@@ -0,0 +1,228 @@
+package vn.softz.app.einvoicehub.provider.bkav.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import javax.crypto.Cipher;
+import javax.crypto.CipherInputStream;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Đọc SOAP response ExecuteCommand bằng StAX, không giữ toàn bộ body trong bộ nhớ.
+ * Text của ExecuteCommandResult (đã được StAX unescape) được đẩy từng đoạn vào
+ * Base64 → AES → GZip → Jackson; response không mã hóa (JSON thuần) thì Jackson đọc thẳng.
+ */
+public final class BkavEnvelopeReader {
+
+    private static final String RESULT_ELEMENT = "ExecuteCommandResult";
+    private static final int STREAM_BUFFER_SIZE = 8192;
+    // Giữ lại phần đầu text để báo lỗi khi BKAV trả thông báo thuần (không mã hóa, không phải JSON)
+    private static final int PREVIEW_LENGTH = 512;
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = createInputFactory();
+
+    private BkavEnvelopeReader() {}
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        return factory;
+    }
+
+    /**
+     * @return kết quả đã parse, hoặc null nếu body không có ExecuteCommandResult
+     * @throws BkavEnvelopeException khi không giải mã / parse được, kèm phần đầu text gốc
+     */
+    public static <T> T read(InputStream soapBody, BkavCryptoContext cryptoContext,
+                             ObjectMapper objectMapper, Class<T> resultType) throws XMLStreamException {
+        XMLStreamReader xml = XML_INPUT_FACTORY.createXMLStreamReader(soapBody);
+        try {
+            if (!moveToElement(xml, RESULT_ELEMENT)) {
+                return null;
+            }
+            ElementTextReader text = new ElementTextReader(xml);
+            try {
+                return readResult(text, cryptoContext, objectMapper, resultType);
+            } catch (IOException | GeneralSecurityException e) {
+                throw new BkavEnvelopeException(e.getMessage(), text.preview(), e);
+            }
+        } finally {
+            xml.close();
+        }
+    }
+
+    private static <T> T readResult(ElementTextReader text, BkavCryptoContext cryptoContext,
+                                    ObjectMapper objectMapper, Class<T> resultType)
+            throws IOException, GeneralSecurityException {
+        PushbackReader reader = new PushbackReader(text, 1);
+        int first = skipWhitespace(reader);
+        if (first == -1) {
+            throw new IOException("Empty " + RESULT_ELEMENT);
+        }
+        reader.unread(first);
+
+        // JSON thuần → không mã hóa
+        if (first == '{' || first == '[') {
+            return objectMapper.readValue(reader, resultType);
+        }
+
+        Cipher cipher = cryptoContext.acquire(Cipher.DECRYPT_MODE);
+        InputStream decoded = Base64.getDecoder().wrap(new Base64CharStream(reader));
+        InputStream json = new GZIPInputStream(new CipherInputStream(decoded, cipher), STREAM_BUFFER_SIZE);
+        T result = objectMapper.readValue(json, resultType);
+        // Chỉ trả Cipher về pool khi giải mã thành công
+        cryptoContext.release(cipher, Cipher.DECRYPT_MODE);
+        return result;
+    }
+
+    private static boolean moveToElement(XMLStreamReader xml, String localName) throws XMLStreamException {
+        while (xml.hasNext()) {
+            if (xml.next() == XMLStreamConstants.START_ELEMENT && localName.equals(xml.getLocalName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int skipWhitespace(Reader reader) throws IOException {
+        int c;
+        do {
+            c = reader.read();
+        } while (c != -1 && Character.isWhitespace(c));
+        return c;
+    }
+
+    /**Reader trên text của element hiện tại, copy từng đoạn từ StAX cho đến END_ELEMENT.*/
+    private static final class ElementTextReader extends Reader {
+
+        private final XMLStreamReader xml;
+        private final StringBuilder preview = new StringBuilder();
+        private int textOffset;
+        private int textLength;
+        private boolean finished;
+
+        ElementTextReader(XMLStreamReader xml) {
+            this.xml = xml;
+        }
+
+        @Override
+        public int read(char[] buffer, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            try {
+                while (!finished && textOffset >= textLength) {
+                    nextTextEvent();
+                }
+                if (finished) {
+                    return -1;
+                }
+                int copied = xml.getTextCharacters(textOffset, buffer, off, Math.min(len, textLength - textOffset));
+                textOffset += copied;
+                if (preview.length() < PREVIEW_LENGTH) {
+                    preview.append(buffer, off, Math.min(copied, PREVIEW_LENGTH - preview.length()));
+                }
+                return copied;
+            } catch (XMLStreamException e) {
+                throw new IOException("Invalid SOAP response: " + e.getMessage(), e);
+            }
+        }
+
+        private void nextTextEvent() throws XMLStreamException, IOException {
+            int event = xml.next();
+            switch (event) {
+                case XMLStreamConstants.CHARACTERS, XMLStreamConstants.CDATA, XMLStreamConstants.SPACE -> {
+                    textOffset = 0;
+                    textLength = xml.getTextLength();
+                }
+                case XMLStreamConstants.END_ELEMENT, XMLStreamConstants.END_DOCUMENT -> finished = true;
+                case XMLStreamConstants.START_ELEMENT ->
+                        throw new IOException("Unexpected element <" + xml.getLocalName() + "> in " + RESULT_ELEMENT);
+                default -> {
+                    // COMMENT, PROCESSING_INSTRUCTION... bỏ qua
+                }
+            }
+        }
+
+        String preview() {
+            return preview.toString().trim();
+        }
+
+        @Override
+        public void close() {
+            finished = true;
+        }
+    }
+
+    /**Chuyển ký tự Base64 sang byte ASCII cho Base64 decoder, bỏ qua khoảng trắng/xuống dòng.*/
+    private static final class Base64CharStream extends InputStream {
+
+        private final Reader reader;
+        private final char[] buffer = new char[STREAM_BUFFER_SIZE];
+        private int position;
+        private int limit;
+
+        Base64CharStream(Reader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public int read() throws IOException {
+            while (true) {
+                if (position >= limit && !fill()) {
+                    return -1;
+                }
+                char c = buffer[position++];
+                if (!Character.isWhitespace(c)) {
+                    return c;
+                }
+            }
+        }
+
+        @Override
+        public int read(byte[] target, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            int count = 0;
+            while (count < len) {
+                if (position >= limit) {
+                    // Trả phần đã đọc được, tránh block chờ thêm dữ liệu
+                    if (count > 0) {
+                        break;
+                    }
+                    if (!fill()) {
+                        return -1;
+                    }
+                }
+                char c = buffer[position++];
+                if (!Character.isWhitespace(c)) {
+                    target[off + count++] = (byte) c;
+                }
+            }
+            return count;
+        }
+
+        private boolean fill() throws IOException {
+            limit = reader.read(buffer, 0, buffer.length);
+            position = 0;
+            return limit > 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package vn.softz.app.einvoicehub.provider.bkav.util;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+
+/**
+ * Ghi SOAP envelope ExecuteCommand trực tiếp vào body HTTP.
+ * Command JSON được Jackson ghi thẳng vào pipeline GZip → AES → Base64 (BkavCryptoUtil.encryptingStream),
+ * không dựng String trung gian cho payload nên bộ nhớ mỗi request gần như không đổi theo kích thước hóa đơn.
+ */
+public final class BkavEnvelopeWriter {
+
+    public static final String SOAP_ACTION = "http://tempuri.org/ExecuteCommand";
+
+    private static final byte[] ENVELOPE_START = (
+            "<?xml version=\"1.0\" encoding=\"utf-8\"?>" +
+            "<soap:Envelope xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" " +
+            "xmlns:xsd=\"http://www.w3.org/2001/XMLSchema\" " +
+            "xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\">" +
+            "<soap:Body>" +
+            "<ExecuteCommand xmlns=\"http://tempuri.org/\">" +
+            "<PartnerGUID>").getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] PARTNER_GUID_END =
+            "</PartnerGUID><EncryptedCommandData>".getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] ENVELOPE_END = (
+            "</EncryptedCommandData>" +
+            "</ExecuteCommand>" +
+            "</soap:Body>" +
+            "</soap:Envelope>").getBytes(StandardCharsets.UTF_8);
+
+    private BkavEnvelopeWriter() {}
+
+    public static void write(OutputStream body, String partnerGuid, int commandType, Object commandObject,
+                             BkavCryptoContext cryptoContext, ObjectMapper objectMapper)
+            throws IOException, GeneralSecurityException {
+        body.write(ENVELOPE_START);
+        body.write(partnerGuid.getBytes(StandardCharsets.UTF_8));
+        body.write(PARTNER_GUID_END);
+
+        // Base64 chỉ gồm ký tự an toàn trong XML nên ghi thẳng, không cần escape
+        try (OutputStream encrypted = BkavCryptoUtil.encryptingStream(body, cryptoContext);
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(encrypted, JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            generator.writeNumberField("CmdType", commandType);
+            generator.writeFieldName("CommandObject");
+            writeCommandObject(generator, commandObject, objectMapper);
+            generator.writeEndObject();
+        }
+
+        body.write(ENVELOPE_END);
+        body.flush();
+    }
+
+    // commandObject có thể là String (guid, taxCode... hoặc JSON đã serialize sẵn) hoặc Object
+    private static void writeCommandObject(JsonGenerator generator, Object commandObject,
+                                           ObjectMapper objectMapper) throws IOException {
+        if (commandObject instanceof String value) {
+            if (value.startsWith("{") || value.startsWith("[")) {
+                generator.writeRawValue(value);
+            } else {
+                generator.writeString(value);
+            }
+            return;
+        }
+        objectMapper.writeValue(generator, commandObject);
+    }
+}
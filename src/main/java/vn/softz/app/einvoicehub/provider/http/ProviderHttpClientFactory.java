@@ -0,0 +1,153 @@
+package vn.softz.app.einvoicehub.provider.http;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.netty.channel.ChannelOption;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.DefaultConnectionKeepAliveStrategy;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Transport HTTP dùng chung cho các provider HĐĐT.
+ * Mỗi provider có một connection pool riêng (keep-alive, tái sử dụng TLS session),
+ * timeout connect / read / chờ pool cấu hình qua app.provider.http, và gauge Micrometer cho pool.
+ * WebClient (reactor-netty) cho các lời gọi async dùng cùng cấu hình pool.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ProviderHttpClientFactory {
+
+    private static final String METRIC_PREFIX = "einvoice.provider.http.pool.";
+
+    private final ProviderHttpProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final WebClient.Builder webClientBuilder;
+
+    private final Map<String, PooledClient> clients = new ConcurrentHashMap<>();
+    private final Map<String, ReactiveClient> reactiveClients = new ConcurrentHashMap<>();
+
+    public RestTemplate getRestTemplate(String providerCode) {
+        return clients.computeIfAbsent(providerCode, this::createClient).restTemplate();
+    }
+
+    public WebClient getWebClient(String providerCode) {
+        return reactiveClients.computeIfAbsent(providerCode, this::createReactiveClient).webClient();
+    }
+
+    private PooledClient createClient(String providerCode) {
+        ProviderHttpProperties.Pool pool = properties.forProvider(providerCode);
+
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(pool.getMaxTotal())
+                .setMaxConnPerRoute(pool.getMaxPerRoute())
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(pool.getConnectTimeoutMs()))
+                        .setSocketTimeout(Timeout.ofMilliseconds(pool.getReadTimeoutMs()))
+                        .setTimeToLive(TimeValue.ofMilliseconds(pool.getConnectionTtlMs()))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(10))
+                        .build())
+                .build();
+
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(pool.getPoolAcquireTimeoutMs()))
+                        .setResponseTimeout(Timeout.ofMilliseconds(pool.getReadTimeoutMs()))
+                        .build())
+                .setKeepAliveStrategy(DefaultConnectionKeepAliveStrategy.INSTANCE)
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofMilliseconds(pool.getIdleEvictMs()))
+                .build();
+
+        registerGauges(providerCode, connectionManager);
+        log.info("[ProviderHttp] {} pool created: maxTotal={}, maxPerRoute={}, connect={}ms, read={}ms, acquire={}ms",
+                providerCode, pool.getMaxTotal(), pool.getMaxPerRoute(), pool.getConnectTimeoutMs(),
+                pool.getReadTimeoutMs(), pool.getPoolAcquireTimeoutMs());
+
+        RestTemplate restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+        return new PooledClient(httpClient, restTemplate);
+    }
+
+    private ReactiveClient createReactiveClient(String providerCode) {
+        ProviderHttpProperties.Pool pool = properties.forProvider(providerCode);
+
+        // metrics(true): reactor-netty tự đăng ký gauge pool (reactor.netty.connection.provider.*) vào Micrometer
+        ConnectionProvider connectionProvider = ConnectionProvider.builder("einvoice-" + providerCode.toLowerCase())
+                .maxConnections(pool.getMaxTotal())
+                .pendingAcquireTimeout(Duration.ofMillis(pool.getPoolAcquireTimeoutMs()))
+                .maxLifeTime(Duration.ofMillis(pool.getConnectionTtlMs()))
+                .maxIdleTime(Duration.ofMillis(pool.getIdleEvictMs()))
+                .evictInBackground(Duration.ofMillis(pool.getIdleEvictMs()))
+                .metrics(true)
+                .build();
+
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, pool.getConnectTimeoutMs())
+                .responseTimeout(Duration.ofMillis(pool.getReadTimeoutMs()))
+                .keepAlive(true);
+
+        WebClient webClient = webClientBuilder.clone()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+        log.info("[ProviderHttp] {} reactive pool created: maxConnections={}", providerCode, pool.getMaxTotal());
+        return new ReactiveClient(connectionProvider, webClient);
+    }
+
+    private void registerGauges(String providerCode, PoolingHttpClientConnectionManager cm) {
+        Tags tags = Tags.of("provider", providerCode);
+        gauge("leased", tags, cm, PoolStats::getLeased);
+        gauge("available", tags, cm, PoolStats::getAvailable);
+        gauge("pending", tags, cm, PoolStats::getPending);
+        gauge("max", tags, cm, PoolStats::getMax);
+    }
+
+    private void gauge(String name, Tags tags, PoolingHttpClientConnectionManager cm,
+                       ToDoubleFunction<PoolStats> stat) {
+        Gauge.builder(METRIC_PREFIX + name, cm, m -> stat.applyAsDouble(m.getTotalStats()))
+                .tags(tags)
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void close() {
+        clients.forEach((providerCode, client) -> {
+            try {
+                client.httpClient().close();
+            } catch (IOException e) {
+                log.warn("[ProviderHttp] close {} failed: {}", providerCode, e.getMessage());
+            }
+        });
+        reactiveClients.values().forEach(client -> client.connectionProvider().dispose());
+    }
+
+    private record PooledClient(CloseableHttpClient httpClient, RestTemplate restTemplate) {
+    }
+
+    private record ReactiveClient(ConnectionProvider connectionProvider, WebClient webClient) {
+    }
+}
@@ -0,0 +1,62 @@
+package vn.softz.app.einvoicehub.provider.http;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.provider.http")
+public class ProviderHttpProperties {
+
+    // Cấu hình mặc định cho mọi provider
+    private Pool defaults = Pool.standard();
+
+    // Ghi đè theo mã provider (BKAV, MISA...), chỉ cần khai báo các giá trị khác mặc định
+    private Map<String, Pool> providers = new HashMap<>();
+
+    public Pool forProvider(String providerCode) {
+        Pool override = providers.get(providerCode);
+        return override != null ? override.withDefaults(defaults) : defaults;
+    }
+
+    @Data
+    public static class Pool {
+        private Integer maxTotal;
+        private Integer maxPerRoute;
+        private Integer connectTimeoutMs;
+        private Integer readTimeoutMs;
+        // Thời gian chờ lấy connection từ pool
+        private Integer poolAcquireTimeoutMs;
+        // TTL tối đa của connection keep-alive
+        private Integer connectionTtlMs;
+        private Integer idleEvictMs;
+
+        static Pool standard() {
+            Pool p = new Pool();
+            p.maxTotal = 200;
+            p.maxPerRoute = 50;
+            p.connectTimeoutMs = 5000;
+            p.readTimeoutMs = 30000;
+            p.poolAcquireTimeoutMs = 3000;
+            p.connectionTtlMs = 300000;
+            p.idleEvictMs = 60000;
+            return p;
+        }
+
+        private Pool withDefaults(Pool d) {
+            Pool p = new Pool();
+            p.maxTotal = maxTotal != null ? maxTotal : d.maxTotal;
+            p.maxPerRoute = maxPerRoute != null ? maxPerRoute : d.maxPerRoute;
+            p.connectTimeoutMs = connectTimeoutMs != null ? connectTimeoutMs : d.connectTimeoutMs;
+            p.readTimeoutMs = readTimeoutMs != null ? readTimeoutMs : d.readTimeoutMs;
+            p.poolAcquireTimeoutMs = poolAcquireTimeoutMs != null ? poolAcquireTimeoutMs : d.poolAcquireTimeoutMs;
+            p.connectionTtlMs = connectionTtlMs != null ? connectionTtlMs : d.connectionTtlMs;
+            p.idleEvictMs = idleEvictMs != null ? idleEvictMs : d.idleEvictMs;
+            return p;
+        }
+    }
+}
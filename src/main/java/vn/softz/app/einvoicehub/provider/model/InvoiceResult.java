@@ -5,6 +5,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
 import java.util.UUID;
 import java.time.Instant;
 
@@ -48,6 +49,9 @@ public class InvoiceResult {
     private Instant signedDate;     // Ngày ký
     private String providerInvoiceId;         // ID hóa đơn từ provider (GUID string)
 
+    // Kết quả từng hóa đơn khi gọi theo lô (ký lô...), khớp theo invoiceGuid
+    private List<InvoiceResult> itemResults;
+
     public static InvoiceResult success(UUID invoiceGuid, String message) {
         return InvoiceResult.builder()
                 .success(true)
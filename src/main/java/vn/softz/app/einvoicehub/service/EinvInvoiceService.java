@@ -5,16 +5,34 @@ import vn.softz.app.einvoicehub.dto.request.GetInvoicesRequest;
 import vn.softz.app.einvoicehub.dto.request.SignInvoicesRequest;
 import vn.softz.app.einvoicehub.dto.request.SubmitInvoiceRequest;
 import vn.softz.app.einvoicehub.dto.response.GetInvoicesResponse;
+import vn.softz.app.einvoicehub.dto.response.IngestInvoicesResponse;
 import vn.softz.app.einvoicehub.dto.response.ListInvoicesResponse;
 import vn.softz.app.einvoicehub.dto.response.SignInvoiceResponse;
 import vn.softz.app.einvoicehub.dto.response.SubmitInvoiceResponse;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
 import java.util.Optional;
 
 public interface EinvInvoiceService {
 
     SubmitInvoiceResponse submitInvoice(SubmitInvoiceRequest request);
 
+    /**
+     * Nhận cả lô hóa đơn (vd. chốt ca POS). Kết quả theo đúng thứ tự request:
+     * hóa đơn lỗi có errorCode / message, không làm hỏng các hóa đơn khác trong lô.
+     */
+    List<SubmitInvoiceResponse> submitInvoices(List<SubmitInvoiceRequest> requests);
+
+    /**
+     * Ingest file NDJSON rất lớn (mỗi dòng một SubmitInvoiceRequest) theo kiểu streaming:
+     * commit từng chunk, ghi kết quả từng dòng ra output ngay sau khi chunk commit.
+     * Các dòng <= resumeAfterLine bị bỏ qua để client chạy tiếp từ dòng đã commit cuối cùng.
+     */
+    IngestInvoicesResponse ingestInvoices(InputStream input, OutputStream output, long resumeAfterLine) throws IOException;
+
     SignInvoiceResponse signInvoice(SignInvoicesRequest request);
 
     void handleCallback(String invoiceId, String callbackPayload, String providerId);
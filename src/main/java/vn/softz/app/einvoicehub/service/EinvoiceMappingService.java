@@ -4,6 +4,11 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import vn.softz.app.einvoicehub.cache.EinvoiceMappingCache;
+import vn.softz.app.einvoicehub.cache.EinvoiceMappingCacheData;
+import vn.softz.app.einvoicehub.service.mapping.MappingSnapshot;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
@@ -65,26 +70,59 @@ public class EinvoiceMappingService {
                         return providerCode;
                     }
 
-                    Map<String, String> mapping = optionalData.get().getMapping();
+                    Map<String, String> reverseMapping = optionalData.get().getReverseMapping();
+                    if (reverseMapping == null) {
+                        // Dữ liệu cache cũ (trước khi có map ngược), tự hết hạn theo TTL
+                        return findInternalCode(optionalData.get().getMapping(), providerCode);
+                    }
 
-                    Optional<String> internalCode = mapping.entrySet().stream()
-                            .filter(entry -> entry.getValue().equals(providerCode))
-                            .map(Map.Entry::getKey)
-                            .findFirst();
+                    String internalCode = reverseMapping.get(providerCode);
 
-                    if (internalCode.isEmpty()) {
+                    if (internalCode == null) {
                         return providerCode;
                     }
 
-                    return internalCode.get();
+                    return internalCode;
                 })
                 .exceptionally(ex -> providerCode );
     }
 
+    private String findInternalCode(Map<String, String> mapping, String providerCode) {
+        return mapping.entrySet().stream()
+                .filter(entry -> providerCode.equals(entry.getValue()))
+                .map(Map.Entry::getKey)
+                .findFirst()
+                .orElse(providerCode);
+    }
+
     public String getInternalCode(String lid, String providerId, MappingType type, String providerCode) {
         return getInternalCodeAsync(lid, providerId, type, providerCode).join();
     }
 
+    /**Lấy mapping của cả 6 MappingType cho (lid, provider) trong một lượt, dùng cho cả hóa đơn.*/
+    public CompletableFuture<MappingSnapshot> getSnapshotAsync(String lid, String providerId) {
+        Map<String, MappingType> keys = new LinkedHashMap<>();
+        for (MappingType type : MappingType.values()) {
+            keys.put(providerId + ":" + type.name(), type);
+        }
+
+        // Cả 6 key đọc bằng một lượt MGET, key miss nạp chung một lần
+        return mappingCache.getManyAsync(lid, keys.keySet())
+                .thenApply(values -> {
+                    Map<MappingType, EinvoiceMappingCacheData> data = new EnumMap<>(MappingType.class);
+                    values.forEach((cacheKey, value) -> data.put(keys.get(cacheKey), value));
+                    return new MappingSnapshot(data);
+                })
+                .exceptionally(ex -> {
+                    log.warn("Load mappings for provider {} failed: {}", providerId, ex.getMessage());
+                    return new MappingSnapshot(Map.of());
+                });
+    }
+
+    public MappingSnapshot getSnapshot(String lid, String providerId) {
+        return getSnapshotAsync(lid, providerId).join();
+    }
+
     public CompletableFuture<Boolean> evictAsync(String lid, String providerId, MappingType type) {
         String cacheKey = providerId + ":" + type.name();
         log.info("Evicting cache for: {}", cacheKey);
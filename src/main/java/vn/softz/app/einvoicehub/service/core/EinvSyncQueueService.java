@@ -4,6 +4,8 @@ import vn.softz.app.einvoicehub.domain.entity.EinvSyncQueueEntity;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
+import java.time.Duration;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,9 +16,22 @@ public interface EinvSyncQueueService {
 
     void markAsProcessing(String queueId);
 
-    void markAsSuccess(String queueId, String cqtMessageId);
-    
-    void markAsFailed(String queueId, String errorMessage, String errorCode);
+    /**Claim nguyên tử tối đa batchSize entry cho node owner (SELECT ... FOR UPDATE SKIP LOCKED).
+     * Entry được chuyển sang PROCESSING kèm lease; hết lease mà chưa hoàn tất thì node khác claim lại.
+     * @param syncTypes chỉ claim các loại sync mà node có handler*/
+    List<EinvSyncQueueEntity> claimBatch(Collection<String> syncTypes, String owner, int batchSize, Duration lease);
+
+    /**Gia hạn lease cho các entry node owner đang xử lý.
+     * @return số entry còn thuộc về owner*/
+    int renewLeases(Collection<String> queueIds, String owner, Duration lease);
+
+    /**Ghi kết quả thành công nếu owner còn giữ lease.
+     * @return false nếu entry đã bị node khác claim lại (kết quả bị bỏ)*/
+    boolean markAsSuccess(String queueId, String owner, String cqtMessageId);
+
+    /**Ghi lỗi + lịch retry nếu owner còn giữ lease.
+     * @return false nếu entry đã bị node khác claim lại (kết quả bị bỏ)*/
+    boolean markAsFailed(String queueId, String owner, String errorMessage, String errorCode);
 
     List<EinvSyncQueueEntity> findByInvoiceId(String invoiceId);
 
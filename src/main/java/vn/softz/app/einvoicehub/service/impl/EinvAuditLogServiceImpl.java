@@ -5,8 +5,8 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import vn.softz.app.einvoicehub.audit.AuditLogSink;
 import vn.softz.app.einvoicehub.domain.entity.EinvAuditLogEntity;
 import vn.softz.app.einvoicehub.domain.repository.EinvAuditLogRepository;
 import vn.softz.app.einvoicehub.service.catalog.EinvAuditLogService;
@@ -20,32 +20,19 @@ import java.util.List;
 public class EinvAuditLogServiceImpl implements EinvAuditLogService {
 
     private final EinvAuditLogRepository repository;
+    private final AuditLogSink           auditLogSink;
 
+    // Độc lập với transaction của caller (trước đây REQUIRES_NEW): publish ngay, ghi nền theo batch
     @Override
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
     public void log(String action,
                     String entityName,
                     String entityId,
                     String payload,
                     String result,
                     String errorMsg) {
-        try {
-            EinvAuditLogEntity entry = new EinvAuditLogEntity();
-            entry.setAction(action);
-            entry.setEntityName(entityName);
-            entry.setEntityId(entityId);
-            entry.setPayload(payload);
-            entry.setResult(result);
-            entry.setErrorMsg(errorMsg);
-            repository.save(entry);
-
-            log.debug("[AuditLog] action={} entity={}/{} result={}",
-                      action, entityName, entityId, result);
-        } catch (Exception ex) {
-            // KHÔNG propagate – audit failure không được crash luồng nghiệp vụ
-            log.warn("[AuditLog] WRITE FAILED action={} entity={}/{} cause={}",
-                     action, entityName, entityId, ex.getMessage());
-        }
+        auditLogSink.publish(action, entityName, entityId, payload, result, errorMsg);
+        log.debug("[AuditLog] queued action={} entity={}/{} result={}",
+                  action, entityName, entityId, result);
     }
 
     @Override
@@ -1,36 +1,72 @@
 package vn.softz.app.einvoicehub.service.impl;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import vn.softz.app.einvoicehub.audit.AuditLogSink;
+import vn.softz.app.einvoicehub.cache.RecentSubmissionCache;
+import vn.softz.app.einvoicehub.cache.StoreReadiness;
+import vn.softz.app.einvoicehub.cache.StoreReadiness.ActiveSerial;
+import vn.softz.app.einvoicehub.cache.StoreReadinessCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.AuditorAware;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import vn.softz.app.einvoicehub.domain.entity.EinvAuditLogEntity;
+import org.springframework.transaction.support.TransactionTemplate;
+import vn.softz.app.einvoicehub.domain.entity.EinvInvoiceDetailEntity;
 import vn.softz.app.einvoicehub.domain.entity.EinvInvoiceEntity;
 import vn.softz.app.einvoicehub.domain.entity.EinvInvoicePayloadEntity;
 import vn.softz.app.einvoicehub.domain.entity.EinvSyncQueueEntity;
-import vn.softz.app.einvoicehub.domain.repository.EinvAuditLogRepository;
+import vn.softz.app.einvoicehub.domain.repository.EinvAuditLogJdbcRepository.AuditLogRow;
 import vn.softz.app.einvoicehub.domain.repository.EinvInvoicePayloadRepository;
 import vn.softz.app.einvoicehub.domain.repository.EinvInvoiceRepository;
+import vn.softz.app.einvoicehub.domain.repository.EinvInvoiceRepository.SubmittedInvoiceRow;
 import vn.softz.app.einvoicehub.domain.repository.EinvStoreProviderRepository;
-import vn.softz.app.einvoicehub.domain.repository.EinvStoreSerialRepository;
 import vn.softz.app.einvoicehub.domain.repository.EinvSyncQueueRepository;
 import vn.softz.app.einvoicehub.dto.EinvInvoiceDto;
 import vn.softz.app.einvoicehub.dto.request.GetInvoicesRequest;
 import vn.softz.app.einvoicehub.dto.request.SignInvoicesRequest;
 import vn.softz.app.einvoicehub.dto.request.SubmitInvoiceRequest;
 import vn.softz.app.einvoicehub.dto.response.GetInvoicesResponse;
+import vn.softz.app.einvoicehub.dto.response.IngestInvoiceLineResult;
+import vn.softz.app.einvoicehub.dto.response.IngestInvoicesResponse;
 import vn.softz.app.einvoicehub.dto.response.ListInvoicesResponse;
 import vn.softz.app.einvoicehub.dto.response.SignInvoiceResponse;
 import vn.softz.app.einvoicehub.dto.response.SubmitInvoiceResponse;
+import vn.softz.app.einvoicehub.mapper.EinvInvoiceDetailMapper;
 import vn.softz.app.einvoicehub.mapper.EinvInvoiceMapper;
 import vn.softz.app.einvoicehub.service.EinvInvoiceService;
 import vn.softz.app.einvoicehub.service.EinvMappingInvoiceStatusService;
 import vn.softz.app.einvoicehub.exception.BusinessException;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 
 @Slf4j
 @Service
@@ -40,14 +76,21 @@ public class EinvInvoiceServiceImpl implements EinvInvoiceService {
     private final EinvInvoiceRepository           invoiceRepository;
     private final EinvInvoicePayloadRepository    payloadRepository;
     private final EinvSyncQueueRepository         syncQueueRepository;
-    private final EinvAuditLogRepository          auditLogRepository;
-    private final EinvStoreSerialRepository       serialRepository;
+    private final AuditLogSink                    auditLogSink;
     private final EinvStoreProviderRepository     storeProviderRepository;
+    private final StoreReadinessCache             storeReadinessCache;
+    private final RecentSubmissionCache           recentSubmissionCache;
 
     private final EinvMappingInvoiceStatusService mappingStatusService;
 
     private final EinvInvoiceMapper               invoiceMapper;
+    private final EinvInvoiceDetailMapper         invoiceDetailMapper;
     private final ObjectMapper                    objectMapper;
+    private final TransactionTemplate             transactionTemplate;
+    private final AuditorAware<String>            auditorProvider;
+
+    @PersistenceContext
+    private EntityManager entityManager;
 
     private static final byte INV_STATUS_NEW        = 1;  // Mới tạo
     private static final byte INV_STATUS_PUBLISHED  = 2;  // Đã phát hành
@@ -65,26 +108,56 @@ public class EinvInvoiceServiceImpl implements EinvInvoiceService {
     private static final String AUDIT_SUCCESS = "SUCCESS";
     private static final String AUDIT_FAILURE = "FAILURE";
 
+    // Mỗi chunk một transaction: flush theo JDBC batch (hibernate.jdbc.batch_size = 50) rồi clear context
+    private static final int    BULK_CHUNK_SIZE   = 500;
+    // Giới hạn số phần tử IN (...) khi kiểm tra trùng partnerInvoiceId
+    private static final int    BULK_LOOKUP_CHUNK = 1000;
+    private static final String KEY_SEPARATOR     = "|";
+    private static final String UQ_TENANT_PARTNER = "uq_inv_tenant_partner";
+    // Lỗi lưu tạm thời (DB, lock...): gửi lại dòng đó có thể thành công
+    private static final String ERR_SUBMIT_FAILED = "einv.error.submit_failed";
+
     // 1. submitInvoice – Nhận yêu cầu từ POS, lưu vào Hub + SyncQueue
     @Override
-    @Transactional
     public SubmitInvoiceResponse submitInvoice(SubmitInvoiceRequest request) {
         log.info("[submitInvoice] START tenantId={}, storeId={}, partnerInvoiceId={}",
                  request.getTenantId(), request.getStoreId(), request.getPartnerInvoiceId());
 
+        // ── B0: POS gửi lại hóa đơn vừa nhận → trả invoiceId gốc, không chạm DB ──
+        String recentInvoiceId = recentSubmissionCache.getInvoiceId(
+                request.getTenantId(), request.getPartnerInvoiceId());
+        if (recentInvoiceId != null) {
+            log.info("[submitInvoice] Already submitted partnerInvoiceId={} → invoiceId={}",
+                     request.getPartnerInvoiceId(), recentInvoiceId);
+            return alreadySubmitted(recentInvoiceId, request.getPartnerInvoiceId(), null);
+        }
+
         // ── B1: Validate đầu vào ─────────────────────────────────────────────
-        validateSubmitRequest(request);
+        StoreReadiness readiness = storeReadinessCache.resolve(request.getStoreId());
+        validateSubmitRequest(request, readiness);
+
+        // Trùng partnerInvoiceId không kiểm tra trước mà dựa vào unique uq_inv_tenant_partner:
+        // lưu trong transaction riêng để bắt được vi phạm sau khi rollback
+        try {
+            SubmitInvoiceResponse response = transactionTemplate.execute(status -> persistSubmit(request, readiness));
+            rememberSubmitted(request, response);
+            return response;
+        } catch (DataIntegrityViolationException ex) {
+            if (!isDuplicateSubmission(ex)) {
+                throw ex;
+            }
+            return findAlreadySubmitted(request).orElseThrow(() -> ex);
+        }
+    }
 
+    private SubmitInvoiceResponse persistSubmit(SubmitInvoiceRequest request, StoreReadiness readiness) {
         // ── B2: Map Request → Entity và lưu hóa đơn ─────────────────────────
-        EinvInvoiceEntity invoice = buildInvoiceEntity(request);
+        EinvInvoiceEntity invoice = buildInvoiceEntity(request, readiness);
         invoiceRepository.saveAndFlush(invoice);
         log.debug("[submitInvoice] Invoice saved: id={}", invoice.getId());
 
         // ── B3: Lưu các dòng hàng hóa (detail lines) ─────────────────────────
-        // TODO: saveInvoiceDetails(invoice.getId(), request.getDetails());
-        // → Map SubmitInvoiceDetailRequest → EinvInvoiceDetailEntity
-        // → Set tenantId, storeId, docId từ invoice
-        log.debug("[submitInvoice] [STUB] Invoice details pending implementation");
+        buildDetailEntities(invoice, request).forEach(entityManager::persist);
 
         // ── B4: Lưu payload thô để debug & audit ─────────────────────────────
         saveRawPayload(invoice.getId(), request);
@@ -111,6 +184,239 @@ public class EinvInvoiceServiceImpl implements EinvInvoiceService {
                 .build();
     }
 
+
+    // 1b. submitInvoices – Nhận cả lô hóa đơn, validate theo lô và lưu bằng JDBC batch
+    @Override
+    public List<SubmitInvoiceResponse> submitInvoices(List<SubmitInvoiceRequest> requests) {
+        log.info("[submitInvoices] START size={}", requests.size());
+        SubmitInvoiceResponse[] results = new SubmitInvoiceResponse[requests.size()];
+
+        // ── B1: Validate cả lô, mỗi store chỉ tra StoreReadiness một lần ─────
+        Map<String, StoreReadiness> readiness = new HashMap<>();
+        List<Integer> accepted = validateSubmitRequests(requests, readiness, results);
+
+        // ── B2: Lưu theo chunk, mỗi chunk một transaction ────────────────────
+        for (int from = 0; from < accepted.size(); from += BULK_CHUNK_SIZE) {
+            List<Integer> chunk = accepted.subList(from, Math.min(from + BULK_CHUNK_SIZE, accepted.size()));
+            persistSubmitChunk(requests, chunk, readiness, results);
+        }
+
+        long failed = Arrays.stream(results).filter(result -> result.getErrorCode() != null).count();
+        log.info("[submitInvoices] END size={} queued={} failed={}",
+                 requests.size(), requests.size() - failed, failed);
+        return Arrays.asList(results);
+    }
+
+    private void persistSubmitChunk(List<SubmitInvoiceRequest> requests,
+                                    List<Integer> chunk,
+                                    Map<String, StoreReadiness> readiness,
+                                    SubmitInvoiceResponse[] results) {
+        List<SubmitInvoiceRequest> batch = chunk.stream().map(requests::get).toList();
+        try {
+            List<SubmitInvoiceResponse> saved = transactionTemplate.execute(status -> persistSubmitBatch(batch, readiness));
+            for (int i = 0; i < chunk.size(); i++) {
+                results[chunk.get(i)] = saved.get(i);
+                rememberSubmitted(batch.get(i), saved.get(i));
+            }
+        } catch (RuntimeException ex) {
+            // Một hóa đơn lỗi (vd. trùng do request song song) làm rollback cả chunk → lưu lại từng hóa đơn
+            log.warn("[submitInvoices] Chunk of {} failed, retrying one by one: {}", chunk.size(), ex.getMessage());
+            for (Integer index : chunk) {
+                SubmitInvoiceRequest request = requests.get(index);
+                try {
+                    results[index] = transactionTemplate.execute(
+                            status -> persistSubmitBatch(List.of(request), readiness).get(0));
+                    rememberSubmitted(request, results[index]);
+                } catch (RuntimeException itemEx) {
+                    // EntityManager dùng trực tiếp nên lỗi không qua exception translation của Spring
+                    Optional<SubmitInvoiceResponse> existing = isDuplicateSubmission(itemEx)
+                            ? findAlreadySubmitted(request)
+                            : Optional.empty();
+                    results[index] = existing.orElseGet(() -> {
+                        log.warn("[submitInvoices] partnerInvoiceId={} failed: {}",
+                                 request.getPartnerInvoiceId(), itemEx.getMessage());
+                        return SubmitInvoiceResponse.error(request.getPartnerInvoiceId(),
+                                ERR_SUBMIT_FAILED, itemEx.getMessage());
+                    });
+                }
+            }
+        }
+    }
+
+    /**
+     * Persist theo từng loại entity (hóa đơn → dòng hàng → payload → queue) để Hibernate gộp INSERT
+     * thành JDBC batch; audit log đi qua AuditLogSink sau commit như luồng submit đơn lẻ.
+     */
+    private List<SubmitInvoiceResponse> persistSubmitBatch(List<SubmitInvoiceRequest> batch,
+                                                           Map<String, StoreReadiness> readiness) {
+        List<EinvInvoiceEntity> invoices = new ArrayList<>(batch.size());
+        for (SubmitInvoiceRequest request : batch) {
+            EinvInvoiceEntity invoice = buildInvoiceEntity(request, readiness.get(request.getStoreId()));
+            entityManager.persist(invoice);
+            invoices.add(invoice);
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            buildDetailEntities(invoices.get(i), batch.get(i)).forEach(entityManager::persist);
+        }
+
+        List<String> payloadJson = batch.stream().map(this::toJson).toList();
+        for (int i = 0; i < batch.size(); i++) {
+            EinvInvoicePayloadEntity payload = new EinvInvoicePayloadEntity();
+            payload.setInvoiceId(invoices.get(i).getId());
+            payload.setRequestJson(payloadJson.get(i));
+            entityManager.persist(payload);
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            entityManager.persist(buildSyncQueueEntry(invoices.get(i), SYNC_SUBMIT, batch.get(i).getTenantId()));
+        }
+        entityManager.flush();
+
+        String auditor = auditorProvider.getCurrentAuditor().orElse("system");
+        LocalDateTime now = LocalDateTime.now();
+        List<AuditLogRow> auditRows = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            auditRows.add(new AuditLogRow("SUBMIT_INVOICE", "einv_invoices", invoices.get(i).getId(),
+                    payloadJson.get(i), AUDIT_SUCCESS, null, auditor, now));
+        }
+        auditLogSink.publishAllAfterCommit(auditRows);
+        entityManager.clear();
+
+        List<SubmitInvoiceResponse> responses = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            responses.add(SubmitInvoiceResponse.builder()
+                    .invoiceId(invoices.get(i).getId())
+                    .partnerInvoiceId(batch.get(i).getPartnerInvoiceId())
+                    .statusId(INV_STATUS_NEW)
+                    .message("einv.success.invoice_queued")
+                    .build());
+        }
+        return responses;
+    }
+
+    // 1c. ingestInvoices – Ingest NDJSON streaming, commit theo chunk, chạy tiếp được từ dòng đã commit
+    @Override
+    public IngestInvoicesResponse ingestInvoices(InputStream input, OutputStream output,
+                                                 long resumeAfterLine) throws IOException {
+        log.info("[ingestInvoices] START resumeAfterLine={}", resumeAfterLine);
+        IngestInvoicesResponse summary = IngestInvoicesResponse.builder()
+                .lastCommittedLine(resumeAfterLine)
+                .build();
+        // Bộ nhớ chỉ giữ tối đa một chunk request, không phụ thuộc kích thước file
+        List<IngestLine> pending = new ArrayList<>(BULK_CHUNK_SIZE);
+        ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        // Stream do caller sở hữu: parser / generator không được đóng chúng
+        try (JsonParser parser = objectMapper.getFactory().createParser(input)
+                     .disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(output)
+                     .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+            generator.setRootValueSeparator(new SerializedString("\n"));
+            try {
+                try {
+                    JsonToken token;
+                    long previousLine = 0;
+                    while ((token = parser.nextToken()) != null) {
+                        long line = parser.currentTokenLocation().getLineNr();
+                        // Hai object trên cùng một dòng: số dòng không còn định danh được object để chạy tiếp
+                        if (token != JsonToken.START_OBJECT || line == previousLine) {
+                            throw new JsonParseException(parser, "Expected one JSON object per line");
+                        }
+                        previousLine = line;
+                        if (line <= resumeAfterLine) {
+                            parser.skipChildren();
+                            summary.setSkipped(summary.getSkipped() + 1);
+                            continue;
+                        }
+                        pending.add(toIngestLine(line, parser.readValueAsTree()));
+                        if (pending.size() == BULK_CHUNK_SIZE) {
+                            commitIngestChunk(pending, summary, generator, writer);
+                        }
+                    }
+                    commitIngestChunk(pending, summary, generator, writer);
+                    summary.setCompleted(true);
+                } catch (JsonParseException ex) {
+                    // JSON hỏng: parser không đồng bộ lại được → commit phần đã đọc rồi dừng,
+                    // client sửa file và chạy tiếp từ lastCommittedLine
+                    commitIngestChunk(pending, summary, generator, writer);
+                    summary.setErrorMessage("einv.error.invalid_ndjson: " + ex.getOriginalMessage()
+                                            + " (line " + ex.getLocation().getLineNr() + ")");
+                    log.warn("[ingestInvoices] Stopped: {}", summary.getErrorMessage());
+                }
+            } catch (RuntimeException ex) {
+                // Chunk đang ghi lỗi (DB...): chunk đó chưa commit, vẫn trả summary để client chạy tiếp từ lastCommittedLine
+                summary.setErrorMessage("einv.error.ingest_failed: " + ex.getMessage());
+                log.error("[ingestInvoices] Submit failed, lastCommittedLine={}", summary.getLastCommittedLine(), ex);
+                writeIngestSummary(summary, generator, writer);
+                throw ex;
+            }
+            writeIngestSummary(summary, generator, writer);
+        } catch (IOException ex) {
+            log.warn("[ingestInvoices] Stream aborted, lastCommittedLine={}: {}",
+                     summary.getLastCommittedLine(), ex.getMessage());
+            throw ex;
+        }
+
+        log.info("[ingestInvoices] END lastCommittedLine={} accepted={} failed={} skipped={} completed={}",
+                 summary.getLastCommittedLine(), summary.getAccepted(), summary.getFailed(),
+                 summary.getSkipped(), summary.isCompleted());
+        return summary;
+    }
+
+    private IngestLine toIngestLine(long line, JsonNode node) {
+        try {
+            return new IngestLine(line, objectMapper.treeToValue(node, SubmitInvoiceRequest.class), null);
+        } catch (JsonProcessingException | IllegalArgumentException ex) {
+            // JSON hợp lệ nhưng không map được sang request: chỉ dòng này lỗi
+            String partnerInvoiceId = node.path("partner_invoice_id").asText(null);
+            return new IngestLine(line, null, SubmitInvoiceResponse.error(partnerInvoiceId,
+                    "einv.error.invalid_request_line", ex.getMessage()));
+        }
+    }
+
+    private void writeIngestSummary(IngestInvoicesResponse summary, JsonGenerator generator,
+                                    ObjectWriter writer) throws IOException {
+        writer.writeValue(generator, summary);
+        generator.writeRaw('\n');
+        generator.flush();
+    }
+
+    /**Commit chunk qua submitInvoices rồi mới ghi kết quả, nên mọi dòng đã trả về client đều đã commit
+     * hoặc đã lỗi; lastCommittedLine chỉ vượt qua dòng đã commit / lỗi vĩnh viễn.*/
+    private void commitIngestChunk(List<IngestLine> pending, IngestInvoicesResponse summary,
+                                   JsonGenerator generator, ObjectWriter writer) throws IOException {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<SubmitInvoiceRequest> requests = pending.stream()
+                .map(IngestLine::request)
+                .filter(Objects::nonNull)
+                .toList();
+        Iterator<SubmitInvoiceResponse> results = submitInvoices(requests).iterator();
+
+        for (IngestLine line : pending) {
+            SubmitInvoiceResponse result = line.request() != null ? results.next() : line.error();
+            if (ERR_SUBMIT_FAILED.equals(result.getErrorCode())) {
+                summary.setFailed(summary.getFailed() + 1);
+                summary.setRetryable(summary.getRetryable() + 1);
+            } else if (result.getErrorCode() != null) {
+                summary.setFailed(summary.getFailed() + 1);
+            } else {
+                summary.setAccepted(summary.getAccepted() + 1);
+            }
+            // Checkpoint dừng trước dòng lỗi tạm thời đầu tiên để chạy tiếp gửi lại dòng đó;
+            // dòng đã commit phía sau được gửi lại chỉ nhận về invoiceId gốc
+            if (summary.getRetryable() == 0) {
+                summary.setLastCommittedLine(line.line());
+            }
+            writer.writeValue(generator, new IngestInvoiceLineResult(line.line(), result));
+        }
+        generator.flush();
+        pending.clear();
+    }
+
+    private record IngestLine(long line, SubmitInvoiceRequest request, SubmitInvoiceResponse error) {
+    }
+
     
     // 2. signInvoice – Ký số hóa đơn qua Provider API [STUB]
     @Override
@@ -251,6 +557,7 @@ public class EinvInvoiceServiceImpl implements EinvInvoiceService {
 
     
     // 6. createAuditLog – Ghi nhật ký kiểm toán (Fire & Forget)
+    // Đẩy vào AuditLogSink sau khi transaction nghiệp vụ commit, không INSERT trong transaction
     @Override
     public void createAuditLog(String action,
                                String entityName,
@@ -258,50 +565,140 @@ public class EinvInvoiceServiceImpl implements EinvInvoiceService {
                                String payload,
                                String result,
                                String errorMsg) {
-        try {
-            EinvAuditLogEntity log_entry = new EinvAuditLogEntity();
-            log_entry.setAction(action);
-            log_entry.setEntityName(entityName);
-            log_entry.setEntityId(entityId);
-            log_entry.setPayload(payload);
-            log_entry.setResult(result);
-            log_entry.setErrorMsg(errorMsg);
-            auditLogRepository.save(log_entry);
-            log.debug("[audit] Logged action={} entity={}/{} result={}",
-                     action, entityName, entityId, result);
-        } catch (Exception ex) {
-            // KHÔNG throw – audit failure không được rollback transaction nghiệp vụ
-            log.warn("[audit] FAILED to write audit log action={} entity={}/{}: {}",
-                     action, entityName, entityId, ex.getMessage());
-        }
+        auditLogSink.publishAfterCommit(action, entityName, entityId, payload, result, errorMsg);
+        log.debug("[audit] Queued action={} entity={}/{} result={}",
+                  action, entityName, entityId, result);
     }
 
     
     // Private: Validate Submit Request
-    private void validateSubmitRequest(SubmitInvoiceRequest request) {
-        // [1] Chống trùng partnerInvoiceId trong tenant
-        if (invoiceRepository.existsByPartnerInvoiceIdAndTenantId(
-                request.getPartnerInvoiceId(), request.getTenantId())) {
-            throw new BusinessException(
-                "einv.error.duplicate_partner_invoice_id: " + request.getPartnerInvoiceId());
+    private void validateSubmitRequest(SubmitInvoiceRequest request, StoreReadiness readiness) {
+        // [1] Trùng partnerInvoiceId trong tenant: do unique uq_inv_tenant_partner chặn lúc insert
+        validateReadinessAndReference(request, readiness);
+
+        log.debug("[validateSubmitRequest] PASSED for partnerInvoiceId={}",
+                  request.getPartnerInvoiceId());
+    }
+
+    /**
+     * Validate cả lô, giữ cùng quy tắc với validateSubmitRequest; ngoài ra:
+     * hóa đơn đã nhận (bộ lọc gần đây, rồi một truy vấn IN theo tenant) được trả invoiceId gốc,
+     * trùng ngay trong lô bị báo lỗi, trạng thái tích hợp / dải ký hiệu tra StoreReadiness một lần cho mỗi store.
+     * Request không cần lưu được ghi kết quả vào results; trả về index các request cần lưu.
+     */
+    private List<Integer> validateSubmitRequests(List<SubmitInvoiceRequest> requests,
+                                                 Map<String, StoreReadiness> readiness,
+                                                 SubmitInvoiceResponse[] results) {
+        Map<String, SubmitInvoiceResponse> submitted = findSubmittedInvoices(requests);
+        Set<String> seen = new HashSet<>();
+        List<Integer> accepted = new ArrayList<>(requests.size());
+
+        for (int i = 0; i < requests.size(); i++) {
+            SubmitInvoiceRequest request = requests.get(i);
+            String key = submissionKey(request.getTenantId(), request.getPartnerInvoiceId());
+            SubmitInvoiceResponse previous = submitted.get(key);
+            if (previous != null) {
+                results[i] = previous;
+                continue;
+            }
+            try {
+                if (!seen.add(key)) {
+                    throw new BusinessException(
+                        "einv.error.duplicate_partner_invoice_id: " + request.getPartnerInvoiceId());
+                }
+                validateReadinessAndReference(request,
+                        readiness.computeIfAbsent(request.getStoreId(), storeReadinessCache::resolve));
+                accepted.add(i);
+            } catch (BusinessException ex) {
+                results[i] = SubmitInvoiceResponse.error(request.getPartnerInvoiceId(), ex.getCode(), ex.getMessage());
+            }
+        }
+        return accepted;
+    }
+
+    private Map<String, SubmitInvoiceResponse> findSubmittedInvoices(List<SubmitInvoiceRequest> requests) {
+        Map<String, SubmitInvoiceResponse> submitted = new HashMap<>();
+        Map<String, Set<String>> partnerIdsByTenant = new LinkedHashMap<>();
+        for (SubmitInvoiceRequest request : requests) {
+            String recentInvoiceId = recentSubmissionCache.getInvoiceId(
+                    request.getTenantId(), request.getPartnerInvoiceId());
+            if (recentInvoiceId != null) {
+                submitted.put(submissionKey(request.getTenantId(), request.getPartnerInvoiceId()),
+                        alreadySubmitted(recentInvoiceId, request.getPartnerInvoiceId(), null));
+            } else {
+                partnerIdsByTenant.computeIfAbsent(request.getTenantId(), tenantId -> new HashSet<>())
+                        .add(request.getPartnerInvoiceId());
+            }
         }
 
-        boolean isIntegrated = storeProviderRepository
-                .findByStoreId(request.getStoreId())
-                .map(e -> e.getStatus() != null && e.getStatus() == 1)
-                .orElse(false);
-        if (!isIntegrated) {
+        partnerIdsByTenant.forEach((tenantId, partnerIds) -> {
+            List<String> ids = new ArrayList<>(partnerIds);
+            for (int from = 0; from < ids.size(); from += BULK_LOOKUP_CHUNK) {
+                List<SubmittedInvoiceRow> rows = invoiceRepository.findSubmittedByPartnerInvoiceIds(
+                        tenantId, ids.subList(from, Math.min(from + BULK_LOOKUP_CHUNK, ids.size())));
+                for (SubmittedInvoiceRow row : rows) {
+                    recentSubmissionCache.put(tenantId, row.getPartnerInvoiceId(), row.getInvoiceId());
+                    submitted.put(submissionKey(tenantId, row.getPartnerInvoiceId()),
+                            alreadySubmitted(row.getInvoiceId(), row.getPartnerInvoiceId(), row.getStatusId()));
+                }
+            }
+        });
+        return submitted;
+    }
+
+    // Chỉ vi phạm uq_inv_tenant_partner mới là "đã nhận"; FK, NOT NULL, quá độ dài cột... là lỗi thật.
+    // Nhận mọi Throwable: đường batch nhận ConstraintViolationException/PersistenceException chưa được dịch
+    static boolean isDuplicateSubmission(Throwable ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause() == cause ? null : cause.getCause()) {
+            String constraint = cause instanceof ConstraintViolationException violation
+                    ? violation.getConstraintName()
+                    : cause.getMessage();
+            if (constraint != null && constraint.toLowerCase(Locale.ROOT).contains(UQ_TENANT_PARTNER)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Vi phạm uq_inv_tenant_partner: hóa đơn đã được nhận (POS retry song song / pod khác) → trả invoiceId gốc
+    private Optional<SubmitInvoiceResponse> findAlreadySubmitted(SubmitInvoiceRequest request) {
+        return invoiceRepository
+                .findByPartnerInvoiceIdAndTenantId(request.getPartnerInvoiceId(), request.getTenantId())
+                .map(existing -> {
+                    log.info("[submitInvoice] Already submitted partnerInvoiceId={} → invoiceId={}",
+                             request.getPartnerInvoiceId(), existing.getId());
+                    recentSubmissionCache.put(request.getTenantId(), request.getPartnerInvoiceId(), existing.getId());
+                    return alreadySubmitted(existing.getId(), request.getPartnerInvoiceId(), existing.getStatusId());
+                });
+    }
+
+    private void rememberSubmitted(SubmitInvoiceRequest request, SubmitInvoiceResponse response) {
+        if (response != null && response.getErrorCode() == null) {
+            recentSubmissionCache.put(request.getTenantId(), request.getPartnerInvoiceId(), response.getInvoiceId());
+        }
+    }
+
+    private static SubmitInvoiceResponse alreadySubmitted(String invoiceId, String partnerInvoiceId, Byte statusId) {
+        return SubmitInvoiceResponse.builder()
+                .invoiceId(invoiceId)
+                .partnerInvoiceId(partnerInvoiceId)
+                .statusId(statusId)
+                .message("einv.success.invoice_already_submitted")
+                .build();
+    }
+
+    private static String submissionKey(String tenantId, String partnerInvoiceId) {
+        return tenantId + KEY_SEPARATOR + partnerInvoiceId;
+    }
+
+    private void validateReadinessAndReference(SubmitInvoiceRequest request, StoreReadiness readiness) {
+        // [2] Cửa hàng phải đã tích hợp với đúng NCC của request
+        if (!readiness.isIntegrated(request.getProviderId())) {
             throw new BusinessException("einv.error.provider_not_integrated");
         }
 
         // [3] Phải có dải ký hiệu đang hoạt động (status=1) cho loại hóa đơn này
-        boolean hasActiveSerial = serialRepository
-                .findByStoreIdAndProviderId(request.getStoreId(), request.getProviderId())
-                .stream()
-                .anyMatch(s -> s.getStatus() != null && s.getStatus() == 1
-                               && s.getInvoiceTypeId() != null
-                               && s.getInvoiceTypeId().equals(request.getInvoiceTypeId()));
-        if (!hasActiveSerial) {
+        if (readiness.getActiveSerial(request.getProviderId(), request.getInvoiceTypeId()) == null) {
             throw new BusinessException("einv.error.no_active_serial_for_type");
         }
 
@@ -314,31 +711,43 @@ public class EinvInvoiceServiceImpl implements EinvInvoiceService {
                 throw new BusinessException("einv.error.org_invoice_reason_required");
             }
         }
-
-        log.debug("[validateSubmitRequest] PASSED for partnerInvoiceId={}",
-                  request.getPartnerInvoiceId());
     }
 
     
     // Private: Entity Builders
-    private EinvInvoiceEntity buildInvoiceEntity(SubmitInvoiceRequest request) {
-        EinvInvoiceEntity entity = invoiceMapper.toEntity(request);
+    private EinvInvoiceEntity buildInvoiceEntity(SubmitInvoiceRequest request, StoreReadiness readiness) {
+        EinvInvoiceEntity entity = invoiceMapper.requestToEntity(request);
+        entity.setTenantId(request.getTenantId());
+        entity.setStoreId(request.getStoreId());
+        entity.setProviderId(request.getProviderId());
         entity.setStatusId(INV_STATUS_NEW);
         entity.setIsDraft(false);
         entity.setIsDeleted(false);
         entity.setIsLocked(false);
-        // Lấy serial đang active để gán invoiceForm + invoiceSeries
-        serialRepository.findByStoreIdAndProviderId(request.getStoreId(), request.getProviderId())
-                .stream()
-                .filter(s -> s.getStatus() != null && s.getStatus() == 1)
-                .findFirst()
-                .ifPresent(serial -> {
-                    if (entity.getInvoiceForm() == null)   entity.setInvoiceForm(serial.getInvoiceForm());
-                    if (entity.getInvoiceSeries() == null) entity.setInvoiceSeries(serial.getInvoiceSerial());
-                });
+        // Gán invoiceForm + invoiceSeries từ dải ký hiệu đang active của đúng loại hóa đơn
+        ActiveSerial serial = readiness.getActiveSerial(request.getProviderId(), request.getInvoiceTypeId());
+        if (serial != null) {
+            if (entity.getInvoiceForm() == null)   entity.setInvoiceForm(serial.invoiceForm());
+            if (entity.getInvoiceSeries() == null) entity.setInvoiceSeries(serial.invoiceSeries());
+        }
         return entity;
     }
 
+    private List<EinvInvoiceDetailEntity> buildDetailEntities(EinvInvoiceEntity invoice, SubmitInvoiceRequest request) {
+        if (request.getDetails() == null || request.getDetails().isEmpty()) {
+            return List.of();
+        }
+        List<EinvInvoiceDetailEntity> details = invoiceDetailMapper.requestsToEntities(request.getDetails());
+        for (int i = 0; i < details.size(); i++) {
+            EinvInvoiceDetailEntity detail = details.get(i);
+            detail.setTenantId(invoice.getTenantId());
+            detail.setStoreId(invoice.getStoreId());
+            detail.setDocId(invoice.getId());
+            detail.setLineNo(i + 1);
+        }
+        return details;
+    }
+
     private void saveRawPayload(String invoiceId, SubmitInvoiceRequest request) {
         try {
             EinvInvoicePayloadEntity payload = new EinvInvoicePayloadEntity();
@@ -9,6 +9,7 @@ import org.springframework.transaction.annotation.Transactional;
 import vn.softz.app.einvoicehub.domain.entity.EinvProviderEntity;
 import vn.softz.app.einvoicehub.domain.repository.EinvProviderRepository;
 import vn.softz.app.einvoicehub.domain.repository.EinvStoreProviderRepository;
+import vn.softz.app.einvoicehub.provider.bkav.BkavConnectionProfileCache;
 import vn.softz.app.einvoicehub.service.catalog.EinvProviderService;
 import vn.softz.app.einvoicehub.exception.BusinessException;
 
@@ -22,6 +23,7 @@ public class EinvProviderServiceImpl implements EinvProviderService {
 
     private final EinvProviderRepository     repository;
     private final EinvStoreProviderRepository storeProviderRepository;
+    private final BkavConnectionProfileCache  bkavProfileCache;
 
     @Override
     @Transactional
@@ -43,9 +45,15 @@ public class EinvProviderServiceImpl implements EinvProviderService {
         EinvProviderEntity existing = findEntityById(id);
         // Không được đổi providerCode
         if (entity.getProviderName()    != null) existing.setProviderName(entity.getProviderName());
+        boolean urlChanged = entity.getIntegrationUrl() != null
+                && !entity.getIntegrationUrl().equals(existing.getIntegrationUrl());
         if (entity.getIntegrationUrl()  != null) existing.setIntegrationUrl(entity.getIntegrationUrl());
         if (entity.getLookupUrl()       != null) existing.setLookupUrl(entity.getLookupUrl());
         EinvProviderEntity saved = repository.save(existing);
+        if (urlChanged) {
+            // Endpoint nằm trong connection profile đã cache của từng cửa hàng
+            bkavProfileCache.invalidateAll();
+        }
         log.info("[EinvProvider] Updated id={}", id);
         return saved;
     }
@@ -5,6 +5,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import vn.softz.app.einvoicehub.cache.StoreReadinessCache;
 import vn.softz.app.einvoicehub.domain.entity.EinvStoreProviderEntity;
 import vn.softz.app.einvoicehub.domain.entity.EinvStoreProviderHistoryEntity;
 import vn.softz.app.einvoicehub.domain.repository.EinvStoreProviderHistoryRepository;
@@ -14,6 +15,7 @@ import vn.softz.app.einvoicehub.dto.EinvStoreProviderDto;
 import vn.softz.app.einvoicehub.dto.EinvValidationResult;
 import vn.softz.app.einvoicehub.dto.request.EinvStoreProviderRequest;
 import vn.softz.app.einvoicehub.mapper.EinvStoreProviderMapper;
+import vn.softz.app.einvoicehub.provider.bkav.BkavConnectionProfileCache;
 import vn.softz.app.einvoicehub.provider.bkav.BkavSoapClient;
 import vn.softz.app.einvoicehub.provider.bkav.constant.BkavCommandType;
 import vn.softz.app.einvoicehub.provider.bkav.model.BkavResponse;
@@ -40,6 +42,8 @@ public class EinvStoreProviderServiceImpl implements EinvStoreProviderService {
     private final EinvStoreProviderMapper               mapper;
 
     private final BkavSoapClient                          bkavSoapClient;
+    private final BkavConnectionProfileCache              bkavProfileCache;
+    private final StoreReadinessCache                     storeReadinessCache;
     //private final MobifoneHttpClient                    mobifoneHttpClient;
     //private final BCryptPasswordEncoder                 passwordEncoder;
 
@@ -114,6 +118,9 @@ public class EinvStoreProviderServiceImpl implements EinvStoreProviderService {
         entity.setIntegratedDate(null);
 
         repository.saveAndFlush(entity);
+        // Credentials có thể đã đổi → bỏ connection profile (PartnerGUID, key/IV) cũ của cửa hàng
+        bkavProfileCache.invalidate(storeId);
+        storeReadinessCache.invalidate(storeId);
         log.info("[saveConfig] {} config for storeId={}, providerId={}",
                 isNew ? "Created" : "Updated", storeId, entity.getProviderId());
 
@@ -143,6 +150,8 @@ public class EinvStoreProviderServiceImpl implements EinvStoreProviderService {
                     entity.setIntegratedDate(LocalDateTime.now());
                     repository.save(entity);
                     saveHistory(entity, "VALIDATE_SUCCESS", STATUS_ACTIVE, null);
+                    bkavProfileCache.invalidate(storeId);
+                    storeReadinessCache.invalidate(storeId);
                     log.info("[validateConfig] Integration SUCCESS for storeId={}", storeId);
                 });
             }
@@ -171,6 +180,8 @@ public class EinvStoreProviderServiceImpl implements EinvStoreProviderService {
             entity.setIntegratedDate(null);
             repository.save(entity);
             saveHistory(entity, "DEACTIVATE", STATUS_DEACTIVATED, "Hủy tích hợp NCC");
+            bkavProfileCache.invalidate(storeId);
+            storeReadinessCache.invalidate(storeId);
             log.info("[deactivate] Deactivated config id={} for storeId={}", entity.getId(), storeId);
         });
 
@@ -3,6 +3,7 @@ package vn.softz.app.einvoicehub.service.impl;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -11,7 +12,9 @@ import vn.softz.app.einvoicehub.domain.repository.EinvSyncQueueRepository;
 import vn.softz.app.einvoicehub.service.core.EinvSyncQueueService;
 import vn.softz.app.einvoicehub.exception.BusinessException;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -27,62 +30,97 @@ public class EinvSyncQueueServiceImpl implements EinvSyncQueueService {
     @Override
     @Transactional(readOnly = true)
     public List<EinvSyncQueueEntity> pollPendingEntries(int batchSize) {
-        return repository.findPendingReadyForRetry(LocalDateTime.now(),
-                org.springframework.data.domain.PageRequest.of(0, batchSize));
+        return repository.findPendingForRetry(LocalDateTime.now(), PageRequest.of(0, batchSize)).getContent();
     }
 
     @Override
     @Transactional
     public void markAsProcessing(String queueId) {
-        repository.findById(queueId).ifPresent(entry -> {
-            if ("PENDING".equals(entry.getStatus())) {
-                entry.setStatus("PROCESSING");
-                repository.save(entry);
-                log.debug("[SyncQueue] {} → PROCESSING", queueId);
-            }
-        });
+        // UPDATE có điều kiện thay cho read-then-save để 2 node không cùng chuyển một entry
+        if (repository.markProcessingIfPending(queueId) > 0) {
+            log.debug("[SyncQueue] {} → PROCESSING", queueId);
+        }
     }
 
     @Override
     @Transactional
-    public void markAsSuccess(String queueId, String cqtMessageId) {
-        EinvSyncQueueEntity entry = findEntityById(queueId);
-        entry.setStatus("SUCCESS");
-        entry.setCqtMessageId(cqtMessageId);
-        entry.setLastError(null);
-        entry.setNextRetryAt(null);
-        repository.save(entry);
+    public List<EinvSyncQueueEntity> claimBatch(Collection<String> syncTypes, String owner,
+                                                int batchSize, Duration lease) {
+        if (syncTypes.isEmpty() || batchSize <= 0) {
+            return List.of();
+        }
+        LocalDateTime now = LocalDateTime.now();
+        int exhausted = repository.failExhaustedLeases(syncTypes, now);
+        if (exhausted > 0) {
+            log.warn("[SyncQueue] {} entries → FAILED: lease expired at maxAttempts", exhausted);
+        }
+        List<String> ids = repository.lockClaimableIds(syncTypes, now, batchSize);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        repository.claim(ids, owner, now.plus(lease));
+        log.debug("[SyncQueue] {} claimed {} entries", owner, ids.size());
+        return repository.findAllById(ids);
+    }
+
+    @Override
+    @Transactional
+    public int renewLeases(Collection<String> queueIds, String owner, Duration lease) {
+        if (queueIds.isEmpty()) {
+            return 0;
+        }
+        return repository.renewLeases(queueIds, owner, LocalDateTime.now().plus(lease));
+    }
+
+    @Override
+    @Transactional
+    public boolean markAsSuccess(String queueId, String owner, String cqtMessageId) {
+        if (repository.completeSuccess(queueId, owner, cqtMessageId) == 0) {
+            log.warn("[SyncQueue] {} lost lease of {}, SUCCESS result dropped", queueId, owner);
+            return false;
+        }
         log.info("[SyncQueue] {} → SUCCESS, cqtMessageId={}", queueId, cqtMessageId);
+        return true;
     }
 
     @Override
     @Transactional
-    public void markAsFailed(String queueId, String errorMessage, String errorCode) {
+    public boolean markAsFailed(String queueId, String owner, String errorMessage, String errorCode) {
         EinvSyncQueueEntity entry = findEntityById(queueId);
+        if (!"PROCESSING".equals(entry.getStatus()) || !owner.equals(entry.getLockedBy())) {
+            log.warn("[SyncQueue] {} lost lease of {}, FAILED result dropped", queueId, owner);
+            return false;
+        }
 
         byte attempts = (byte) (entry.getAttemptCount() + 1);
-        entry.setAttemptCount(attempts);
-        entry.setLastError(errorMessage);
-        entry.setErrorCode(errorCode);
-
+        String status;
+        LocalDateTime nextRetryAt;
         if (attempts >= entry.getMaxAttempts()) {
             // Hết lượt retry → FAILED vĩnh viễn, cần xử lý thủ công
-            entry.setStatus("FAILED");
-            entry.setNextRetryAt(null);
-            log.warn("[SyncQueue] {} → FAILED (maxAttempts={} reached). Error: {}",
-                     queueId, entry.getMaxAttempts(), errorMessage);
+            status = "FAILED";
+            nextRetryAt = null;
         } else {
             // Còn lượt → schedule retry với backoff
             int delayMinutes = attempts <= RETRY_DELAY_MINUTES.length
                     ? RETRY_DELAY_MINUTES[attempts - 1]
                     : RETRY_DELAY_MINUTES[RETRY_DELAY_MINUTES.length - 1];
-            entry.setStatus("PENDING");
-            entry.setNextRetryAt(LocalDateTime.now().plusMinutes(delayMinutes));
-            log.warn("[SyncQueue] {} → PENDING retry #{} in {}min. Error: {}",
-                     queueId, attempts, delayMinutes, errorMessage);
+            status = "PENDING";
+            nextRetryAt = LocalDateTime.now().plusMinutes(delayMinutes);
         }
 
-        repository.save(entry);
+        // Điều kiện lockedBy = owner nằm trong UPDATE: lease có thể hết ngay sau lần đọc ở trên
+        if (repository.completeFailure(queueId, owner, status, attempts, errorMessage, errorCode, nextRetryAt) == 0) {
+            log.warn("[SyncQueue] {} lost lease of {}, FAILED result dropped", queueId, owner);
+            return false;
+        }
+        if (nextRetryAt == null) {
+            log.warn("[SyncQueue] {} → FAILED (maxAttempts={} reached). Error: {}",
+                     queueId, entry.getMaxAttempts(), errorMessage);
+        } else {
+            log.warn("[SyncQueue] {} → PENDING retry #{} at {}. Error: {}",
+                     queueId, attempts, nextRetryAt, errorMessage);
+        }
+        return true;
     }
 
 
@@ -107,16 +145,11 @@ public class EinvSyncQueueServiceImpl implements EinvSyncQueueService {
     @Override
     @Transactional
     public void retryManually(String queueId) {
-        EinvSyncQueueEntity entry = findEntityById(queueId);
-        if (!"FAILED".equals(entry.getStatus())) {
+        if (repository.resetFailed(queueId, LocalDateTime.now()) == 0) {
+            findEntityById(queueId);
             throw new BusinessException(
                 "einv.error.queue_not_failed: only FAILED entries can be manually retried");
         }
-        entry.setStatus("PENDING");
-        entry.setAttemptCount((byte) 0);
-        entry.setNextRetryAt(LocalDateTime.now());
-        entry.setLastError(null);
-        repository.save(entry);
         log.info("[SyncQueue] {} manually reset to PENDING for retry", queueId);
     }
 
@@ -0,0 +1,113 @@
+package vn.softz.app.einvoicehub.service.mapping;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Bảng tra đã "biên dịch" từ Map&lt;String,String&gt; của một MappingType, dựng một lần cho mỗi bản cache:
+ *  - Mã số (status, loại hóa đơn, loại hàng, thanh toán): mảng int tra trực tiếp theo id hub 0..255,
+ *    id lớn hơn nằm ở map phụ. Tra cứu không parse, không boxing.
+ *  - TAX_TYPE: "mã,thuế suất" được tách sẵn thành TaxRate (int + BigDecimal).
+ * Giá trị provider không phải số / sai định dạng được báo một lần lúc dựng và coi như không có mapping.
+ */
+@Slf4j
+public final class CompiledMapping {
+
+    public record TaxRate(int taxTypeId, BigDecimal rate) {
+    }
+
+    private static final int DIRECT_TABLE_SIZE = 256;
+    private static final int MISSING = Integer.MIN_VALUE;
+
+    private final int[] direct;
+    private final Map<Integer, Integer> overflow;
+    private final Map<String, TaxRate> taxRates;
+
+    private CompiledMapping(int[] direct, Map<Integer, Integer> overflow, Map<String, TaxRate> taxRates) {
+        this.direct = direct;
+        this.overflow = overflow;
+        this.taxRates = taxRates;
+    }
+
+    public static CompiledMapping compile(String name, Map<String, String> mapping) {
+        int[] direct = new int[DIRECT_TABLE_SIZE];
+        Arrays.fill(direct, MISSING);
+        Map<Integer, Integer> overflow = new HashMap<>();
+        Map<String, TaxRate> taxRates = new HashMap<>();
+        if (mapping == null) {
+            return new CompiledMapping(direct, Map.of(), Map.of());
+        }
+
+        mapping.forEach((internalCode, providerCode) -> {
+            if (internalCode == null || providerCode == null) {
+                return;
+            }
+            int comma = providerCode.indexOf(',');
+            if (comma > 0) {
+                TaxRate taxRate = parseTaxRate(providerCode, comma);
+                if (taxRate != null) {
+                    taxRates.put(internalCode, taxRate);
+                } else {
+                    log.warn("[MAPPING] {} - invalid tax mapping '{}' for '{}', ignored", name, providerCode, internalCode);
+                }
+                return;
+            }
+
+            Integer hubId = parseInt(internalCode);
+            if (hubId == null) {
+                return;
+            }
+            Integer providerId = parseInt(providerCode);
+            if (providerId == null) {
+                log.warn("[MAPPING] {} - non-numeric provider code '{}' for {}, ignored", name, providerCode, hubId);
+                return;
+            }
+            if (hubId >= 0 && hubId < DIRECT_TABLE_SIZE) {
+                direct[hubId] = providerId;
+            } else {
+                overflow.put(hubId, providerId);
+            }
+        });
+        return new CompiledMapping(direct, overflow.isEmpty() ? Map.of() : overflow,
+                taxRates.isEmpty() ? Map.of() : taxRates);
+    }
+
+    /**Mã provider dạng số của id hub; không có mapping thì trả lại chính id hub.*/
+    public int getProviderInt(int hubId) {
+        if (hubId >= 0 && hubId < DIRECT_TABLE_SIZE) {
+            int value = direct[hubId];
+            return value != MISSING ? value : hubId;
+        }
+        Integer value = overflow.get(hubId);
+        return value != null ? value : hubId;
+    }
+
+    /**Loại thuế + thuế suất provider của mã thuế hub; null nếu không có mapping hợp lệ.*/
+    public TaxRate getTaxRate(String hubTaxTypeId) {
+        return taxRates.get(hubTaxTypeId);
+    }
+
+    private static TaxRate parseTaxRate(String value, int comma) {
+        Integer taxTypeId = parseInt(value.substring(0, comma));
+        if (taxTypeId == null) {
+            return null;
+        }
+        try {
+            return new TaxRate(taxTypeId, new BigDecimal(value.substring(comma + 1).trim()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static Integer parseInt(String value) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package vn.softz.app.einvoicehub.service.mapping;
+
+import vn.softz.app.einvoicehub.cache.EinvoiceMappingCacheData;
+import vn.softz.app.einvoicehub.service.EinvoiceMappingService.MappingType;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Toàn bộ mapping (6 MappingType) của một (lid, provider), lấy từ cache một lần
+ * rồi dùng cho cả hóa đơn / cả batch: mapper chỉ tra map trong bộ nhớ, không chạm cache mỗi field.
+ * Quy tắc fallback giống EinvoiceMappingService: không có mapping thì trả lại chính mã đầu vào.
+ */
+public final class MappingSnapshot {
+
+    private final Map<MappingType, EinvoiceMappingCacheData> data;
+
+    public MappingSnapshot(Map<MappingType, EinvoiceMappingCacheData> data) {
+        this.data = data.isEmpty() ? Map.of() : new EnumMap<>(data);
+    }
+
+    public String getProviderCode(MappingType type, String internalCode) {
+        if (internalCode == null || internalCode.isEmpty()) {
+            return null;
+        }
+        EinvoiceMappingCacheData mapping = data.get(type);
+        if (mapping == null || mapping.getMapping() == null) {
+            return internalCode;
+        }
+        return mapping.getMapping().getOrDefault(internalCode, internalCode);
+    }
+
+    /**Tra mã số qua bảng đã biên dịch: không parse, không boxing; không có mapping thì trả lại hubId.*/
+    public int getProviderInt(MappingType type, int hubId) {
+        EinvoiceMappingCacheData mapping = data.get(type);
+        if (mapping == null) {
+            return hubId;
+        }
+        return mapping.compiled().getProviderInt(hubId);
+    }
+
+    /**Loại thuế + thuế suất provider đã tách sẵn; null nếu mã thuế không có mapping hợp lệ.*/
+    public CompiledMapping.TaxRate getTaxRate(String hubTaxTypeId) {
+        if (hubTaxTypeId == null || hubTaxTypeId.isEmpty()) {
+            return null;
+        }
+        EinvoiceMappingCacheData mapping = data.get(MappingType.TAX_TYPE);
+        if (mapping == null) {
+            return null;
+        }
+        return mapping.compiled().getTaxRate(hubTaxTypeId);
+    }
+
+    public String getInternalCode(MappingType type, String providerCode) {
+        if (providerCode == null || providerCode.isEmpty()) {
+            return null;
+        }
+        EinvoiceMappingCacheData mapping = data.get(type);
+        if (mapping == null || mapping.getReverseMapping() == null) {
+            return providerCode;
+        }
+        return mapping.getReverseMapping().getOrDefault(providerCode, providerCode);
+    }
+}
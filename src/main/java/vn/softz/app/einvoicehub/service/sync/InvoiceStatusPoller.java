@@ -0,0 +1,156 @@
+package vn.softz.app.einvoicehub.service.sync;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import vn.softz.app.einvoicehub.domain.repository.EinvInvoiceStatusPollRepository;
+import vn.softz.app.einvoicehub.domain.repository.EinvInvoiceStatusPollRepository.StatusPollTarget;
+import vn.softz.app.einvoicehub.domain.repository.EinvInvoiceStatusPollRepository.StatusPollUpdate;
+import vn.softz.app.einvoicehub.provider.EInvoiceProviderRegistry;
+import vn.softz.app.einvoicehub.provider.model.InvoiceStatusResult;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Poll trạng thái + mã CQT (getInvoiceStatusFull / BKAV CmdType 850) cho các hóa đơn đã ký.
+ *  - Chỉ claim hóa đơn có status_poll_at đến hạn, nên khối lượng poll theo số hóa đơn chưa xong.
+ *  - Chu kỳ giãn dần theo số lần poll (nhanh ngay sau khi ký), cộng jitter để không dồn cục.
+ *  - Mỗi provider giới hạn số lời gọi đồng thời; lời gọi dùng API async nên không giữ thread.
+ *  - Kết quả cả batch được ghi lại einv_invoices bằng một JDBC batch.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "app.status-poll", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class InvoiceStatusPoller {
+
+    private final EinvInvoiceStatusPollRepository pollRepository;
+    private final EInvoiceProviderRegistry providerRegistry;
+    private final StatusPollProperties properties;
+
+    private final Map<String, Semaphore> providerPermits = new ConcurrentHashMap<>();
+
+    @Scheduled(fixedDelayString = "${app.status-poll.poll-interval-ms:2000}")
+    public void poll() {
+        while (true) {
+            LocalDateTime now = LocalDateTime.now();
+            List<StatusPollTarget> targets;
+            try {
+                targets = pollRepository.claimDue(now, properties.getBatchSize(), now.plus(properties.getClaimLease()));
+            } catch (Exception e) {
+                log.error("[StatusPoll] claim failed: {}", e.getMessage(), e);
+                return;
+            }
+            if (targets.isEmpty()) {
+                return;
+            }
+
+            List<StatusPollUpdate> updates = pollBatch(targets);
+            try {
+                pollRepository.saveResults(updates);
+            } catch (Exception e) {
+                // Lease hết hạn thì các hóa đơn này được poll lại
+                log.error("[StatusPoll] save {} results failed: {}", updates.size(), e.getMessage(), e);
+                return;
+            }
+            log.debug("[StatusPoll] polled {} invoices", targets.size());
+
+            if (targets.size() < properties.getBatchSize()) {
+                return;
+            }
+        }
+    }
+
+    private List<StatusPollUpdate> pollBatch(List<StatusPollTarget> targets) {
+        List<CompletableFuture<StatusPollUpdate>> futures = new ArrayList<>(targets.size());
+        for (StatusPollTarget target : targets) {
+            futures.add(pollOne(target));
+        }
+        return futures.stream().map(CompletableFuture::join).toList();
+    }
+
+    private CompletableFuture<StatusPollUpdate> pollOne(StatusPollTarget target) {
+        if (target.providerInvoiceId() == null || target.providerInvoiceId().isBlank()) {
+            log.warn("[StatusPoll] invoiceId={} has no provider invoice id, stop polling", target.invoiceId());
+            return CompletableFuture.completedFuture(stop(target, null));
+        }
+
+        Semaphore permits = providerPermits.computeIfAbsent(target.providerId(),
+                id -> new Semaphore(properties.getMaxConcurrentPerProvider()));
+        permits.acquireUninterruptibly();
+
+        CompletableFuture<InvoiceStatusResult> call;
+        try {
+            call = providerRegistry.getByProviderId(target.providerId())
+                    .getInvoiceStatusFullAsync(target.storeId(), target.providerInvoiceId());
+        } catch (Exception e) {
+            call = CompletableFuture.failedFuture(e);
+        }
+        return call
+                .whenComplete((result, error) -> permits.release())
+                .handle((result, error) -> {
+                    if (error != null) {
+                        log.warn("[StatusPoll] invoiceId={} failed: {}", target.invoiceId(), error.getMessage());
+                        return reschedule(target, null);
+                    }
+                    return toUpdate(target, result);
+                });
+    }
+
+    private StatusPollUpdate toUpdate(StatusPollTarget target, InvoiceStatusResult result) {
+        if (!result.isSuccess()) {
+            log.debug("[StatusPoll] invoiceId={} not available yet: {}", target.invoiceId(), result.getMessage());
+            return reschedule(target, null);
+        }
+        boolean settled = (result.getTaxAuthorityCode() != null && !result.getTaxAuthorityCode().isBlank())
+                || (result.getHubStatusId() != null && properties.getSettledStatusIds().contains(result.getHubStatusId()));
+        return settled ? stop(target, result) : reschedule(target, result);
+    }
+
+    private StatusPollUpdate reschedule(StatusPollTarget target, InvoiceStatusResult result) {
+        int pollCount = target.pollCount() + 1;
+        if (pollCount >= properties.getMaxAttempts()) {
+            log.warn("[StatusPoll] invoiceId={} still unsettled after {} polls, stop polling",
+                    target.invoiceId(), pollCount);
+            return stop(target, result);
+        }
+        return update(target, result, LocalDateTime.now().plus(nextInterval(pollCount)), pollCount);
+    }
+
+    private StatusPollUpdate stop(StatusPollTarget target, InvoiceStatusResult result) {
+        return update(target, result, null, target.pollCount() + 1);
+    }
+
+    private StatusPollUpdate update(StatusPollTarget target, InvoiceStatusResult result,
+                                    LocalDateTime nextPollAt, int pollCount) {
+        return new StatusPollUpdate(
+                target.invoiceId(),
+                result != null ? result.getHubStatusId() : null,
+                result != null ? blankToNull(result.getTaxAuthorityCode()) : null,
+                result != null ? blankToNull(result.getInvoiceLookupCode()) : null,
+                nextPollAt,
+                pollCount);
+    }
+
+    private Duration nextInterval(int pollCount) {
+        double base = properties.getInitialDelay().toMillis() * Math.pow(properties.getMultiplier(), pollCount);
+        double capped = Math.min(base, properties.getMaxInterval().toMillis());
+        double jitter = properties.getJitter();
+        double factor = jitter > 0 ? ThreadLocalRandom.current().nextDouble(1 - jitter, 1 + jitter) : 1;
+        return Duration.ofMillis((long) (capped * factor));
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value;
+    }
+}
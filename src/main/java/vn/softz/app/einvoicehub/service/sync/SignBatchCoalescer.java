@@ -0,0 +1,171 @@
+package vn.softz.app.einvoicehub.service.sync;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import vn.softz.app.einvoicehub.provider.EInvoiceProviderRegistry;
+import vn.softz.app.einvoicehub.provider.model.InvoiceResult;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gom các yêu cầu ký HSM của cùng store thành một lệnh ký lô (signInvoiceBatchByHsm).
+ * Lô được gửi khi đủ maxSize hóa đơn hoặc hết windowMs kể từ hóa đơn đầu tiên,
+ * kết quả từng hóa đơn (itemResults) được trả lại đúng future của job đã gửi;
+ * hóa đơn không có trong itemResults được xác nhận qua lịch poll trạng thái, không bị ký lại.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SignBatchCoalescer {
+
+    private final EInvoiceProviderRegistry providerRegistry;
+    private final SyncQueueProperties properties;
+
+    private final Map<BatchKey, PendingBatch> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("sign-batch-timer").daemon().factory());
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("sign-batch-", 0).factory());
+
+    public CompletableFuture<InvoiceResult> submit(String providerId, String storeId, String invoiceGuid) {
+        SyncQueueProperties.SignBatch config = properties.getSignBatch();
+        BatchKey key = new BatchKey(providerId, storeId);
+        CompletableFuture<InvoiceResult> future = new CompletableFuture<>();
+        PendingBatch[] full = new PendingBatch[1];
+
+        pending.compute(key, (k, batch) -> {
+            if (batch == null) {
+                PendingBatch created = new PendingBatch(k);
+                timer.schedule(() -> flushIfPending(created), config.getWindowMs(), TimeUnit.MILLISECONDS);
+                batch = created;
+            }
+            batch.add(normalize(invoiceGuid), future);
+            if (batch.size() >= config.getMaxSize()) {
+                full[0] = batch;
+                return null;
+            }
+            return batch;
+        });
+
+        if (full[0] != null) {
+            executor.execute(() -> flush(full[0]));
+        }
+        return future;
+    }
+
+    private void flushIfPending(PendingBatch batch) {
+        // Lô đã được gửi do đủ maxSize thì bỏ qua
+        if (pending.remove(batch.key(), batch)) {
+            executor.execute(() -> flush(batch));
+        }
+    }
+
+    private void flush(PendingBatch batch) {
+        List<String> invoiceGuids = new ArrayList<>(batch.futures().keySet());
+        InvoiceResult batchResult;
+        try {
+            log.info("[SignBatch] store={} signing {} invoices", batch.key().storeId(), invoiceGuids.size());
+            batchResult = providerRegistry.getByProviderId(batch.key().providerId())
+                    .signInvoiceBatchByHsm(batch.key().storeId(), invoiceGuids);
+        } catch (Exception e) {
+            log.error("[SignBatch] store={} batch of {} failed: {}",
+                    batch.key().storeId(), invoiceGuids.size(), e.getMessage(), e);
+            batchResult = InvoiceResult.error("Lỗi ký lô hóa đơn: " + e.getMessage());
+        }
+
+        Map<String, InvoiceResult> byGuid = new HashMap<>();
+        if (batchResult.getItemResults() != null) {
+            for (InvoiceResult item : batchResult.getItemResults()) {
+                if (item.getInvoiceGuid() != null) {
+                    byGuid.put(item.getInvoiceGuid().toString(), item);
+                }
+            }
+        }
+        for (Map.Entry<String, List<CompletableFuture<InvoiceResult>>> entry : batch.futures().entrySet()) {
+            InvoiceResult result = byGuid.get(entry.getKey());
+            if (result == null) {
+                result = missingItemResult(batch, entry.getKey(), batchResult);
+            }
+            InvoiceResult itemResult = result;
+            entry.getValue().forEach(future -> future.complete(itemResult));
+        }
+    }
+
+    /**
+     * Lệnh ký lô lỗi (không có kết quả riêng hóa đơn nào) → hóa đơn nhận lỗi chung của lô.
+     * Lệnh đã chạy nhưng thiếu kết quả của hóa đơn → không rõ đã ký hay chưa: báo lỗi thì job retry
+     * ký lại hóa đơn có thể đã ký, nên trả thành công không kèm dữ liệu ký và để poll trạng thái xác nhận.
+     */
+    private static InvoiceResult missingItemResult(PendingBatch batch, String invoiceGuid, InvoiceResult batchResult) {
+        if (!batchResult.isSuccess() && batchResult.getItemResults() == null) {
+            return batchResult;
+        }
+        log.warn("[SignBatch] store={} no item result for invoice {}, resolving by status poll",
+                batch.key().storeId(), invoiceGuid);
+        return InvoiceResult.builder()
+                .success(true)
+                .message("Provider chưa trả kết quả ký, chờ tra cứu trạng thái")
+                .build();
+    }
+
+    private static String normalize(String invoiceGuid) {
+        return invoiceGuid.trim().toLowerCase(Locale.ROOT);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        timer.shutdownNow();
+        // Gửi nốt các lô đang chờ để job không bị treo tới khi hết lease
+        pending.keySet().forEach(key -> {
+            PendingBatch batch = pending.remove(key);
+            if (batch != null) {
+                executor.execute(() -> flush(batch));
+            }
+        });
+        executor.shutdown();
+    }
+
+    private record BatchKey(String providerId, String storeId) {
+    }
+
+    // Chỉ được sửa bên trong pending.compute nên không cần đồng bộ thêm
+    private static final class PendingBatch {
+
+        private final BatchKey key;
+        private final Map<String, List<CompletableFuture<InvoiceResult>>> futures = new LinkedHashMap<>();
+
+        PendingBatch(BatchKey key) {
+            this.key = key;
+        }
+
+        BatchKey key() {
+            return key;
+        }
+
+        Map<String, List<CompletableFuture<InvoiceResult>>> futures() {
+            return futures;
+        }
+
+        // Cùng hóa đơn bị enqueue nhiều lần thì chỉ ký một lần
+        void add(String invoiceGuid, CompletableFuture<InvoiceResult> future) {
+            futures.computeIfAbsent(invoiceGuid, guid -> new ArrayList<>(1)).add(future);
+        }
+
+        int size() {
+            return futures.size();
+        }
+    }
+}
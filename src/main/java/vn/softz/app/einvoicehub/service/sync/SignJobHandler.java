@@ -0,0 +1,71 @@
+package vn.softz.app.einvoicehub.service.sync;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import vn.softz.app.einvoicehub.domain.entity.EinvInvoiceEntity;
+import vn.softz.app.einvoicehub.domain.entity.EinvSyncQueueEntity;
+import vn.softz.app.einvoicehub.domain.repository.EinvInvoiceRepository;
+import vn.softz.app.einvoicehub.domain.repository.EinvInvoiceStatusPollRepository;
+import vn.softz.app.einvoicehub.provider.model.InvoiceResult;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Job SIGN: ký HSM hóa đơn đã tạo trên provider.
+ * Không gọi provider trực tiếp mà đưa vào SignBatchCoalescer để ký theo lô cùng các job SIGN
+ * khác của store; job chạy trên virtual thread nên chờ kết quả lô không tốn platform thread.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SignJobHandler implements SyncJobHandler {
+
+    private static final String SYNC_SIGN = "SIGN";
+
+    private final EinvInvoiceRepository invoiceRepository;
+    private final SignBatchCoalescer coalescer;
+    private final EinvInvoiceStatusPollRepository statusPollRepository;
+    private final StatusPollProperties statusPollProperties;
+
+    @Override
+    public String getSyncType() {
+        return SYNC_SIGN;
+    }
+
+    @Override
+    public SyncJobResult handle(EinvSyncQueueEntity entry) {
+        EinvInvoiceEntity invoice = invoiceRepository.findById(entry.getInvoiceId()).orElse(null);
+        if (invoice == null) {
+            return SyncJobResult.failure("INVOICE_NOT_FOUND", "Invoice not found: " + entry.getInvoiceId());
+        }
+        String invoiceGuid = invoice.getProviderInvoiceId();
+        if (invoiceGuid == null || invoiceGuid.isBlank()) {
+            return SyncJobResult.failure("PROVIDER_INVOICE_ID_MISSING",
+                    "Invoice " + invoice.getId() + " has not been created on provider");
+        }
+
+        String providerId = entry.getProviderId() != null ? entry.getProviderId() : invoice.getProviderId();
+        InvoiceResult result = coalescer.submit(providerId, invoice.getStoreId(), invoiceGuid).join();
+
+        if (!result.isSuccess()) {
+            log.warn("[SignJob] invoiceId={} guid={} sign failed: {}", invoice.getId(), invoiceGuid, result.getMessage());
+            return SyncJobResult.failure("SIGN_FAILED", result.getMessage());
+        }
+
+        // Lưu kết quả ký của từng hóa đơn trước khi poll trạng thái
+        invoiceRepository.updateSignResult(invoice.getId(),
+                result.getInvoiceNo(),
+                result.getTaxAuthorityCode(),
+                result.getInvoiceReferenceCode(),
+                result.getSignedDate() != null
+                        ? LocalDateTime.ofInstant(result.getSignedDate(), ZoneId.systemDefault())
+                        : null);
+
+        // Mã CQT trả về bất đồng bộ → đưa hóa đơn vào lịch poll trạng thái
+        statusPollRepository.schedule(invoice.getId(),
+                LocalDateTime.now().plus(statusPollProperties.getInitialDelay()));
+        return SyncJobResult.success(null);
+    }
+}
@@ -0,0 +1,39 @@
+package vn.softz.app.einvoicehub.service.sync;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Set;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.status-poll")
+public class StatusPollProperties {
+
+    private boolean enabled = true;
+
+    private long pollIntervalMs = 2000;
+
+    // Số hóa đơn tối đa claim trong một lần poll
+    private int batchSize = 200;
+
+    // Số lời gọi trạng thái đồng thời tối đa tới mỗi provider (trên một node)
+    private int maxConcurrentPerProvider = 32;
+
+    // Chu kỳ poll: initialDelay * multiplier^lần_poll, tối đa maxInterval, ± jitter
+    private Duration initialDelay = Duration.ofSeconds(15);
+    private double multiplier = 2.0;
+    private Duration maxInterval = Duration.ofMinutes(30);
+    private double jitter = 0.2;
+
+    // Hết số lần poll mà vẫn chưa có mã CQT thì dừng
+    private int maxAttempts = 30;
+
+    // Giữ hóa đơn đã claim trong khoảng này, node chết thì hóa đơn tự đến hạn lại
+    private Duration claimLease = Duration.ofMinutes(2);
+
+    // Trạng thái Hub kết thúc, không cần chờ mã CQT nữa (3: Đã hủy, 4: Đã xóa, 12: Không sử dụng)
+    private Set<Integer> settledStatusIds = Set.of(3, 4, 12);
+}
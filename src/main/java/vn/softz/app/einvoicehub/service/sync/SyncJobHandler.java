@@ -0,0 +1,17 @@
+package vn.softz.app.einvoicehub.service.sync;
+
+import vn.softz.app.einvoicehub.domain.entity.EinvSyncQueueEntity;
+
+/**
+ * Xử lý một loại sync của einv_sync_queue (SUBMIT | SIGN | GET_STATUS | GET_INVOICE).
+ * Dispatcher chỉ claim các loại sync có handler, mỗi job chạy trên một virtual thread
+ * nên handler được phép gọi blocking I/O (DB, SOAP...).
+ */
+public interface SyncJobHandler {
+
+    String getSyncType();
+
+    /**Kết quả được dispatcher ghi lại qua markAsSuccess / markAsFailed.
+     * Exception ném ra được coi như failure và tính một lần retry.*/
+    SyncJobResult handle(EinvSyncQueueEntity entry);
+}
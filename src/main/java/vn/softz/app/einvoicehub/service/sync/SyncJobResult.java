@@ -0,0 +1,22 @@
+package vn.softz.app.einvoicehub.service.sync;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class SyncJobResult {
+
+    private final boolean success;
+    private final String cqtMessageId;
+    private final String errorCode;
+    private final String errorMessage;
+
+    public static SyncJobResult success(String cqtMessageId) {
+        return new SyncJobResult(true, cqtMessageId, null, null);
+    }
+
+    public static SyncJobResult failure(String errorCode, String errorMessage) {
+        return new SyncJobResult(false, null, errorCode, errorMessage);
+    }
+}
@@ -0,0 +1,155 @@
+package vn.softz.app.einvoicehub.service.sync;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import vn.softz.app.einvoicehub.domain.entity.EinvSyncQueueEntity;
+import vn.softz.app.einvoicehub.service.core.EinvSyncQueueService;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Worker tiêu thụ einv_sync_queue, chạy trên mọi pod.
+ *  - Claim batch bằng SELECT ... FOR UPDATE SKIP LOCKED + lease (locked_by / locked_until)
+ *    nên các replica không lấy trùng entry; thêm pod là tăng throughput tuyến tính.
+ *  - Mỗi job chạy trên một virtual thread, giới hạn bởi maxInFlight.
+ *  - Lease được gia hạn định kỳ; pod chết thì lease hết hạn và node khác claim lại.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "app.sync-queue", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class SyncQueueDispatcher {
+
+    private final EinvSyncQueueService syncQueueService;
+    private final SyncQueueProperties properties;
+    private final List<SyncJobHandler> handlers;
+
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    private Map<String, SyncJobHandler> handlerMap;
+    private ExecutorService executor;
+    private Semaphore permits;
+    private String nodeId;
+    private volatile boolean running;
+
+    @PostConstruct
+    void start() {
+        handlerMap = handlers.stream()
+                .collect(Collectors.toMap(SyncJobHandler::getSyncType, Function.identity()));
+        nodeId = resolveNodeId();
+        permits = new Semaphore(properties.getMaxInFlight());
+        executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("sync-job-", 0).factory());
+        running = true;
+        log.info("[SyncDispatcher] started node={}, syncTypes={}, batchSize={}, maxInFlight={}, lease={}",
+                nodeId, handlerMap.keySet(), properties.getBatchSize(),
+                properties.getMaxInFlight(), properties.getLease());
+    }
+
+    @Scheduled(fixedDelayString = "${app.sync-queue.poll-interval-ms:1000}")
+    public void poll() {
+        if (!running || handlerMap.isEmpty()) {
+            return;
+        }
+        // Claim liên tục khi còn slot và queue còn đầy batch, không chờ chu kỳ poll kế tiếp
+        while (running) {
+            int capacity = Math.min(properties.getBatchSize(), permits.availablePermits());
+            if (capacity <= 0) {
+                return;
+            }
+
+            List<EinvSyncQueueEntity> claimed;
+            try {
+                claimed = syncQueueService.claimBatch(handlerMap.keySet(), nodeId, capacity, properties.getLease());
+            } catch (Exception e) {
+                log.error("[SyncDispatcher] claim failed: {}", e.getMessage(), e);
+                return;
+            }
+
+            for (EinvSyncQueueEntity entry : claimed) {
+                // Chỉ thread poll acquire nên luôn đủ permit cho số entry vừa claim
+                permits.acquireUninterruptibly();
+                inFlight.add(entry.getId());
+                executor.execute(() -> runJob(entry));
+            }
+
+            if (claimed.size() < capacity) {
+                return;
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.sync-queue.lease-renew-interval-ms:30000}")
+    public void renewLeases() {
+        if (inFlight.isEmpty()) {
+            return;
+        }
+        try {
+            int renewed = syncQueueService.renewLeases(List.copyOf(inFlight), nodeId, properties.getLease());
+            log.debug("[SyncDispatcher] renewed {}/{} leases", renewed, inFlight.size());
+        } catch (Exception e) {
+            log.warn("[SyncDispatcher] lease renewal failed: {}", e.getMessage());
+        }
+    }
+
+    private void runJob(EinvSyncQueueEntity entry) {
+        String queueId = entry.getId();
+        try {
+            SyncJobResult result = handlerMap.get(entry.getSyncType()).handle(entry);
+            if (result.isSuccess()) {
+                syncQueueService.markAsSuccess(queueId, nodeId, result.getCqtMessageId());
+            } else {
+                syncQueueService.markAsFailed(queueId, nodeId, result.getErrorMessage(), result.getErrorCode());
+            }
+        } catch (Exception e) {
+            log.error("[SyncDispatcher] job {} ({}) failed: {}", queueId, entry.getSyncType(), e.getMessage(), e);
+            try {
+                syncQueueService.markAsFailed(queueId, nodeId, e.getMessage(), "DISPATCH_ERROR");
+            } catch (Exception markEx) {
+                // Để lease hết hạn, node khác sẽ claim lại
+                log.error("[SyncDispatcher] cannot mark {} as failed: {}", queueId, markEx.getMessage());
+            }
+        } finally {
+            inFlight.remove(queueId);
+            permits.release();
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        running = false;
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(properties.getShutdownTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+                log.warn("[SyncDispatcher] {} jobs still running at shutdown, leases will expire", inFlight.size());
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private String resolveNodeId() {
+        String configured = properties.getNodeId();
+        if (configured != null && !configured.isBlank()) {
+            return configured;
+        }
+        String host = System.getenv("HOSTNAME");
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+        return (host != null && !host.isBlank() ? host : "node") + "-" + suffix;
+    }
+}
@@ -0,0 +1,46 @@
+package vn.softz.app.einvoicehub.service.sync;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.sync-queue")
+public class SyncQueueProperties {
+
+    private boolean enabled = true;
+
+    // Định danh node giữ lease, mặc định lấy HOSTNAME (tên pod trên k8s)
+    private String nodeId;
+
+    private long pollIntervalMs = 1000;
+
+    // Số entry tối đa claim trong một lần poll
+    private int batchSize = 20;
+
+    // Số job tối đa chạy đồng thời trên một node
+    private int maxInFlight = 200;
+
+    private Duration lease = Duration.ofMinutes(2);
+
+    // Chu kỳ gia hạn lease, phải nhỏ hơn lease
+    private long leaseRenewIntervalMs = 30000;
+
+    private Duration shutdownTimeout = Duration.ofSeconds(20);
+
+    private SignBatch signBatch = new SignBatch();
+
+    // Gom job SIGN cùng store thành một lệnh ký lô (BKAV CmdType 206)
+    @Data
+    public static class SignBatch {
+
+        // Thời gian tối đa chờ gom thêm hóa đơn kể từ job đầu tiên của lô
+        private long windowMs = 50;
+
+        // Đủ số hóa đơn thì gửi ngay, không chờ hết window
+        private int maxSize = 100;
+    }
+}
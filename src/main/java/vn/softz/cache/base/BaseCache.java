@@ -1,5 +1,6 @@
 package vn.softz.cache.base;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import org.slf4j.Logger;
@@ -7,44 +8,71 @@ import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.ParameterizedType;
 import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 @Getter
 @Setter
 public abstract class BaseCache<T extends BaseCacheData> implements ICache<T> {
     protected static final String SEPARATOR_KEY = "@";
+    protected static final long DEFAULT_MAXIMUM_SIZE = 10_000;
     protected final Logger log = LoggerFactory.getLogger(getClass());
     protected ICacheInstance<T> cacheInstance;
     protected final boolean isMemoryCache;
     protected final String prefix;
+    // Số entry tối đa giữ trong bộ nhớ (Caffeine / near-cache L1), chốt trước khi tạo cacheInstance
+    protected final long maximumSize;
     private Duration duration;
     private boolean isLog;
     private Class<T> type;
+    // 0 = tắt; vd 0.8: entry được nạp lại nền khi đã sống quá 80% duration
+    private double refreshAheadRatio;
+    // Refresh-ahead lỗi hoặc không có dữ liệu: key đó chờ khoảng này mới thử nạp lại nền
+    private Duration refreshAheadBackoff = Duration.ofSeconds(30);
+    @Getter(AccessLevel.NONE)
+    private final Map<String, Long> refreshBackoffUntil = new ConcurrentHashMap<>();
+    @Getter(AccessLevel.NONE)
+    private final Map<String, CompletableFuture<Optional<T>>> inFlightLoads = new ConcurrentHashMap<>();
+    @Getter(AccessLevel.NONE)
+    private volatile CacheStatsRecorder statsRecorder = CacheStatsRecorder.NOOP;
+    // Instance (Caffeine) báo eviction qua view này nên recorder set sau khi khởi tạo instance vẫn nhận được
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    protected final CacheStatsRecorder instanceStats = new CacheStatsRecorder() {
+        @Override
+        public void recordEvictions(int count) {
+            statsRecorder.recordEvictions(count);
+        }
+    };
 
     @SuppressWarnings("unchecked")
     public BaseCache() {
         isMemoryCache = true;
+        maximumSize = DEFAULT_MAXIMUM_SIZE;
         prefix = type.getSimpleName();
         type = (Class<T>) ((ParameterizedType) getClass().getGenericSuperclass()).getActualTypeArguments()[0];
     }
 
     public BaseCache(Class<T> type, Duration duration, boolean isLog, boolean isMemoryCache) {
-        this.type = type;
-        this.prefix = type.getSimpleName();
-        this.duration = duration;
-        this.isLog = isLog;
-        this.isMemoryCache = isMemoryCache;
-        this.cacheInstance = initializeCacheInstance();
+        this(type, null, duration, isLog, isMemoryCache, DEFAULT_MAXIMUM_SIZE);
     }
 
     public BaseCache(Class<T> type, String prefix, Duration duration, boolean isLog, boolean isMemoryCache) {
+        this(type, prefix, duration, isLog, isMemoryCache, DEFAULT_MAXIMUM_SIZE);
+    }
+
+    /**@param maximumSize số entry tối đa trong bộ nhớ, &lt;= 0 dùng DEFAULT_MAXIMUM_SIZE*/
+    public BaseCache(Class<T> type, String prefix, Duration duration, boolean isLog, boolean isMemoryCache,
+                     long maximumSize) {
         this.type = type;
         this.prefix = prefix == null ? type.getSimpleName() : prefix;
         this.duration = duration;
         this.isLog = isLog;
         this.isMemoryCache = isMemoryCache;
+        this.maximumSize = maximumSize > 0 ? maximumSize : DEFAULT_MAXIMUM_SIZE;
         this.cacheInstance = initializeCacheInstance();
     }
 
@@ -56,6 +84,21 @@ public abstract class BaseCache<T extends BaseCacheData> implements ICache<T> {
         this(type, duration, isLog, true);
     }
 
+    public void setStatsRecorder(CacheStatsRecorder statsRecorder) {
+        this.statsRecorder = statsRecorder == null ? CacheStatsRecorder.NOOP : statsRecorder;
+        this.statsRecorder.bindSize(this::estimatedSize);
+    }
+
+    // Gọi từ scrape metrics: chỉ đọc số đã có sẵn, không chờ I/O; null (NaN) khi instance không biết số entry của cache
+    private Long estimatedSize() {
+        ICacheInstance<T> instance = cacheInstance;
+        if (instance == null) {
+            return null;
+        }
+        OptionalLong size = instance.estimatedSize();
+        return size.isPresent() ? size.getAsLong() : null;
+    }
+
     private ICacheInstance<T> initializeCacheInstance() {
         return createCacheInstance();
     }
@@ -74,25 +117,92 @@ public abstract class BaseCache<T extends BaseCacheData> implements ICache<T> {
 
     @Override
     public CompletableFuture<Optional<T>> getAsync(String lid, String key) {
-        if (key == null || key.isEmpty() || "CacheName".equals(key) || key.startsWith(":") || key.endsWith(":")) {
+        if (!isValidKey(key)) {
             return CompletableFuture.completedFuture(Optional.empty());
         }
 
         return cacheInstance.getImplAsync(lid, key)
                 .thenCompose(instance -> {
                     if (instance.isEmpty()) {
-                        return loadFromDBAsync(lid, key)
-                                .thenCompose(dbInstance -> {
-                                    if (dbInstance.isPresent()) {
-                                        return addAsync(lid, dbInstance.get()).thenApply(v -> dbInstance);
-                                    }
-                                    return CompletableFuture.completedFuture(Optional.empty());
-                                });
+                        statsRecorder.recordMisses(1);
+                        return loadSingleFlight(lid, key);
                     }
+                    statsRecorder.recordHits(1);
+                    refreshAheadIfDue(lid, key, instance.get());
                     return CompletableFuture.completedFuture(instance);
                 });
     }
 
+    /**
+     * Các lời gọi miss cùng (lid, key) đồng thời dùng chung một lần loadFromDBAsync + addAsync,
+     * tránh dồn truy vấn xuống DB khi key hết hạn hoặc pod vừa khởi động.
+     */
+    private CompletableFuture<Optional<T>> loadSingleFlight(String lid, String key) {
+        String flightKey = lid + SEPARATOR_KEY + key;
+        CompletableFuture<Optional<T>> promise = new CompletableFuture<>();
+        CompletableFuture<Optional<T>> existing = inFlightLoads.putIfAbsent(flightKey, promise);
+        if (existing != null) {
+            return existing;
+        }
+
+        long start = System.nanoTime();
+        CompletableFuture<Optional<T>> load;
+        try {
+            load = loadFromDBAsync(lid, key)
+                    .thenCompose(dbInstance -> {
+                        if (dbInstance.isPresent()) {
+                            return addAsync(lid, dbInstance.get()).thenApply(v -> dbInstance);
+                        }
+                        return CompletableFuture.completedFuture(Optional.<T>empty());
+                    });
+        } catch (RuntimeException ex) {
+            load = CompletableFuture.failedFuture(ex);
+        }
+
+        load.whenComplete((value, ex) -> {
+            inFlightLoads.remove(flightKey, promise);
+            recordLoad(start, ex);
+            if (ex != null) {
+                promise.completeExceptionally(ex);
+            } else {
+                promise.complete(value);
+            }
+        });
+        return promise;
+    }
+
+    // Refresh-ahead: entry đã sống quá refreshAheadRatio * duration thì nạp lại nền, caller vẫn nhận giá trị hiện tại
+    private void refreshAheadIfDue(String lid, String key, T instance) {
+        if (refreshAheadRatio <= 0 || duration == null || instance.cacheUpdateAt == null) {
+            return;
+        }
+        long refreshAfterMillis = (long) (duration.toMillis() * refreshAheadRatio);
+        if (instance.cacheUpdateAt.plusMillis(refreshAfterMillis).isAfter(Instant.now())) {
+            return;
+        }
+        String flightKey = lid + SEPARATOR_KEY + key;
+        long now = System.currentTimeMillis();
+        Long backoffUntil = refreshBackoffUntil.get(flightKey);
+        if (backoffUntil != null) {
+            if (backoffUntil > now) {
+                return;
+            }
+            refreshBackoffUntil.remove(flightKey, backoffUntil);
+        }
+        loadSingleFlight(lid, key).whenComplete((value, ex) -> {
+            if (ex == null && value.isPresent()) {
+                return;
+            }
+            if (ex != null) {
+                log.warn("Refresh-ahead failed for {}: {}", key, ex.getMessage());
+            } else {
+                log.debug("Refresh-ahead found no data for {}, keeping cached value", key);
+            }
+            // Entry cũ vẫn mang cacheUpdateAt cũ: hoãn lần refresh kế tiếp, không nạp lại DB ở mỗi lần hit
+            refreshBackoffUntil.put(flightKey, System.currentTimeMillis() + refreshAheadBackoff.toMillis());
+        });
+    }
+
     @Override
     public Optional<T> getValueData(String lid, String key) {
         return getAsync(lid, key).join();
@@ -100,17 +210,81 @@ public abstract class BaseCache<T extends BaseCacheData> implements ICache<T> {
 
     @Override
     public CompletableFuture<List<T>> getAsync(String lid, String[] keys) {
-        List<CompletableFuture<T>> futures = Arrays.stream(keys)
-                .map(key -> getAsync(lid, key).thenApply(optional -> optional.orElse(null)))
-                .toList();
-
-        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
-                .thenApply(v -> futures.stream()
-                        .map(CompletableFuture::join) // This will get the T directly, or null if not present
+        return getManyAsync(lid, Arrays.asList(keys))
+                .thenApply(values -> Arrays.stream(keys)
+                        .map(values::get)
                         .filter(Objects::nonNull)
                         .collect(Collectors.toList()));
     }
 
+    /**
+     * Đọc nhiều key: một lượt getManyImplAsync cho cả lô, các key miss được nạp chung
+     * bằng loadFromDBAsync(lid, keys) rồi ghi lại cache. Key không có dữ liệu thì không có trong map.
+     */
+    @Override
+    public CompletableFuture<Map<String, T>> getManyAsync(String lid, Collection<String> keys) {
+        Set<String> validKeys = keys.stream()
+                .filter(this::isValidKey)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        if (validKeys.isEmpty()) {
+            return CompletableFuture.completedFuture(Collections.emptyMap());
+        }
+
+        return cacheInstance.getManyImplAsync(lid, validKeys)
+                .thenCompose(cached -> {
+                    cached.forEach((key, value) -> refreshAheadIfDue(lid, key, value));
+                    List<String> misses = validKeys.stream().filter(key -> !cached.containsKey(key)).toList();
+                    statsRecorder.recordHits(cached.size());
+                    statsRecorder.recordMisses(misses.size());
+                    if (misses.isEmpty()) {
+                        return CompletableFuture.completedFuture(cached);
+                    }
+                    return loadManyAsync(lid, misses).thenApply(loaded -> {
+                        Map<String, T> result = new LinkedHashMap<>(cached);
+                        result.putAll(loaded);
+                        return result;
+                    });
+                });
+    }
+
+    private CompletableFuture<Map<String, T>> loadManyAsync(String lid, List<String> keys) {
+        // Một key thì đi đường single-flight như getAsync
+        if (keys.size() == 1) {
+            String key = keys.get(0);
+            return loadSingleFlight(lid, key)
+                    .thenApply(value -> value.map(v -> Map.of(key, v)).orElse(Collections.emptyMap()));
+        }
+
+        long start = System.nanoTime();
+        CompletableFuture<List<T>> load;
+        try {
+            load = loadFromDBAsync(lid, keys);
+        } catch (RuntimeException ex) {
+            load = CompletableFuture.failedFuture(ex);
+        }
+        return load.whenComplete((values, ex) -> recordLoad(start, ex)).thenCompose(values -> {
+            Map<String, T> loaded = new LinkedHashMap<>();
+            values.forEach(value -> loaded.put(value.getKey(), value));
+            return CompletableFuture.allOf(loaded.values().stream()
+                            .map(value -> addAsync(lid, value))
+                            .toArray(CompletableFuture[]::new))
+                    .thenApply(v -> loaded);
+        });
+    }
+
+    private void recordLoad(long startNanos, Throwable error) {
+        long elapsed = System.nanoTime() - startNanos;
+        if (error != null) {
+            statsRecorder.recordLoadFailure(elapsed);
+        } else {
+            statsRecorder.recordLoadSuccess(elapsed);
+        }
+    }
+
+    private boolean isValidKey(String key) {
+        return key != null && !key.isEmpty() && !"CacheName".equals(key) && !key.startsWith(":") && !key.endsWith(":");
+    }
+
     @Override
     public boolean isCacheManagement() {
         return true;
@@ -157,6 +331,21 @@ public abstract class BaseCache<T extends BaseCacheData> implements ICache<T> {
         return CompletableFuture.completedFuture(Optional.empty());
     }
 
+    /**
+     * Nạp nhiều key từ DB cho getManyAsync. Mặc định gọi loadFromDBAsync(lid, key) từng key;
+     * cache nào nạp được cả lô bằng một truy vấn (IN ...) nên override.
+     */
+    protected CompletableFuture<List<T>> loadFromDBAsync(String lid, Collection<String> keys) {
+        List<CompletableFuture<Optional<T>>> futures = keys.stream()
+                .map(key -> loadFromDBAsync(lid, key))
+                .toList();
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                .thenApply(v -> futures.stream()
+                        .map(CompletableFuture::join)
+                        .flatMap(Optional::stream)
+                        .collect(Collectors.toList()));
+    }
+
     protected CompletableFuture<List<T>> loadFromDBAsync(String lid) {
         return CompletableFuture.completedFuture(Collections.emptyList());
     }
@@ -0,0 +1,24 @@
+package vn.softz.cache.base;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.cache")
+public class CacheProperties {
+
+    // Số entry tối đa giữ trong bộ nhớ (Caffeine / near-cache L1) khi cache không cấu hình riêng
+    private long defaultMaximumSize = 10_000;
+
+    // Theo tên cache (prefix), vd EinvMapping: 20000
+    private Map<String, Long> maximumSize = new HashMap<>();
+
+    public long maximumSizeOf(String cacheName) {
+        return maximumSize.getOrDefault(cacheName, defaultMaximumSize);
+    }
+}
@@ -0,0 +1,32 @@
+package vn.softz.cache.base;
+
+import java.util.function.Supplier;
+
+/**
+ * Điểm ghi thống kê của một cache (hit / miss / load / eviction / size).
+ * Mặc định NOOP; BaseCache.setStatsRecorder để gắn MicrometerCacheStatsRecorder hoặc recorder khác.
+ */
+public interface CacheStatsRecorder {
+
+    CacheStatsRecorder NOOP = new CacheStatsRecorder() {
+    };
+
+    default void recordHits(int count) {
+    }
+
+    default void recordMisses(int count) {
+    }
+
+    default void recordLoadSuccess(long loadNanos) {
+    }
+
+    default void recordLoadFailure(long loadNanos) {
+    }
+
+    default void recordEvictions(int count) {
+    }
+
+    /**Gắn nguồn số entry ước lượng của cache, gọi một lần khi recorder được set vào cache.*/
+    default void bindSize(Supplier<Long> estimatedSize) {
+    }
+}
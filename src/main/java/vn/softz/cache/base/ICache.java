@@ -1,6 +1,7 @@
 package vn.softz.cache.base;
 
 import java.time.Duration;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -13,6 +14,7 @@ interface ICache<T extends BaseCacheData> {
     Optional<T> getValueData(String lid, String key);
     CompletableFuture<Optional<T>> getAsync(String lid, String key);
     CompletableFuture<List<T>> getAsync(String lid, String[] keys);
+    CompletableFuture<Map<String, T>> getManyAsync(String lid, Collection<String> keys);
     CompletableFuture<Boolean> removeAsync(String lid, String key);
     CompletableFuture<Void> reloadAsync(String lid, String key);
     void reloadAsync(String lid);
@@ -1,9 +1,12 @@
 package vn.softz.cache.base;
 
 import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 
@@ -17,6 +20,14 @@ public interface ICacheInstance<T extends BaseCacheData> {
 
     CompletableFuture<Long> countAsync();
 
+    /**
+     * Số entry ước lượng của riêng cache này, trả về ngay không chờ I/O (dùng cho metrics).
+     * Rỗng khi instance không đếm được mà không phải đọc cả DB.
+     */
+    default OptionalLong estimatedSize() {
+        return OptionalLong.empty();
+    }
+
     CompletableFuture<Void> clearAsync(String lid);
 
     CompletableFuture<List<T>> findAsync(String lid, String keyPattern);
@@ -29,5 +40,20 @@ public interface ICacheInstance<T extends BaseCacheData> {
 
     CompletableFuture<Optional<T>> getImplAsync(String lid, String key);
 
+    /**
+     * Đọc nhiều key trong một lượt; key không có trong cache thì không có trong map kết quả.
+     * Mặc định gọi getImplAsync từng key, instance có lệnh đọc hàng loạt (MGET, getAllPresent) nên override.
+     */
+    default CompletableFuture<Map<String, T>> getManyImplAsync(String lid, Collection<String> keys) {
+        Map<String, CompletableFuture<Optional<T>>> futures = new LinkedHashMap<>();
+        keys.forEach(key -> futures.put(key, getImplAsync(lid, key)));
+        return CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0]))
+                .thenApply(v -> {
+                    Map<String, T> result = new LinkedHashMap<>();
+                    futures.forEach((key, future) -> future.join().ifPresent(value -> result.put(key, value)));
+                    return result;
+                });
+    }
+
     CompletableFuture<Boolean> removeImplAsync(String lid, String key);
 }
\ No newline at end of file
@@ -0,0 +1,89 @@
+package vn.softz.cache.base;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Ghi thống kê cache vào MeterRegistry (Prometheus), tag cache = prefix của cache:
+ *  - cache.gets{result=hit|miss}
+ *  - cache.loads{result=success|failure}: timer có histogram thời gian load từ DB
+ *  - cache.evictions: entry bị Caffeine đẩy ra do size / hết hạn
+ *  - cache.size: số entry ước lượng
+ */
+public class MicrometerCacheStatsRecorder implements CacheStatsRecorder {
+
+    private final MeterRegistry meterRegistry;
+    private final String cacheName;
+    private final Counter hits;
+    private final Counter misses;
+    private final Timer loadSuccess;
+    private final Timer loadFailure;
+    private final Counter evictions;
+
+    public MicrometerCacheStatsRecorder(MeterRegistry meterRegistry, String cacheName) {
+        this.meterRegistry = meterRegistry;
+        this.cacheName = cacheName;
+        this.hits = Counter.builder("cache.gets").tag("cache", cacheName).tag("result", "hit")
+                .description("Cache lookups that found a value")
+                .register(meterRegistry);
+        this.misses = Counter.builder("cache.gets").tag("cache", cacheName).tag("result", "miss")
+                .description("Cache lookups that had to load")
+                .register(meterRegistry);
+        this.loadSuccess = loadTimer("success");
+        this.loadFailure = loadTimer("failure");
+        this.evictions = Counter.builder("cache.evictions").tag("cache", cacheName)
+                .description("Entries evicted by size or expiry")
+                .register(meterRegistry);
+    }
+
+    private Timer loadTimer(String result) {
+        return Timer.builder("cache.loads")
+                .tag("cache", cacheName)
+                .tag("result", result)
+                .description("Time spent loading cache entries from the source")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void recordHits(int count) {
+        hits.increment(count);
+    }
+
+    @Override
+    public void recordMisses(int count) {
+        misses.increment(count);
+    }
+
+    @Override
+    public void recordLoadSuccess(long loadNanos) {
+        loadSuccess.record(loadNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void recordLoadFailure(long loadNanos) {
+        loadFailure.record(loadNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void recordEvictions(int count) {
+        evictions.increment(count);
+    }
+
+    @Override
+    public void bindSize(Supplier<Long> estimatedSize) {
+        Gauge.builder("cache.size", estimatedSize, size -> {
+                    Long value = size.get();
+                    return value == null ? Double.NaN : value;
+                })
+                .tag("cache", cacheName)
+                .description("Estimated number of entries")
+                .strongReference(true)
+                .register(meterRegistry);
+    }
+}
@@ -12,6 +12,11 @@ public class InMemoryCache<T extends BaseCacheData> extends BaseCache<T> {
         reloadAsync("Initial load for " + type.getSimpleName());
     }
 
+    protected InMemoryCache(Class<T> type, Duration duration, boolean isLog, long maximumSize) {
+        super(type, null, duration, isLog, true, maximumSize);
+        reloadAsync("Initial load for " + type.getSimpleName());
+    }
+
     protected InMemoryCache(Class<T> type) {
         super(type, Duration.ofMinutes(60), false);
         reloadAsync("Initial load for " + type.getSimpleName());
@@ -19,6 +24,6 @@ public class InMemoryCache<T extends BaseCacheData> extends BaseCache<T> {
 
     @Override
     protected ICacheInstance<T> createCacheInstance() {
-        return new MemoryCacheInstance<T>(getDuration());
+        return new MemoryCacheInstance<T>(getDuration(), maximumSize, instanceStats);
     }
 }
@@ -0,0 +1,124 @@
+package vn.softz.cache.memory;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import vn.softz.cache.base.CacheStatsRecorder;
+import vn.softz.cache.redis.RedisCacheInvalidationBus;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Cache key String → snapshot chỉ nằm trong process (Caffeine), cho dữ liệu cấu hình tra trên hot path
+ * mà không cần tầng Redis: TTL + giới hạn số entry, thống kê qua CacheStatsRecorder.
+ *  - invalidate / invalidateAll: bỏ ngay và bỏ lại sau commit, tránh request song song nạp lại dữ liệu cũ
+ *    trước khi transaction commit.
+ *  - Có invalidationBus: sau commit phát invalidate để pod khác bỏ bản của mình; TTL là lưới an toàn
+ *    khi message pub/sub bị mất.
+ */
+public class LocalCache<V> {
+
+    private final String cacheName;
+    private final Cache<String, V> cache;
+    private final CacheStatsRecorder statsRecorder;
+    private final RedisCacheInvalidationBus invalidationBus;
+
+    public LocalCache(String cacheName, Duration ttl, long maximumSize, CacheStatsRecorder statsRecorder,
+                      RedisCacheInvalidationBus invalidationBus) {
+        this.cacheName = cacheName;
+        this.statsRecorder = statsRecorder;
+        this.invalidationBus = invalidationBus;
+        this.cache = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maximumSize > 0L ? maximumSize : MemoryCacheInstance.DEFAULT_MAXIMUM_SIZE)
+                .<String, V>removalListener((key, value, cause) -> {
+                    if (cause.wasEvicted()) {
+                        statsRecorder.recordEvictions(1);
+                    }
+                })
+                .build();
+        statsRecorder.bindSize(cache::estimatedSize);
+        if (invalidationBus != null) {
+            invalidationBus.subscribe(cacheName, this::evictLocal);
+        }
+    }
+
+    /**Cache chỉ của pod này (dữ liệu không đổi sau khi ghi, miss vẫn đúng).*/
+    public LocalCache(String cacheName, Duration ttl, long maximumSize, CacheStatsRecorder statsRecorder) {
+        this(cacheName, ttl, maximumSize, statsRecorder, null);
+    }
+
+    public V getIfPresent(String key) {
+        V value = cache.getIfPresent(key);
+        if (value != null) {
+            statsRecorder.recordHits(1);
+        } else {
+            statsRecorder.recordMisses(1);
+        }
+        return value;
+    }
+
+    /**Miss thì nạp bằng loader (một lần cho mỗi key); loader ném lỗi thì không cache gì.*/
+    public V get(String key, Function<String, V> loader) {
+        V value = cache.getIfPresent(key);
+        if (value != null) {
+            statsRecorder.recordHits(1);
+            return value;
+        }
+        statsRecorder.recordMisses(1);
+        return cache.get(key, k -> {
+            long start = System.nanoTime();
+            try {
+                V loaded = loader.apply(k);
+                statsRecorder.recordLoadSuccess(System.nanoTime() - start);
+                return loaded;
+            } catch (RuntimeException e) {
+                statsRecorder.recordLoadFailure(System.nanoTime() - start);
+                throw e;
+            }
+        });
+    }
+
+    public void put(String key, V value) {
+        cache.put(key, value);
+    }
+
+    public void invalidate(String key) {
+        evictAfterCommit(key);
+    }
+
+    public void invalidateAll() {
+        evictAfterCommit(null);
+    }
+
+    private void evictLocal(String key) {
+        if (key == null) {
+            cache.invalidateAll();
+        } else {
+            cache.invalidate(key);
+        }
+    }
+
+    private void evictAfterCommit(String key) {
+        evictLocal(key);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictLocal(key);
+                    publish(key);
+                }
+            });
+        } else {
+            publish(key);
+        }
+    }
+
+    private void publish(String key) {
+        if (invalidationBus != null) {
+            invalidationBus.publish(cacheName, key);
+        }
+    }
+}
@@ -1,29 +1,32 @@
 package vn.softz.cache.memory;
 
 import com.github.benmanes.caffeine.cache.*;
-import org.springframework.beans.factory.annotation.Value;
 import vn.softz.cache.base.BaseCacheData;
+import vn.softz.cache.base.CacheStatsRecorder;
 import vn.softz.cache.base.ICacheInstance;
 
 import java.time.Duration;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 
-class MemoryCacheInstance<T extends BaseCacheData> implements ICacheInstance<T> {
-    @Value("spring.cache.caffeine.maximum-size:10000")
-    private long maximumCacheSize;
+public class MemoryCacheInstance<T extends BaseCacheData> implements ICacheInstance<T> {
+    public static final long DEFAULT_MAXIMUM_SIZE = 10_000;
+
     private final LoadingCache<String, T> cache;
     private final ConcurrentHashMap<String, Duration> customExpirations;
     private final Duration defaultExpire;
-    public MemoryCacheInstance(Duration duration, com.github.benmanes.caffeine.cache.Ticker ticker) {
+    public MemoryCacheInstance(Duration duration, long maximumSize, com.github.benmanes.caffeine.cache.Ticker ticker,
+                               CacheStatsRecorder statsRecorder) {
         this.defaultExpire = duration;
         this.customExpirations = new ConcurrentHashMap<>();
         this.cache = Caffeine.newBuilder()
-                .maximumSize(maximumCacheSize > 0L ? maximumCacheSize : 10000)
+                .maximumSize(maximumSize > 0L ? maximumSize : DEFAULT_MAXIMUM_SIZE)
                 .ticker(ticker)
                 .expireAfter(new Expiry<String, T>() {
                     @Override
@@ -45,10 +48,21 @@ class MemoryCacheInstance<T extends BaseCacheData> implements ICacheInstance<T>
                     if (key != null) {
                         customExpirations.remove(key);
                     }
+                    if (cause.wasEvicted()) {
+                        statsRecorder.recordEvictions(1);
+                    }
                 })
                 .build(key -> null);
     }
 
+    public MemoryCacheInstance(Duration duration, com.github.benmanes.caffeine.cache.Ticker ticker) {
+        this(duration, DEFAULT_MAXIMUM_SIZE, ticker, CacheStatsRecorder.NOOP);
+    }
+
+    public MemoryCacheInstance(Duration duration, long maximumSize, CacheStatsRecorder statsRecorder) {
+        this(duration, maximumSize, Ticker.systemTicker(), statsRecorder);
+    }
+
     public MemoryCacheInstance(Duration duration) {
         this(duration, Ticker.systemTicker());
     }
@@ -65,6 +79,11 @@ class MemoryCacheInstance<T extends BaseCacheData> implements ICacheInstance<T>
         return CompletableFuture.completedFuture(cache.estimatedSize());
     }
 
+    @Override
+    public OptionalLong estimatedSize() {
+        return OptionalLong.of(cache.estimatedSize());
+    }
+
     @Override
     public CompletableFuture<Void> clearAsync(String lid) {
         cache.invalidateAll();
@@ -114,6 +133,11 @@ class MemoryCacheInstance<T extends BaseCacheData> implements ICacheInstance<T>
         return CompletableFuture.completedFuture(Optional.ofNullable(cache.get(key)));
     }
 
+    @Override
+    public CompletableFuture<Map<String, T>> getManyImplAsync(String lid, Collection<String> keys) {
+        return CompletableFuture.completedFuture(cache.getAllPresent(keys));
+    }
+
     @Override
     public CompletableFuture<Boolean> removeImplAsync(String lid, String key) {
         cache.invalidate(key);
@@ -0,0 +1,14 @@
+package vn.softz.cache.redis;
+
+import java.io.IOException;
+
+/**
+ * Mã hóa value của một RedisCache thành byte[] và giải mã thẳng về kiểu T
+ * (không qua LinkedHashMap rồi convertValue). Bật bằng RedisCache.useValueCodec.
+ */
+public interface CacheValueCodec<T> {
+
+    byte[] encode(T value) throws IOException;
+
+    T decode(byte[] bytes) throws IOException;
+}
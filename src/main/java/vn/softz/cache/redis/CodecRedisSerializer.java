@@ -0,0 +1,117 @@
+package vn.softz.cache.redis;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * RedisSerializer cho value của cache dùng CacheValueCodec.
+ * Byte đầu là định dạng: 0 = codec thô, 1 = codec + deflate (khi payload vượt compressThreshold).
+ * Value không giải mã được (dữ liệu ghi bằng serializer cũ) được coi là miss để cache nạp lại.
+ */
+@Slf4j
+class CodecRedisSerializer<T> implements RedisSerializer<Object> {
+
+    private static final byte FORMAT_PLAIN = 0;
+    private static final byte FORMAT_DEFLATE = 1;
+
+    private final CacheValueCodec<T> codec;
+    private final Class<T> type;
+    private final int compressThreshold;
+
+    /**@param compressThreshold số byte tối thiểu để nén; &lt;= 0 là không nén*/
+    CodecRedisSerializer(CacheValueCodec<T> codec, Class<T> type, int compressThreshold) {
+        this.codec = codec;
+        this.type = type;
+        this.compressThreshold = compressThreshold;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return null;
+        }
+        byte[] payload;
+        try {
+            payload = codec.encode(type.cast(value));
+        } catch (Exception e) {
+            throw new SerializationException("Cannot encode " + type.getSimpleName(), e);
+        }
+        if (compressThreshold > 0 && payload.length >= compressThreshold) {
+            byte[] compressed = deflate(payload);
+            if (compressed.length < payload.length) {
+                return withFormat(FORMAT_DEFLATE, compressed);
+            }
+        }
+        return withFormat(FORMAT_PLAIN, payload);
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        try {
+            byte[] payload = Arrays.copyOfRange(bytes, 1, bytes.length);
+            return switch (bytes[0]) {
+                case FORMAT_PLAIN -> codec.decode(payload);
+                case FORMAT_DEFLATE -> codec.decode(inflate(payload));
+                default -> {
+                    log.debug("Unknown cache value format {} for {}, treat as miss", bytes[0], type.getSimpleName());
+                    yield null;
+                }
+            };
+        } catch (Exception e) {
+            log.debug("Cannot decode cached {}, treat as miss: {}", type.getSimpleName(), e.getMessage());
+            return null;
+        }
+    }
+
+    private static byte[] withFormat(byte format, byte[] payload) {
+        byte[] result = new byte[payload.length + 1];
+        result[0] = format;
+        System.arraycopy(payload, 0, result, 1, payload.length);
+        return result;
+    }
+
+    private static byte[] deflate(byte[] input) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(input.length / 2);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] input) throws DataFormatException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(input);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(input.length * 3);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int count = inflater.inflate(buffer);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DataFormatException("Truncated deflate payload");
+                }
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } finally {
+            inflater.end();
+        }
+    }
+}
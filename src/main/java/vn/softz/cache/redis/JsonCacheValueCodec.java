@@ -0,0 +1,32 @@
+package vn.softz.cache.redis;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Codec JSON có kiểu: đọc thẳng vào T, không nhúng thông tin class vào value.
+ * Dùng cho cache chưa có codec viết tay.
+ */
+public class JsonCacheValueCodec<T> implements CacheValueCodec<T> {
+
+    private static final ObjectMapper OBJECT_MAPPER = JsonMapper.builder()
+            .changeDefaultPropertyInclusion(incl -> incl.withValueInclusion(JsonInclude.Include.NON_NULL))
+            .build();
+
+    private final Class<T> type;
+
+    public JsonCacheValueCodec(Class<T> type) {
+        this.type = type;
+    }
+
+    @Override
+    public byte[] encode(T value) {
+        return OBJECT_MAPPER.writeValueAsBytes(value);
+    }
+
+    @Override
+    public T decode(byte[] bytes) {
+        return OBJECT_MAPPER.readValue(bytes, type);
+    }
+}
@@ -1,21 +1,27 @@
 package vn.softz.cache.redis;
 
-import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
 import vn.softz.cache.base.BaseCache;
 import vn.softz.cache.base.BaseCacheData;
 import vn.softz.cache.base.ICacheInstance;
 
 import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
 
 public abstract class RedisCache<T extends BaseCacheData> extends BaseCache<T> {
-    protected final RedisTemplate<String, Object> redisTemplate;
+    protected RedisTemplate<String, Object> redisTemplate;
     protected final RedisProperties redisProperties;
+    private final RedisCacheExecutor cacheExecutor;
+    // Có giá trị thì bật near-cache L1 (TieredCacheInstance) với TTL này
+    private Duration nearCacheDuration;
+    private RedisCacheInvalidationBus invalidationBus;
+    private boolean keyIndexed;
 
     public RedisCache(Class<T> type, String prefix, RedisTemplate<String, Object> redisTemplate, Duration duration, boolean isLog, RedisProperties redisProperties) {
         super(type, prefix, duration, isLog, false);
         this.redisTemplate = redisTemplate;
         this.redisProperties = redisProperties;
+        this.cacheExecutor = RedisCacheExecutor.fallback(redisProperties);
         this.cacheInstance = createCacheInstance();
     }
 
@@ -23,6 +29,7 @@ public abstract class RedisCache<T extends BaseCacheData> extends BaseCache<T> {
         super(type, duration, isLog, false);
         this.redisTemplate = redisTemplate;
         this.redisProperties = redisProperties;
+        this.cacheExecutor = RedisCacheExecutor.fallback(redisProperties);
         this.cacheInstance = createCacheInstance();
     }
 
@@ -35,20 +42,87 @@ public abstract class RedisCache<T extends BaseCacheData> extends BaseCache<T> {
     }
 
     public RedisCache(int dbIndex, Class<T> type, String prefix, RedisConfig redisConfig, Duration duration) {
-        super(type, prefix, duration, false, false);
-        LettuceConnectionFactory lettuceConnectionFactory = redisConfig.createConnectionFactory(dbIndex);
-        lettuceConnectionFactory.start();
-        redisTemplate = redisConfig.createRedisTemplate(lettuceConnectionFactory);
+        this(dbIndex, type, prefix, redisConfig, duration, DEFAULT_MAXIMUM_SIZE);
+    }
+
+    /**@param maximumSize số entry tối đa của near-cache L1 (nếu bật)*/
+    public RedisCache(int dbIndex, Class<T> type, String prefix, RedisConfig redisConfig, Duration duration,
+                      long maximumSize) {
+        super(type, prefix, duration, false, false, maximumSize);
+        // Factory dùng chung theo DB index, RedisConfig quản lý vòng đời
+        redisTemplate = redisConfig.createRedisTemplate(redisConfig.getConnectionFactory(dbIndex));
         redisProperties = redisConfig.getRedisProperties();
+        cacheExecutor = redisConfig.getCacheExecutor();
+        cacheInstance = createCacheInstance();
+    }
+
+    /**
+     * Redis cache kèm near-cache L1 trong process: đọc nóng là hash hit trong bộ nhớ,
+     * remove / reload ở một pod sẽ invalidate L1 của các pod khác qua Redis pub/sub.
+     * @param nearCacheDuration TTL của L1, không vượt quá duration của Redis
+     */
+    public RedisCache(int dbIndex, Class<T> type, String prefix, RedisConfig redisConfig, Duration duration,
+                      RedisCacheInvalidationBus invalidationBus, Duration nearCacheDuration) {
+        this(dbIndex, type, prefix, redisConfig, duration, invalidationBus, nearCacheDuration, DEFAULT_MAXIMUM_SIZE);
+    }
+
+    /**@param nearCacheMaximumSize số entry tối đa của L1*/
+    public RedisCache(int dbIndex, Class<T> type, String prefix, RedisConfig redisConfig, Duration duration,
+                      RedisCacheInvalidationBus invalidationBus, Duration nearCacheDuration, long nearCacheMaximumSize) {
+        this(dbIndex, type, prefix, redisConfig, duration, nearCacheMaximumSize);
+        this.invalidationBus = invalidationBus;
+        this.nearCacheDuration = nearCacheDuration.compareTo(duration) < 0 ? nearCacheDuration : duration;
+        cacheInstance = createCacheInstance();
+    }
+
+    /**
+     * Bật index key theo cache (RedisKeyIndex): clear / find / getAll chỉ đọc key của cache này,
+     * không SCAN cả DB. Gọi trong constructor của cache con; key ghi trước khi bật không có trong index
+     * cho tới lần add kế tiếp. Redis Cluster không hỗ trợ, giữ đường SCAN.
+     */
+    protected void useKeyIndex() {
+        if (redisProperties.getCluster() != null && redisProperties.getCluster().getNodes() != null
+                && !redisProperties.getCluster().getNodes().isEmpty()) {
+            log.warn("Key index is not supported on Redis Cluster, cache {} keeps using SCAN", getPrefix());
+            return;
+        }
+        this.keyIndexed = true;
+        cacheInstance = createCacheInstance();
+    }
+
+    /**
+     * Ghi value bằng codec riêng thay cho JSON có type info của template chung: đọc ra thẳng kiểu T,
+     * payload từ compressThreshold byte trở lên được nén deflate (&lt;= 0 là không nén).
+     * Value cũ ghi bằng JSON đọc không được sẽ coi là miss và nạp lại.
+     */
+    protected void useValueCodec(CacheValueCodec<T> codec, int compressThreshold) {
+        redisTemplate = RedisConfig.createRedisTemplate(redisTemplate.getConnectionFactory(),
+                new CodecRedisSerializer<>(codec, getType(), compressThreshold));
         cacheInstance = createCacheInstance();
     }
 
+    @Override
+    public CompletableFuture<Boolean> removeAsync(String lid, String key) {
+        // Near-cache: luôn xóa và phát invalidate, pod khác có thể còn giữ L1 dù tầng Redis đã hết hạn
+        if (cacheInstance instanceof TieredCacheInstance) {
+            return cacheInstance.removeImplAsync(lid, key);
+        }
+        return super.removeAsync(lid, key);
+    }
+
     @Override
     protected ICacheInstance<T> createCacheInstance() {
-        if (redisProperties == null || redisTemplate == null) {
+        if (redisProperties == null || redisTemplate == null || cacheExecutor == null) {
             return null;
         }
 
-        return new RedisCacheInstance<>(this.redisProperties, this.redisTemplate, getDuration(), getPrefix(), getType());
+        RedisCacheInstance<T> redisInstance =
+                new RedisCacheInstance<>(this.redisProperties, this.redisTemplate, getDuration(), getPrefix(), getType(),
+                        this.cacheExecutor, this.keyIndexed);
+        if (nearCacheDuration == null || invalidationBus == null) {
+            return redisInstance;
+        }
+        return new TieredCacheInstance<>(redisInstance, nearCacheDuration, maximumSize, instanceStats,
+                invalidationBus, getPrefix());
     }
 }
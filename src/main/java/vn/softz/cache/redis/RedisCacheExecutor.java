@@ -0,0 +1,131 @@
+package vn.softz.cache.redis;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Executor riêng cho I/O cache Redis, thay cho CompletableFuture.supplyAsync trên ForkJoin common pool.
+ *  - Mỗi lệnh chạy trên một virtual thread: chờ Lettuce trả về không giữ platform thread.
+ *  - Số lệnh đồng thời bị chặn bởi semaphore (spring.data.redis.executor.max-concurrency);
+ *    chờ quá acquire-timeout thì lệnh fail nhanh thay vì dồn hàng đợi vô hạn khi Redis chậm.
+ *  - Metrics: cache.redis.executor.active / waiting, cache.redis.operation (timer theo operation, outcome).
+ */
+@Slf4j
+@Component
+public class RedisCacheExecutor {
+
+    private static final String METRIC_PREFIX = "cache.redis.";
+
+    // Cho các RedisCache tạo theo constructor cũ (truyền RedisTemplate), không đi qua RedisConfig
+    private static volatile RedisCacheExecutor fallback;
+
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("redis-cache-", 0).factory());
+    private final Semaphore permits;
+    private final long acquireTimeoutMs;
+    private final MeterRegistry meterRegistry;
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    public RedisCacheExecutor(RedisProperties redisProperties, MeterRegistry meterRegistry) {
+        RedisProperties.Executor config = redisProperties.getExecutor();
+        this.permits = new Semaphore(config.getMaxConcurrency());
+        this.acquireTimeoutMs = config.getAcquireTimeout().toMillis();
+        this.meterRegistry = meterRegistry;
+
+        Gauge.builder(METRIC_PREFIX + "executor.active", active, AtomicInteger::get)
+                .description("Redis cache operations in progress")
+                .register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + "executor.waiting", waiting, AtomicInteger::get)
+                .description("Redis cache operations waiting for a permit")
+                .register(meterRegistry);
+    }
+
+    static RedisCacheExecutor fallback(RedisProperties redisProperties) {
+        RedisCacheExecutor instance = fallback;
+        if (instance == null) {
+            synchronized (RedisCacheExecutor.class) {
+                instance = fallback;
+                if (instance == null) {
+                    instance = new RedisCacheExecutor(redisProperties, Metrics.globalRegistry);
+                    fallback = instance;
+                }
+            }
+        }
+        return instance;
+    }
+
+    public <R> CompletableFuture<R> supplyAsync(String operation, Supplier<R> supplier) {
+        return CompletableFuture.supplyAsync(() -> execute(operation, supplier), executor);
+    }
+
+    private <R> R execute(String operation, Supplier<R> supplier) {
+        acquire(operation);
+        active.incrementAndGet();
+        long start = System.nanoTime();
+        String outcome = "success";
+        try {
+            return supplier.get();
+        } catch (RuntimeException ex) {
+            outcome = "error";
+            throw ex;
+        } finally {
+            active.decrementAndGet();
+            permits.release();
+            Timer.builder(METRIC_PREFIX + "operation")
+                    .tag("operation", operation)
+                    .tag("outcome", outcome)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void acquire(String operation) {
+        waiting.incrementAndGet();
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+                Timer.builder(METRIC_PREFIX + "operation")
+                        .tag("operation", operation)
+                        .tag("outcome", "rejected")
+                        .register(meterRegistry)
+                        .record(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+                throw new CompletionException(new TimeoutException(
+                        "Redis cache " + operation + " waited more than " + acquireTimeoutMs + "ms for a permit"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+
+    @PreDestroy
+    void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                log.warn("Redis cache executor did not finish in-flight operations before shutdown");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+        }
+    }
+}
@@ -12,6 +12,9 @@ import vn.softz.cache.base.ICacheInstance;
 import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -22,8 +25,15 @@ class RedisCacheInstance<T extends BaseCacheData> implements ICacheInstance<T> {
     private final String keyPrefix;
     private final Class<T> type;
     private final ObjectMapper objectMapper;
+    private final RedisCacheExecutor executor;
+    // null = không bật index, clear / find / getAll đi đường SCAN như cũ
+    private final RedisKeyIndex keyIndex;
+    // Số key đọc từ index lần gần nhất (-1 = chưa đọc), làm mới nền để scrape metrics không chờ Redis
+    private final AtomicLong indexedCount = new AtomicLong(-1);
+    private final AtomicBoolean countRefreshing = new AtomicBoolean();
 
-    public RedisCacheInstance(RedisProperties redisProperties, RedisTemplate<String, Object> redisTemplate, Duration duration, String prefix, Class<T> type) {
+    public RedisCacheInstance(RedisProperties redisProperties, RedisTemplate<String, Object> redisTemplate, Duration duration, String prefix, Class<T> type,
+                              RedisCacheExecutor executor, boolean keyIndexed) {
         this.redisProperties = redisProperties;
         this.redisTemplate = redisTemplate;
         this.defaultExpire = duration;
@@ -31,6 +41,8 @@ class RedisCacheInstance<T extends BaseCacheData> implements ICacheInstance<T> {
         this.type = type;
         this.objectMapper = JsonMapper.builder()
                 .build();
+        this.executor = executor;
+        this.keyIndex = keyIndexed ? new RedisKeyIndex(redisTemplate, buildKey("__keys")) : null;
     }
 
     private String buildKey(String key) {
@@ -39,7 +51,10 @@ class RedisCacheInstance<T extends BaseCacheData> implements ICacheInstance<T> {
 
     @Override
     public CompletableFuture<Long> countAsync() {
-        return CompletableFuture.supplyAsync(() -> {
+        return executor.supplyAsync("count", () -> {
+            if (keyIndex != null) {
+                return keyIndex.count();
+            }
             assert redisTemplate.getConnectionFactory() != null;
             try (var connection = redisTemplate.getConnectionFactory().getConnection()) {
                 return connection.commands().dbSize();
@@ -47,20 +62,54 @@ class RedisCacheInstance<T extends BaseCacheData> implements ICacheInstance<T> {
         });
     }
 
+    // Không có index thì không đếm được riêng cache này (DBSIZE là cả DB) → rỗng
+    @Override
+    public OptionalLong estimatedSize() {
+        if (keyIndex == null) {
+            return OptionalLong.empty();
+        }
+        if (countRefreshing.compareAndSet(false, true)) {
+            executor.supplyAsync("count", keyIndex::count)
+                    .whenComplete((count, ex) -> {
+                        if (count != null) {
+                            indexedCount.set(count);
+                        }
+                        countRefreshing.set(false);
+                    });
+        }
+        long count = indexedCount.get();
+        return count >= 0 ? OptionalLong.of(count) : OptionalLong.empty();
+    }
+
     @Override
     public CompletableFuture<Void> clearAsync(String lid) {
-        log.warn("Executing 'clearAsync' which uses the 'KEYS' command. This is not recommended for production.");
-        Set<String> keys = getKeysByPattern(buildKey("*"));
-        if (!keys.isEmpty()) {
-            redisTemplate.delete(keys);
+        if (keyIndex != null) {
+            return executor.supplyAsync("clear", () -> {
+                keyIndex.clear();
+                return null;
+            });
         }
-        return CompletableFuture.completedFuture(null);
+        log.warn("Executing 'clearAsync' which uses the 'KEYS' command. This is not recommended for production.");
+        return executor.supplyAsync("clear", () -> {
+            Set<String> keys = getKeysByPattern(buildKey("*"));
+            if (!keys.isEmpty()) {
+                redisTemplate.delete(keys);
+            }
+            return null;
+        });
     }
 
     @Override
     public Set<String> getKeysByPattern(String pattern) {
-        Set<String> keys = new HashSet<>();
         final String finalPattern = buildKey("*" + pattern + "*");
+        if (keyIndex != null) {
+            // Cùng glob với SCAN MATCH bên dưới để hai đường trả cùng tập key
+            Pattern matcher = globToRegex(finalPattern);
+            return keyIndex.liveKeys().stream()
+                    .filter(key -> matcher.matcher(key).matches())
+                    .collect(Collectors.toSet());
+        }
+        Set<String> keys = new HashSet<>();
         ScanOptions scanOptions = ScanOptions.scanOptions().match(finalPattern).count(100).build();  // count: số lượng ước lượng mỗi lần scan
 
         assert redisTemplate.getConnectionFactory() != null;
@@ -74,15 +123,47 @@ class RedisCacheInstance<T extends BaseCacheData> implements ICacheInstance<T> {
         return keys;
     }
 
+    /**Glob kiểu Redis (*, ?, [...], \\ escape) → regex khớp toàn bộ key.*/
+    static Pattern globToRegex(String glob) {
+        StringBuilder regex = new StringBuilder(glob.length() + 16);
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            switch (c) {
+                case '*' -> regex.append(".*");
+                case '?' -> regex.append('.');
+                case '\\' -> {
+                    if (i + 1 < glob.length()) {
+                        regex.append(Pattern.quote(String.valueOf(glob.charAt(++i))));
+                    }
+                }
+                case '[' -> {
+                    int end = glob.indexOf(']', i + 1);
+                    if (end < 0) {
+                        regex.append("\\[");
+                    } else {
+                        // [abc], [^a], [a-z] trùng cú pháp Java; chỉ escape '[' và '&' (phép giao &&)
+                        String set = glob.substring(i + 1, end);
+                        regex.append('[').append(set.replace("[", "\\[").replace("&", "\\&")).append(']');
+                        i = end;
+                    }
+                }
+                default -> regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+
     @Override
     public CompletableFuture<List<T>> findAsync(String lid, String keyPattern) {
-        log.warn("Executing 'findAsync' which uses the 'KEYS' command. This is not recommended for production.");
-        return CompletableFuture.supplyAsync(() -> {
+        if (keyIndex == null) {
+            log.warn("Executing 'findAsync' which uses the 'KEYS' command. This is not recommended for production.");
+        }
+        return executor.supplyAsync("find", () -> {
             Set<String> keys = getKeysByPattern(keyPattern);
             if (keys.isEmpty()) {
                 return Collections.emptyList();
             }
-            List<Object> values = redisTemplate.opsForValue().multiGet(keys);
+            List<Object> values = multiGet(keys);
             assert values != null;
             return values.stream()
                     .filter(Objects::nonNull)
@@ -95,13 +176,15 @@ class RedisCacheInstance<T extends BaseCacheData> implements ICacheInstance<T> {
 
     @Override
     public CompletableFuture<Map<String, T>> getAllAsync(String lid) {
-        log.warn("Executing 'getAllAsync' which uses the 'KEYS' command. This is not recommended for production.");
-        return CompletableFuture.supplyAsync(() -> {
+        if (keyIndex == null) {
+            log.warn("Executing 'getAllAsync' which uses the 'KEYS' command. This is not recommended for production.");
+        }
+        return executor.supplyAsync("getAll", () -> {
             Set<String> keys = getKeysByPattern("*");
             if (keys.isEmpty()) {
                 return Collections.emptyMap();
             }
-            List<Object> values = redisTemplate.opsForValue().multiGet(keys);
+            List<Object> values = multiGet(keys);
             assert values != null;
             return values.stream()
                     .filter(Objects::nonNull)
@@ -116,8 +199,21 @@ class RedisCacheInstance<T extends BaseCacheData> implements ICacheInstance<T> {
     public CompletableFuture<Boolean> addImplAsync(String lid, T cacheObject, Duration expires) {
         Duration effectiveExpire = (expires != null) ? expires : this.defaultExpire;
         String finalKey = buildKey(cacheObject.getKey());
-        redisTemplate.opsForValue().set(finalKey, cacheObject, effectiveExpire);
-        return CompletableFuture.completedFuture(true);
+        return executor.supplyAsync("add", () -> {
+            if (keyIndex != null) {
+                keyIndex.set(finalKey, cacheObject, effectiveExpire);
+            } else {
+                redisTemplate.opsForValue().set(finalKey, cacheObject, effectiveExpire);
+            }
+            return true;
+        });
+    }
+
+    private List<Object> multiGet(Set<String> keys) {
+        if (keyIndex != null) {
+            return keyIndex.multiGet(List.copyOf(keys));
+        }
+        return redisTemplate.opsForValue().multiGet(keys);
     }
 
     @Override
@@ -141,7 +237,7 @@ class RedisCacheInstance<T extends BaseCacheData> implements ICacheInstance<T> {
 
     @Override
     public CompletableFuture<Optional<T>> getImplAsync(String lid, String key) {
-        return CompletableFuture.supplyAsync(() -> {
+        return executor.supplyAsync("get", () -> {
             String finalKey = buildKey(key);
             Object value = redisTemplate.opsForValue().get(finalKey);
             var instance = mapToInstance(value);
@@ -149,10 +245,34 @@ class RedisCacheInstance<T extends BaseCacheData> implements ICacheInstance<T> {
         });
     }
 
+    // Một lệnh MGET cho cả lô thay vì N lệnh GET riêng lẻ
+    @Override
+    public CompletableFuture<Map<String, T>> getManyImplAsync(String lid, Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return CompletableFuture.completedFuture(Collections.emptyMap());
+        }
+        List<String> requestKeys = List.copyOf(keys);
+        return executor.supplyAsync("getMany", () -> {
+            List<Object> values = redisTemplate.opsForValue()
+                    .multiGet(requestKeys.stream().map(this::buildKey).toList());
+            Map<String, T> result = new LinkedHashMap<>();
+            if (values == null) {
+                return result;
+            }
+            for (int i = 0; i < requestKeys.size(); i++) {
+                T instance = mapToInstance(values.get(i));
+                if (instance != null) {
+                    result.put(requestKeys.get(i), instance);
+                }
+            }
+            return result;
+        });
+    }
+
     @Override
     public CompletableFuture<Boolean> removeImplAsync(String lid, String key) {
         String finalKey = buildKey(key);
-        Boolean result = redisTemplate.delete(finalKey);
-        return CompletableFuture.completedFuture(result);
+        return executor.supplyAsync("remove",
+                () -> keyIndex != null ? keyIndex.delete(finalKey) : redisTemplate.delete(finalKey));
     }
 }
@@ -0,0 +1,87 @@
+package vn.softz.cache.redis;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Phát / nhận thông báo invalidate near-cache (L1) giữa các pod qua Redis pub/sub.
+ * Message: nodeId \n cacheName \n key (key rỗng = xóa toàn bộ cache).
+ * Pub/sub là at-most-once nên L1 luôn có TTL ngắn làm lưới an toàn.
+ */
+@Slf4j
+@Component
+public class RedisCacheInvalidationBus {
+
+    private static final String CHANNEL = "cache:invalidate";
+    private static final String SEPARATOR = "\n";
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Map<String, Consumer<String>> listeners = new ConcurrentHashMap<>();
+    private final LettuceConnectionFactory connectionFactory;
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final ChannelTopic topic;
+
+    public RedisCacheInvalidationBus(RedisConfig redisConfig) {
+        RedisProperties redisProperties = redisConfig.getRedisProperties();
+        this.topic = new ChannelTopic(redisProperties.getPrefix() + CHANNEL);
+
+        // Publish dùng connection chung; listener container tự mở connection subscribe riêng
+        this.connectionFactory = redisConfig.getConnectionFactory(redisProperties.getDatabase());
+        this.redisTemplate = new StringRedisTemplate(connectionFactory);
+
+        this.listenerContainer = new RedisMessageListenerContainer();
+        this.listenerContainer.setConnectionFactory(connectionFactory);
+        this.listenerContainer.addMessageListener((message, pattern) ->
+                onMessage(new String(message.getBody(), StandardCharsets.UTF_8)), topic);
+        this.listenerContainer.afterPropertiesSet();
+        this.listenerContainer.start();
+    }
+
+    /**Đăng ký xử lý invalidate cho một cache; key = null nghĩa là xóa toàn bộ.*/
+    public void subscribe(String cacheName, Consumer<String> onInvalidate) {
+        listeners.put(cacheName, onInvalidate);
+    }
+
+    public void publish(String cacheName, String key) {
+        try {
+            redisTemplate.convertAndSend(topic.getTopic(),
+                    nodeId + SEPARATOR + cacheName + SEPARATOR + (key == null ? "" : key));
+        } catch (Exception e) {
+            // Pod khác vẫn tự hết hạn L1 theo TTL
+            log.warn("Publish cache invalidation {}:{} failed: {}", cacheName, key, e.getMessage());
+        }
+    }
+
+    private void onMessage(String body) {
+        String[] parts = body.split(SEPARATOR, 3);
+        if (parts.length != 3 || nodeId.equals(parts[0])) {
+            return;
+        }
+        Consumer<String> listener = listeners.get(parts[1]);
+        if (listener != null) {
+            listener.accept(parts[2].isEmpty() ? null : parts[2]);
+        }
+    }
+
+    @PreDestroy
+    void close() {
+        try {
+            listenerContainer.stop();
+            listenerContainer.destroy();
+        } catch (Exception e) {
+            log.warn("Stop cache invalidation listener failed: {}", e.getMessage());
+        }
+    }
+}
@@ -1,8 +1,12 @@
 package vn.softz.cache.redis;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
+import io.lettuce.core.resource.ClientResources;
+import io.lettuce.core.resource.DefaultClientResources;
+import jakarta.annotation.PreDestroy;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
@@ -10,9 +14,11 @@ import org.springframework.data.redis.connection.RedisClusterConfiguration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.connection.RedisSentinelConfiguration;
 import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.serializer.GenericJacksonJsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 import tools.jackson.databind.MapperFeature;
 import tools.jackson.databind.ObjectMapper;
@@ -20,13 +26,40 @@ import tools.jackson.databind.SerializationFeature;
 import tools.jackson.databind.json.JsonMapper;
 import vn.softz.common.utils.StringUtils;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Slf4j
 @Configuration
 @RequiredArgsConstructor
 public class RedisConfig {
 
     @Getter
     private final RedisProperties redisProperties;
+    @Getter
+    private final RedisCacheExecutor cacheExecutor;
+
+    // Một bộ event loop / timer Lettuce dùng chung cho mọi connection factory của app
+    private final ClientResources clientResources = DefaultClientResources.create();
+    // Một factory (một native connection dùng chung) cho mỗi Redis DB index
+    private final Map<Integer, LettuceConnectionFactory> sharedFactories = new ConcurrentHashMap<>();
 
+    /**
+     * Connection factory dùng chung theo DB index, đã start; các cache cùng DB dùng chung
+     * một connection thay vì mỗi cache tự mở client riêng. Không destroy factory lấy từ đây,
+     * RedisConfig đóng tất cả khi shutdown.
+     */
+    public LettuceConnectionFactory getConnectionFactory(int dbIndex) {
+        return sharedFactories.computeIfAbsent(dbIndex, index -> {
+            LettuceConnectionFactory factory = createConnectionFactory(index);
+            factory.afterPropertiesSet();
+            factory.start();
+            log.info("Started shared Redis connection factory for db {}", index);
+            return factory;
+        });
+    }
+
+    /**Factory riêng (chưa start), dùng chung ClientResources; caller tự quản lý vòng đời.*/
     public LettuceConnectionFactory createConnectionFactory(int dbIndex) {
         if (redisProperties.getSentinel() != null && StringUtils.isNotBlank(redisProperties.getSentinel().getMaster())) {
             RedisSentinelConfiguration sentinelConfig = new RedisSentinelConfiguration()
@@ -39,7 +72,7 @@ public class RedisConfig {
             if (StringUtils.isNotBlank(redisProperties.getPassword())) {
                 sentinelConfig.setPassword(redisProperties.getPassword());
             }
-            return new LettuceConnectionFactory(sentinelConfig);
+            return new LettuceConnectionFactory(sentinelConfig, clientConfiguration());
         }
 
         if (redisProperties.getCluster() != null && !redisProperties.getCluster().getNodes().isEmpty()) {
@@ -47,7 +80,7 @@ public class RedisConfig {
             if (StringUtils.isNotBlank(redisProperties.getPassword())) {
                 clusterConfig.setPassword(redisProperties.getPassword());
             }
-            return new LettuceConnectionFactory(clusterConfig);
+            return new LettuceConnectionFactory(clusterConfig, clientConfiguration());
         }
 
         RedisStandaloneConfiguration standaloneConfig = new RedisStandaloneConfiguration(
@@ -57,7 +90,13 @@ public class RedisConfig {
         if (StringUtils.isNotBlank(redisProperties.getPassword())) {
             standaloneConfig.setPassword(redisProperties.getPassword());
         }
-        return new LettuceConnectionFactory(standaloneConfig);
+        return new LettuceConnectionFactory(standaloneConfig, clientConfiguration());
+    }
+
+    private LettuceClientConfiguration clientConfiguration() {
+        return LettuceClientConfiguration.builder()
+                .clientResources(clientResources)
+                .build();
     }
 
     public RedisTemplate<String, Object> createRedisTemplate(RedisConnectionFactory connectionFactory) {
@@ -86,8 +125,12 @@ public class RedisConfig {
     }
 
     private static RedisTemplate<String, Object> getStringObjectRedisTemplate(RedisConnectionFactory connectionFactory, ObjectMapper objectMapper) {
-        GenericJacksonJsonRedisSerializer serializer = new GenericJacksonJsonRedisSerializer(objectMapper);
+        return createRedisTemplate(connectionFactory, new GenericJacksonJsonRedisSerializer(objectMapper));
+    }
 
+    /**RedisTemplate key String với value serializer tùy chọn (vd. CodecRedisSerializer của cache).*/
+    public static RedisTemplate<String, Object> createRedisTemplate(RedisConnectionFactory connectionFactory,
+                                                                    RedisSerializer<Object> serializer) {
         RedisTemplate<String, Object> template = new RedisTemplate<>();
         template.setConnectionFactory(connectionFactory);
         template.setKeySerializer(new StringRedisSerializer());
@@ -101,7 +144,19 @@ public class RedisConfig {
     @Primary
     @Bean(name = "redisTemplate")
     public RedisTemplate<String, Object> redisTemplate() {
-        LettuceConnectionFactory connectionFactory = createConnectionFactory(redisProperties.getDatabase());
-        return createRedisTemplate(connectionFactory);
+        return createRedisTemplate(getConnectionFactory(redisProperties.getDatabase()));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        sharedFactories.values().forEach(factory -> {
+            try {
+                factory.destroy();
+            } catch (Exception e) {
+                log.warn("Destroy Redis connection factory failed: {}", e.getMessage());
+            }
+        });
+        sharedFactories.clear();
+        clientResources.shutdown();
     }
 }
\ No newline at end of file
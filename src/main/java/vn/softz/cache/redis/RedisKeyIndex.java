@@ -0,0 +1,145 @@
+package vn.softz.cache.redis;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Chỉ mục key của một cache: ZSET {prefix}{cache}:__keys, member = key đầy đủ, score = thời điểm hết hạn (epoch ms).
+ * Ghi / xóa value cùng member trong một MULTI/EXEC nên index không lệch với dữ liệu;
+ * member đã quá hạn bị dọn bằng ZREMRANGEBYSCORE mỗi lần add và bị bỏ qua khi đọc.
+ * Clear / find / getAll chỉ đụng tới key của cache này thay vì SCAN cả DB.
+ * Member ghi dạng chuỗi UTF-8 thô, không qua value serializer của template (có thể là codec của cache).
+ * Không dùng được với Redis Cluster (MULTI qua nhiều slot).
+ */
+class RedisKeyIndex {
+
+    private static final int BATCH_SIZE = 500;
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final String indexKey;
+    private final byte[] rawIndexKey;
+
+    RedisKeyIndex(RedisTemplate<String, Object> redisTemplate, String indexKey) {
+        this.redisTemplate = redisTemplate;
+        this.indexKey = indexKey;
+        this.rawIndexKey = raw(indexKey);
+    }
+
+    void set(String key, Object value, Duration expire) {
+        long now = System.currentTimeMillis();
+        double expireAt = expire == null || expire.isZero() ? Double.POSITIVE_INFINITY : now + expire.toMillis();
+        inTransaction(ops -> {
+            if (expire == null || expire.isZero()) {
+                ops.opsForValue().set(key, value);
+            } else {
+                ops.opsForValue().set(key, value, expire);
+            }
+            ops.execute((RedisCallback<Object>) connection -> {
+                connection.zSetCommands().zAdd(rawIndexKey, expireAt, raw(key));
+                connection.zSetCommands().zRemRangeByScore(rawIndexKey, Double.NEGATIVE_INFINITY, now);
+                return null;
+            });
+        });
+    }
+
+    Boolean delete(String key) {
+        List<Object> results = inTransaction(ops -> {
+            ops.delete(key);
+            ops.execute((RedisCallback<Object>) connection -> connection.zSetCommands().zRem(rawIndexKey, raw(key)));
+        });
+        if (results == null || results.isEmpty()) {
+            return false;
+        }
+        // Kết quả DEL trong EXEC có thể là Long (số key đã xóa) tùy driver
+        Object deleted = results.get(0);
+        return Boolean.TRUE.equals(deleted) || (deleted instanceof Number count && count.longValue() > 0);
+    }
+
+    /**Key còn hạn của cache.*/
+    List<String> liveKeys() {
+        return members(connection -> connection.zSetCommands()
+                .zRangeByScore(rawIndexKey, System.currentTimeMillis(), Double.POSITIVE_INFINITY));
+    }
+
+    long count() {
+        Long count = redisTemplate.execute((RedisCallback<Long>) connection -> connection.zSetCommands()
+                .zCount(rawIndexKey, System.currentTimeMillis(), Double.POSITIVE_INFINITY));
+        return count == null ? 0 : count;
+    }
+
+    List<Object> multiGet(List<String> keys) {
+        List<Object> values = new ArrayList<>(keys.size());
+        for (List<String> batch : partition(keys)) {
+            List<Object> batchValues = redisTemplate.opsForValue().multiGet(batch);
+            if (batchValues != null) {
+                values.addAll(batchValues);
+            }
+        }
+        return values;
+    }
+
+    void clear() {
+        List<String> keys = members(connection -> connection.zSetCommands().zRange(rawIndexKey, 0, -1));
+        for (List<String> batch : partition(keys)) {
+            redisTemplate.delete(batch);
+        }
+        redisTemplate.delete(indexKey);
+    }
+
+    private List<String> members(RedisCallback<Set<byte[]>> command) {
+        Set<byte[]> members = redisTemplate.execute(command);
+        if (members == null || members.isEmpty()) {
+            return List.of();
+        }
+        return members.stream().filter(Objects::nonNull).map(RedisKeyIndex::string).toList();
+    }
+
+    private static byte[] raw(String value) {
+        return RedisSerializer.string().serialize(value);
+    }
+
+    private static String string(byte[] value) {
+        return RedisSerializer.string().deserialize(value);
+    }
+
+    private static List<List<String>> partition(Collection<String> keys) {
+        List<List<String>> batches = new ArrayList<>();
+        List<String> current = new ArrayList<>(Math.min(keys.size(), BATCH_SIZE));
+        for (String key : keys) {
+            current.add(key);
+            if (current.size() == BATCH_SIZE) {
+                batches.add(current);
+                current = new ArrayList<>(BATCH_SIZE);
+            }
+        }
+        if (!current.isEmpty()) {
+            batches.add(current);
+        }
+        return batches;
+    }
+
+    private List<Object> inTransaction(Consumer<RedisOperations<String, Object>> commands) {
+        return redisTemplate.execute(new SessionCallback<List<Object>>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> List<Object> execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                ops.multi();
+                commands.accept(ops);
+                return ops.exec();
+            }
+        });
+    }
+}
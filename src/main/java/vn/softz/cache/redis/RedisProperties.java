@@ -7,6 +7,7 @@ import org.springframework.stereotype.Component;
 import vn.softz.common.utils.CryptoUtils;
 import vn.softz.common.utils.StringUtils;
 
+import java.time.Duration;
 import java.util.List;
 
 @Data
@@ -27,6 +28,7 @@ public class RedisProperties {
     private Cluster cluster;
     private int database = 0;
     private String prefix = "";
+    private Executor executor = new Executor();
 
     @Data
     public static class Sentinel {
@@ -39,6 +41,13 @@ public class RedisProperties {
         private List<String> nodes;
     }
 
+    // Giới hạn I/O cache Redis chạy đồng thời (RedisCacheExecutor)
+    @Data
+    public static class Executor {
+        private int maxConcurrency = 64;
+        private Duration acquireTimeout = Duration.ofSeconds(2);
+    }
+
     private String decrypt(String value) {
         try {
             return CryptoUtils.AES.decrypt(value, StringUtils.reverse(materKey));
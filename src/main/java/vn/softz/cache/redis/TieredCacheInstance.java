@@ -0,0 +1,140 @@
+package vn.softz.cache.redis;
+
+import vn.softz.cache.base.BaseCacheData;
+import vn.softz.cache.base.CacheStatsRecorder;
+import vn.softz.cache.base.ICacheInstance;
+import vn.softz.cache.memory.MemoryCacheInstance;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Near-cache: L1 Caffeine trong process phía trên L2 Redis.
+ *  - get: L1 hit thì trả ngay (không Redis, không deserialize); miss thì đọc L2 rồi nạp vào L1.
+ *  - remove / clear: xóa cả 2 tầng rồi phát invalidate để các pod khác bỏ bản L1 của mình.
+ * Object trong L1 được dùng chung giữa các lời gọi nên dữ liệu cache phải coi là read-only.
+ */
+class TieredCacheInstance<T extends BaseCacheData> implements ICacheInstance<T> {
+
+    private final MemoryCacheInstance<T> local;
+    private final RedisCacheInstance<T> remote;
+    private final RedisCacheInvalidationBus invalidationBus;
+    private final String cacheName;
+
+    TieredCacheInstance(RedisCacheInstance<T> remote, Duration localDuration, long localMaximumSize,
+                        CacheStatsRecorder statsRecorder, RedisCacheInvalidationBus invalidationBus, String cacheName) {
+        this.local = new MemoryCacheInstance<>(localDuration, localMaximumSize, statsRecorder);
+        this.remote = remote;
+        this.invalidationBus = invalidationBus;
+        this.cacheName = cacheName;
+        invalidationBus.subscribe(cacheName, this::invalidateLocal);
+    }
+
+    private void invalidateLocal(String key) {
+        if (key == null) {
+            local.clearAsync(null);
+        } else {
+            local.removeImplAsync(null, key);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Optional<T>> getImplAsync(String lid, String key) {
+        return local.getImplAsync(lid, key)
+                .thenCompose(cached -> {
+                    if (cached.isPresent()) {
+                        return CompletableFuture.completedFuture(cached);
+                    }
+                    return remote.getImplAsync(lid, key)
+                            .thenApply(value -> {
+                                value.ifPresent(v -> local.addImplAsync(lid, v));
+                                return value;
+                            });
+                });
+    }
+
+    @Override
+    public CompletableFuture<Map<String, T>> getManyImplAsync(String lid, Collection<String> keys) {
+        return local.getManyImplAsync(lid, keys)
+                .thenCompose(cached -> {
+                    if (cached.size() == keys.size()) {
+                        return CompletableFuture.completedFuture(cached);
+                    }
+                    List<String> misses = keys.stream().filter(key -> !cached.containsKey(key)).toList();
+                    return remote.getManyImplAsync(lid, misses)
+                            .thenApply(values -> {
+                                values.values().forEach(v -> local.addImplAsync(lid, v));
+                                Map<String, T> result = new LinkedHashMap<>(cached);
+                                result.putAll(values);
+                                return result;
+                            });
+                });
+    }
+
+    @Override
+    public CompletableFuture<Boolean> addImplAsync(String lid, T cacheObject, Duration expires) {
+        return remote.addImplAsync(lid, cacheObject, expires)
+                .thenApply(added -> {
+                    local.addImplAsync(lid, cacheObject);
+                    return added;
+                });
+    }
+
+    @Override
+    public CompletableFuture<Boolean> addImplAsync(String lid, T cacheObject) {
+        return addImplAsync(lid, cacheObject, null);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> removeImplAsync(String lid, String key) {
+        return remote.removeImplAsync(lid, key)
+                .thenApply(removed -> {
+                    local.removeImplAsync(lid, key);
+                    invalidationBus.publish(cacheName, key);
+                    return removed;
+                });
+    }
+
+    @Override
+    public CompletableFuture<Void> clearAsync(String lid) {
+        return remote.clearAsync(lid)
+                .thenRun(() -> {
+                    local.clearAsync(lid);
+                    invalidationBus.publish(cacheName, null);
+                });
+    }
+
+    @Override
+    public CompletableFuture<Long> countAsync() {
+        return remote.countAsync();
+    }
+
+    // Key index của L2 cho số entry cả cache; không có index thì báo số entry đang giữ ở L1
+    @Override
+    public OptionalLong estimatedSize() {
+        OptionalLong remoteSize = remote.estimatedSize();
+        return remoteSize.isPresent() ? remoteSize : local.estimatedSize();
+    }
+
+    @Override
+    public CompletableFuture<List<T>> findAsync(String lid, String keyPattern) {
+        return remote.findAsync(lid, keyPattern);
+    }
+
+    @Override
+    public Set<String> getKeysByPattern(String pattern) {
+        return remote.getKeysByPattern(pattern);
+    }
+
+    @Override
+    public CompletableFuture<Map<String, T>> getAllAsync(String lid) {
+        return remote.getAllAsync(lid);
+    }
+}
@@ -0,0 +1,13 @@
+-- =====================================================================
+-- V2: Lease cho dispatcher einv_sync_queue chạy nhiều node
+--  - Mỗi pod claim batch bằng SELECT ... FOR UPDATE SKIP LOCKED,
+--    rồi ghi locked_by / locked_until trong cùng transaction.
+--  - Entry PROCESSING có locked_until quá hạn (pod chết, bị kill...)
+--    sẽ được node khác claim lại.
+-- =====================================================================
+
+ALTER TABLE `einv_sync_queue`
+    ADD COLUMN `locked_by`    VARCHAR(100) NULL COMMENT 'Node (pod) đang giữ lease' AFTER `next_retry_at`,
+    ADD COLUMN `locked_until` DATETIME     NULL COMMENT 'Hết hạn lease, quá hạn thì node khác được claim lại' AFTER `locked_by`;
+
+CREATE INDEX `idx_queue_status_lease` ON `einv_sync_queue` (`status`, `locked_until`);
@@ -0,0 +1,13 @@
+-- =====================================================================
+-- V3: Lịch poll trạng thái / mã CQT (BKAV CmdType 850) cho hóa đơn đã ký
+--  - status_poll_at: lần poll kế tiếp; NULL = không cần poll (đã có mã CQT,
+--    trạng thái kết thúc, hoặc đã hết số lần poll).
+--  - status_poll_count: số lần đã poll, dùng để giãn dần chu kỳ poll.
+--  Chỉ poller (JDBC) đọc/ghi 2 cột này nên không map vào entity.
+-- =====================================================================
+
+ALTER TABLE `einv_invoices`
+    ADD COLUMN `status_poll_at`    DATETIME NULL COMMENT 'Thời điểm poll trạng thái kế tiếp, NULL = đã xong' AFTER `invoice_lookup_code`,
+    ADD COLUMN `status_poll_count` SMALLINT NOT NULL DEFAULT 0 COMMENT 'Số lần đã poll trạng thái' AFTER `status_poll_at`;
+
+CREATE INDEX `idx_inv_status_poll` ON `einv_invoices` (`status_poll_at`);
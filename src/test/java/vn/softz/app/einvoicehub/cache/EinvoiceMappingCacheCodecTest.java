@@ -0,0 +1,93 @@
+package vn.softz.app.einvoicehub.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EinvoiceMappingCacheCodecTest {
+
+    private final EinvoiceMappingCacheCodec codec = new EinvoiceMappingCacheCodec();
+
+    @Test
+    void roundTripRebuildsReverseMapping() throws IOException {
+        EinvoiceMappingCacheData data = data("BKAV:INVOICE_STATUS",
+                Map.of("1", "10", "2", "20"),
+                Map.of("10", "1", "20", "2"));
+        data.cacheUpdateAt = Instant.ofEpochMilli(1_700_000_000_000L);
+
+        EinvoiceMappingCacheData decoded = codec.decode(codec.encode(data));
+
+        assertThat(decoded.getCacheKey()).isEqualTo("BKAV:INVOICE_STATUS");
+        assertThat(decoded.getMapping()).isEqualTo(data.getMapping());
+        assertThat(decoded.getReverseMapping()).isEqualTo(data.getReverseMapping());
+        assertThat(decoded.cacheUpdateAt).isEqualTo(data.cacheUpdateAt);
+    }
+
+    @Test
+    void nullReverseMappingStaysNull() throws IOException {
+        EinvoiceMappingCacheData data = data("BKAV:PAYMENT_METHOD", Map.of("1", "TM"), null);
+
+        EinvoiceMappingCacheData decoded = codec.decode(codec.encode(data));
+
+        assertThat(decoded.getMapping()).containsEntry("1", "TM");
+        assertThat(decoded.getReverseMapping()).isNull();
+    }
+
+    @Test
+    void duplicateProviderCodesKeepChosenInternalCode() throws IOException {
+        // "A", "B", "C" cùng map vào "X" → map ngược chọn "A" lúc load, decode phải ra đúng "A"
+        Map<String, String> mapping = Map.of("C", "X", "B", "X", "A", "X", "D", "Y");
+        EinvoiceMappingCacheData data = data("BKAV:ITEM_TYPE", mapping, Map.of("X", "A", "Y", "D"));
+
+        EinvoiceMappingCacheData decoded = codec.decode(codec.encode(data));
+
+        assertThat(decoded.getMapping()).isEqualTo(mapping);
+        assertThat(decoded.getReverseMapping()).isEqualTo(Map.of("X", "A", "Y", "D"));
+    }
+
+    @Test
+    void providerCodeMissingFromReverseMappingStaysMissing() throws IOException {
+        Map<String, String> mapping = Map.of("A", "X", "C", "Y");
+        EinvoiceMappingCacheData data = data("BKAV:ITEM_TYPE", mapping, Map.of("Y", "C"));
+
+        EinvoiceMappingCacheData decoded = codec.decode(codec.encode(data));
+
+        assertThat(decoded.getReverseMapping()).isEqualTo(Map.of("Y", "C"));
+    }
+
+    @Test
+    void nullProviderCodeIsKeptInMappingOnly() throws IOException {
+        Map<String, String> mapping = new HashMap<>();
+        mapping.put("1", null);
+        mapping.put("2", "20");
+        EinvoiceMappingCacheData data = data("BKAV:INVOICE_TYPE", mapping, Map.of("20", "2"));
+
+        EinvoiceMappingCacheData decoded = codec.decode(codec.encode(data));
+
+        assertThat(decoded.getMapping()).containsEntry("1", null).containsEntry("2", "20");
+        assertThat(decoded.getReverseMapping()).containsExactlyEntriesOf(Map.of("20", "2"));
+    }
+
+    @Test
+    void unsupportedVersionIsRejected() throws IOException {
+        byte[] bytes = codec.encode(data("BKAV:TAX_TYPE", Map.of(), Map.of()));
+        bytes[0] = 99;
+
+        assertThatThrownBy(() -> codec.decode(bytes)).isInstanceOf(IOException.class);
+    }
+
+    private static EinvoiceMappingCacheData data(String cacheKey, Map<String, String> mapping,
+                                                 Map<String, String> reverseMapping) {
+        return EinvoiceMappingCacheData.builder()
+                .cacheKey(cacheKey)
+                .mapping(mapping)
+                .reverseMapping(reverseMapping)
+                .build();
+    }
+}
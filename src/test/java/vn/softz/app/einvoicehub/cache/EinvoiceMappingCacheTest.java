@@ -0,0 +1,32 @@
+package vn.softz.app.einvoicehub.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EinvoiceMappingCacheTest {
+
+    @Test
+    void duplicateProviderCodeResolvesToLowestInternalCode() {
+        Map<String, String> mapping = new HashMap<>();
+        mapping.put("10", "X");
+        mapping.put("9", "X");
+        mapping.put("2", "Y");
+        mapping.put("3", null);
+
+        Map<String, String> reverse = EinvoiceMappingCache.buildReverseMapping("BKAV:ITEM_TYPE", mapping);
+
+        assertThat(reverse).isEqualTo(Map.of("X", "9", "Y", "2"));
+    }
+
+    @Test
+    void nonNumericInternalCodesUseStringOrder() {
+        Map<String, String> reverse = EinvoiceMappingCache.buildReverseMapping("BKAV:PAYMENT_METHOD",
+                Map.of("TM", "1", "CK", "1", "TM/CK", "3"));
+
+        assertThat(reverse).isEqualTo(Map.of("1", "CK", "3", "TM/CK"));
+    }
+}
@@ -0,0 +1,57 @@
+package vn.softz.app.einvoicehub.service.impl;
+
+import jakarta.persistence.PersistenceException;
+import org.hibernate.exception.ConstraintViolationException;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.sql.SQLIntegrityConstraintViolationException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EinvInvoiceServiceImplTest {
+
+    private static final String DUPLICATE_MESSAGE =
+            "Duplicate entry 'T1-PO-1' for key 'uq_inv_tenant_partner'";
+
+    @Test
+    void untranslatedHibernateViolationFromBatchPathIsDuplicate() {
+        // entityManager.persist/flush trong TransactionTemplate: không qua exception translation
+        ConstraintViolationException violation = new ConstraintViolationException(
+                "could not execute batch", new SQLIntegrityConstraintViolationException(DUPLICATE_MESSAGE),
+                "uq_inv_tenant_partner");
+
+        assertThat(EinvInvoiceServiceImpl.isDuplicateSubmission(violation)).isTrue();
+        assertThat(EinvInvoiceServiceImpl.isDuplicateSubmission(
+                new PersistenceException("flush failed", violation))).isTrue();
+    }
+
+    @Test
+    void translatedViolationFromRepositoryPathIsDuplicate() {
+        ConstraintViolationException violation = new ConstraintViolationException(
+                "could not execute statement", new SQLIntegrityConstraintViolationException(DUPLICATE_MESSAGE),
+                "UQ_INV_TENANT_PARTNER");
+
+        assertThat(EinvInvoiceServiceImpl.isDuplicateSubmission(
+                new DataIntegrityViolationException("constraint violated", violation))).isTrue();
+    }
+
+    @Test
+    void constraintNameMissingFallsBackToDriverMessage() {
+        PersistenceException ex = new PersistenceException("flush failed",
+                new SQLIntegrityConstraintViolationException(DUPLICATE_MESSAGE));
+
+        assertThat(EinvInvoiceServiceImpl.isDuplicateSubmission(ex)).isTrue();
+    }
+
+    @Test
+    void otherConstraintViolationsAreRealErrors() {
+        ConstraintViolationException foreignKey = new ConstraintViolationException(
+                "could not execute batch",
+                new SQLIntegrityConstraintViolationException("Cannot add or update a child row: fk_inv_detail_invoice"),
+                "fk_inv_detail_invoice");
+
+        assertThat(EinvInvoiceServiceImpl.isDuplicateSubmission(new PersistenceException(foreignKey))).isFalse();
+        assertThat(EinvInvoiceServiceImpl.isDuplicateSubmission(new IllegalStateException("timeout"))).isFalse();
+    }
+}
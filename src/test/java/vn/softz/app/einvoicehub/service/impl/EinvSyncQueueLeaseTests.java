@@ -0,0 +1,181 @@
+package vn.softz.app.einvoicehub.service.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.containers.MariaDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import vn.softz.app.einvoicehub.domain.entity.EinvSyncQueueEntity;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Claim / lease của einv_sync_queue trên MariaDB thật: FOR UPDATE SKIP LOCKED và các UPDATE có điều kiện
+ * không chạy được trên H2. Không có Docker thì bỏ qua.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Testcontainers(disabledWithoutDocker = true)
+@Import(EinvSyncQueueServiceImpl.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class EinvSyncQueueLeaseTests {
+
+    private static final List<String> SIGN = List.of("SIGN");
+    private static final Duration LEASE = Duration.ofMinutes(2);
+
+    @Container
+    @ServiceConnection
+    static final MariaDBContainer<?> MARIADB = new MariaDBContainer<>("mariadb:11.4");
+
+    @Autowired
+    private EinvSyncQueueServiceImpl service;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void cleanQueue() {
+        jdbcTemplate.update("DELETE FROM einv_sync_queue");
+    }
+
+    @Test
+    void claimsDueEntriesOnlyOnce() {
+        String due = insertPending(LocalDateTime.now().minusMinutes(1));
+        insertPending(LocalDateTime.now().plusMinutes(10));
+
+        List<EinvSyncQueueEntity> claimed = service.claimBatch(SIGN, "node-a", 10, LEASE);
+
+        assertThat(claimed).extracting(EinvSyncQueueEntity::getId).containsExactly(due);
+        assertThat(row(due)).containsEntry("status", "PROCESSING").containsEntry("locked_by", "node-a");
+        assertThat(service.claimBatch(SIGN, "node-b", 10, LEASE)).isEmpty();
+    }
+
+    @Test
+    void concurrentClaimsDoNotOverlap() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            insertPending(LocalDateTime.now().minusMinutes(1));
+        }
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<List<EinvSyncQueueEntity>>> futures = new ArrayList<>();
+            for (String node : List.of("node-a", "node-b")) {
+                Callable<List<EinvSyncQueueEntity>> claim = () -> {
+                    start.await();
+                    return service.claimBatch(SIGN, node, 10, LEASE);
+                };
+                futures.add(pool.submit(claim));
+            }
+            start.countDown();
+
+            Set<String> ids = new HashSet<>();
+            int total = 0;
+            for (Future<List<EinvSyncQueueEntity>> future : futures) {
+                List<EinvSyncQueueEntity> claimed = future.get();
+                total += claimed.size();
+                claimed.forEach(entry -> ids.add(entry.getId()));
+            }
+            assertThat(ids).hasSize(total);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void reclaimOfExpiredLeaseCountsAnAttempt() {
+        String id = insertProcessing("node-a", LocalDateTime.now().minusSeconds(1), 0, 5);
+
+        List<EinvSyncQueueEntity> claimed = service.claimBatch(SIGN, "node-b", 10, LEASE);
+
+        assertThat(claimed).extracting(EinvSyncQueueEntity::getId).containsExactly(id);
+        assertThat(row(id)).containsEntry("locked_by", "node-b");
+        assertThat(((Number) row(id).get("attempt_count")).intValue()).isEqualTo(1);
+    }
+
+    @Test
+    void expiredLeaseAtMaxAttemptsFails() {
+        String id = insertProcessing("node-a", LocalDateTime.now().minusSeconds(1), 4, 5);
+
+        assertThat(service.claimBatch(SIGN, "node-b", 10, LEASE)).isEmpty();
+
+        Map<String, Object> row = row(id);
+        assertThat(row).containsEntry("status", "FAILED").containsEntry("error_code", "LEASE_EXPIRED");
+        assertThat(row.get("locked_by")).isNull();
+        assertThat(((Number) row.get("attempt_count")).intValue()).isEqualTo(5);
+    }
+
+    @Test
+    void ownerThatLostTheLeaseCannotComplete() {
+        String id = insertProcessing("node-a", LocalDateTime.now().minusSeconds(1), 0, 5);
+        service.claimBatch(SIGN, "node-b", 10, LEASE);
+
+        assertThat(service.markAsSuccess(id, "node-a", "msg-a")).isFalse();
+        assertThat(service.markAsFailed(id, "node-a", "late failure", "ERR")).isFalse();
+        assertThat(row(id)).containsEntry("status", "PROCESSING").containsEntry("locked_by", "node-b");
+
+        assertThat(service.markAsSuccess(id, "node-b", "msg-b")).isTrue();
+        assertThat(row(id)).containsEntry("status", "SUCCESS").containsEntry("cqt_message_id", "msg-b");
+        assertThat(row(id).get("locked_by")).isNull();
+    }
+
+    @Test
+    void failureByOwnerSchedulesRetryAndReleasesLease() {
+        String id = insertPending(LocalDateTime.now().minusMinutes(1));
+        service.claimBatch(SIGN, "node-a", 10, LEASE);
+
+        assertThat(service.markAsFailed(id, "node-a", "timeout", "TIMEOUT")).isTrue();
+
+        Map<String, Object> row = row(id);
+        assertThat(row).containsEntry("status", "PENDING").containsEntry("error_code", "TIMEOUT");
+        assertThat(row.get("locked_by")).isNull();
+        assertThat(row.get("next_retry_at")).isNotNull();
+        assertThat(((Number) row.get("attempt_count")).intValue()).isEqualTo(1);
+    }
+
+    private String insertPending(LocalDateTime nextRetryAt) {
+        String id = UUID.randomUUID().toString();
+        jdbcTemplate.update("""
+                INSERT INTO einv_sync_queue (id, sync_type, status, attempt_count, max_attempts, next_retry_at)
+                VALUES (?, 'SIGN', 'PENDING', 0, 5, ?)
+                """, id, Timestamp.valueOf(nextRetryAt));
+        return id;
+    }
+
+    private String insertProcessing(String owner, LocalDateTime lockedUntil, int attempts, int maxAttempts) {
+        String id = UUID.randomUUID().toString();
+        jdbcTemplate.update("""
+                INSERT INTO einv_sync_queue
+                    (id, sync_type, status, attempt_count, max_attempts, next_retry_at, locked_by, locked_until)
+                VALUES (?, 'SIGN', 'PROCESSING', ?, ?, ?, ?, ?)
+                """, id, attempts, maxAttempts, Timestamp.valueOf(LocalDateTime.now().minusMinutes(5)),
+                owner, Timestamp.valueOf(lockedUntil));
+        return id;
+    }
+
+    private Map<String, Object> row(String id) {
+        return jdbcTemplate.queryForMap("SELECT * FROM einv_sync_queue WHERE id = ?", id);
+    }
+}
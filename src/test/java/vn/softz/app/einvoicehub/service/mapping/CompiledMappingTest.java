@@ -0,0 +1,75 @@
+package vn.softz.app.einvoicehub.service.mapping;
+
+import org.junit.jupiter.api.Test;
+import vn.softz.app.einvoicehub.service.mapping.CompiledMapping.TaxRate;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompiledMappingTest {
+
+    @Test
+    void directTableMapsByteSizedIds() {
+        CompiledMapping mapping = CompiledMapping.compile("INVOICE_STATUS", Map.of("0", "5", "1", "10", "255", "99"));
+
+        assertThat(mapping.getProviderInt(0)).isEqualTo(5);
+        assertThat(mapping.getProviderInt(1)).isEqualTo(10);
+        assertThat(mapping.getProviderInt(255)).isEqualTo(99);
+    }
+
+    @Test
+    void idsOutsideDirectTableUseOverflow() {
+        CompiledMapping mapping = CompiledMapping.compile("ITEM_TYPE", Map.of("256", "7", "100000", "8", "-1", "9"));
+
+        assertThat(mapping.getProviderInt(256)).isEqualTo(7);
+        assertThat(mapping.getProviderInt(100_000)).isEqualTo(8);
+        assertThat(mapping.getProviderInt(-1)).isEqualTo(9);
+    }
+
+    @Test
+    void missingMappingFallsBackToHubId() {
+        CompiledMapping mapping = CompiledMapping.compile("PAYMENT_METHOD", Map.of("1", "3", "300", "4"));
+
+        assertThat(mapping.getProviderInt(2)).isEqualTo(2);
+        assertThat(mapping.getProviderInt(301)).isEqualTo(301);
+        assertThat(CompiledMapping.compile("PAYMENT_METHOD", null).getProviderInt(7)).isEqualTo(7);
+    }
+
+    @Test
+    void nonNumericProviderCodeFallsBackToHubId() {
+        CompiledMapping mapping = CompiledMapping.compile("INVOICE_TYPE", Map.of("1", "abc", "2", " 20 "));
+
+        assertThat(mapping.getProviderInt(1)).isEqualTo(1);
+        assertThat(mapping.getProviderInt(2)).isEqualTo(20);
+    }
+
+    @Test
+    void taxValuesAreParsedOnce() {
+        CompiledMapping mapping = CompiledMapping.compile("TAX_TYPE", Map.of("VAT10", "1, 10", "VAT8", "3,8.5"));
+
+        assertThat(mapping.getTaxRate("VAT10")).isEqualTo(new TaxRate(1, new BigDecimal("10")));
+        assertThat(mapping.getTaxRate("VAT8")).isEqualTo(new TaxRate(3, new BigDecimal("8.5")));
+    }
+
+    @Test
+    void malformedTaxValuesAreIgnored() {
+        Map<String, String> rows = new HashMap<>();
+        rows.put("BAD_TYPE", "x,10");
+        rows.put("BAD_RATE", "1,ten");
+        rows.put("EMPTY_RATE", "1,");
+        rows.put("NO_TYPE", ",10");
+        rows.put("NULL", null);
+
+        CompiledMapping mapping = CompiledMapping.compile("TAX_TYPE", rows);
+
+        assertThat(mapping.getTaxRate("BAD_TYPE")).isNull();
+        assertThat(mapping.getTaxRate("BAD_RATE")).isNull();
+        assertThat(mapping.getTaxRate("EMPTY_RATE")).isNull();
+        assertThat(mapping.getTaxRate("NO_TYPE")).isNull();
+        assertThat(mapping.getTaxRate("NULL")).isNull();
+        assertThat(mapping.getTaxRate("UNKNOWN")).isNull();
+    }
+}
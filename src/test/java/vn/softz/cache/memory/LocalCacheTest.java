@@ -0,0 +1,90 @@
+package vn.softz.cache.memory;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import vn.softz.cache.base.CacheStatsRecorder;
+import vn.softz.cache.redis.RedisCacheInvalidationBus;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class LocalCacheTest {
+
+    private final RedisCacheInvalidationBus bus = mock(RedisCacheInvalidationBus.class);
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void loaderRunsOncePerKeyAndFailuresAreNotCached() {
+        LocalCache<String> cache = new LocalCache<>("Test", Duration.ofMinutes(1), 100, CacheStatsRecorder.NOOP);
+        AtomicInteger loads = new AtomicInteger();
+
+        assertThat(cache.get("a", key -> key + loads.incrementAndGet())).isEqualTo("a1");
+        assertThat(cache.get("a", key -> key + loads.incrementAndGet())).isEqualTo("a1");
+        assertThatThrownBy(() -> cache.get("b", key -> {
+            throw new IllegalStateException("not configured");
+        })).isInstanceOf(IllegalStateException.class);
+        assertThat(cache.getIfPresent("b")).isNull();
+    }
+
+    @Test
+    void invalidateOutsideTransactionPublishesImmediately() {
+        LocalCache<String> cache = new LocalCache<>("Test", Duration.ofMinutes(1), 100, CacheStatsRecorder.NOOP, bus);
+        cache.put("a", "1");
+
+        cache.invalidate("a");
+
+        assertThat(cache.getIfPresent("a")).isNull();
+        verify(bus).publish("Test", "a");
+    }
+
+    @Test
+    void invalidateInsideTransactionPublishesAfterCommit() {
+        LocalCache<String> cache = new LocalCache<>("Test", Duration.ofMinutes(1), 100, CacheStatsRecorder.NOOP, bus);
+        TransactionSynchronizationManager.initSynchronization();
+
+        cache.invalidateAll();
+        verify(bus, never()).publish(any(), any());
+
+        // Request song song nạp lại dữ liệu cũ trước commit: afterCommit phải bỏ lần nữa
+        cache.put("a", "stale");
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+        assertThat(cache.getIfPresent("a")).isNull();
+        verify(bus).publish("Test", null);
+    }
+
+    @Test
+    void invalidationFromOtherPodEvictsLocalEntry() {
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Consumer<String>> listener = ArgumentCaptor.forClass(Consumer.class);
+        LocalCache<String> cache = new LocalCache<>("Test", Duration.ofMinutes(1), 100, CacheStatsRecorder.NOOP, bus);
+        verify(bus).subscribe(eq("Test"), listener.capture());
+        cache.put("a", "1");
+        cache.put("b", "2");
+
+        listener.getValue().accept("a");
+        assertThat(cache.getIfPresent("a")).isNull();
+        assertThat(cache.getIfPresent("b")).isEqualTo("2");
+
+        listener.getValue().accept(null);
+        assertThat(cache.getIfPresent("b")).isNull();
+    }
+}
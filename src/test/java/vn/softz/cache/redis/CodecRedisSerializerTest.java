@@ -0,0 +1,99 @@
+package vn.softz.cache.redis;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CodecRedisSerializerTest {
+
+    private static final int THRESHOLD = 64;
+
+    private final CacheValueCodec<String> codec = new CacheValueCodec<>() {
+        @Override
+        public byte[] encode(String value) {
+            return value.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String decode(byte[] bytes) {
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    };
+
+    private final CodecRedisSerializer<String> serializer = new CodecRedisSerializer<>(codec, String.class, THRESHOLD);
+
+    @Test
+    void payloadBelowThresholdIsStoredPlain() {
+        String value = "short";
+
+        byte[] bytes = serializer.serialize(value);
+
+        assertThat(bytes[0]).isEqualTo((byte) 0);
+        assertThat(bytes).hasSize(value.length() + 1);
+        assertThat(serializer.deserialize(bytes)).isEqualTo(value);
+    }
+
+    @Test
+    void payloadAboveThresholdIsDeflated() {
+        String value = "0123456789".repeat(50);
+
+        byte[] bytes = serializer.serialize(value);
+
+        assertThat(bytes[0]).isEqualTo((byte) 1);
+        assertThat(bytes.length).isLessThan(value.length());
+        assertThat(serializer.deserialize(bytes)).isEqualTo(value);
+    }
+
+    @Test
+    void compressionDisabledWhenThresholdNotPositive() {
+        CodecRedisSerializer<String> plain = new CodecRedisSerializer<>(codec, String.class, 0);
+        String value = "0123456789".repeat(50);
+
+        byte[] bytes = plain.serialize(value);
+
+        assertThat(bytes[0]).isEqualTo((byte) 0);
+        assertThat(plain.deserialize(bytes)).isEqualTo(value);
+    }
+
+    @Test
+    void nullAndEmptyAreMisses() {
+        assertThat(serializer.serialize(null)).isNull();
+        assertThat(serializer.deserialize(null)).isNull();
+        assertThat(serializer.deserialize(new byte[0])).isNull();
+    }
+
+    @Test
+    void unknownFormatIsMiss() {
+        // Value ghi bằng serializer JSON cũ bắt đầu bằng '{' hoặc '['
+        assertThat(serializer.deserialize("{\"@class\":\"x\"}".getBytes(StandardCharsets.UTF_8))).isNull();
+    }
+
+    @Test
+    void truncatedDeflatePayloadIsMiss() {
+        byte[] bytes = serializer.serialize("0123456789".repeat(50));
+
+        assertThat(serializer.deserialize(Arrays.copyOf(bytes, bytes.length / 2))).isNull();
+    }
+
+    @Test
+    void codecFailureIsMiss() {
+        CacheValueCodec<String> failing = new CacheValueCodec<>() {
+            @Override
+            public byte[] encode(String value) {
+                return value.getBytes(StandardCharsets.UTF_8);
+            }
+
+            @Override
+            public String decode(byte[] bytes) throws IOException {
+                throw new IOException("corrupt");
+            }
+        };
+        CodecRedisSerializer<String> corrupt = new CodecRedisSerializer<>(failing, String.class, THRESHOLD);
+
+        assertThat(corrupt.deserialize(corrupt.serialize("value"))).isNull();
+    }
+}
@@ -0,0 +1,37 @@
+package vn.softz.cache.redis;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RedisCacheInstanceTest {
+
+    @Test
+    void globMatchesLikeScanMatch() {
+        Pattern pattern = RedisCacheInstance.globToRegex("app:EinvMapping:*BKAV:*STATUS*");
+
+        assertThat(pattern.matcher("app:EinvMapping:BKAV:INVOICE_STATUS").matches()).isTrue();
+        assertThat(pattern.matcher("app:EinvMapping:VNPT:INVOICE_STATUS").matches()).isFalse();
+        // Khác contains: thứ tự các đoạn trong glob phải giữ nguyên
+        assertThat(pattern.matcher("app:EinvMapping:STATUS:BKAV").matches()).isFalse();
+    }
+
+    @Test
+    void wildcardsAndCharacterClasses() {
+        assertThat(RedisCacheInstance.globToRegex("h?llo").matcher("hallo").matches()).isTrue();
+        assertThat(RedisCacheInstance.globToRegex("h?llo").matcher("hllo").matches()).isFalse();
+        assertThat(RedisCacheInstance.globToRegex("h[ae]llo").matcher("hello").matches()).isTrue();
+        assertThat(RedisCacheInstance.globToRegex("h[^e]llo").matcher("hello").matches()).isFalse();
+        assertThat(RedisCacheInstance.globToRegex("h[a-b]llo").matcher("hbllo").matches()).isTrue();
+    }
+
+    @Test
+    void regexMetacharactersAndEscapesAreLiteral() {
+        assertThat(RedisCacheInstance.globToRegex("a.b+c").matcher("a.b+c").matches()).isTrue();
+        assertThat(RedisCacheInstance.globToRegex("a.b+c").matcher("axbbc").matches()).isFalse();
+        assertThat(RedisCacheInstance.globToRegex("key\\*").matcher("key*").matches()).isTrue();
+        assertThat(RedisCacheInstance.globToRegex("key\\*").matcher("key1").matches()).isFalse();
+    }
+}